@@ -108,7 +108,7 @@ abstract public class BlockElement extends ParsedHTML implements HTMLSegment,
 	 */
 	public ScriptingHandler getScriptingHandler() {
 		if (_scriptable == null) {
-			_scriptable = HttpUnitOptions.getScriptingEngine().createHandler(this);
+			_scriptable = getResponse().getConfiguration().getScriptingEngine().createHandler(this);
 		}
 		return _scriptable;
 	}
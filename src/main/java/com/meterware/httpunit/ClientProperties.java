@@ -177,6 +177,104 @@ public class ClientProperties {
     }                                                             
 
 
+    /**
+     * Returns the maximum number of bytes which the client will read as the body of a response, or zero if there
+     * is no limit. The default is no limit.
+     */
+    public int getMaxResponseSize() {
+        return _maxResponseSize;
+    }
+
+
+    /**
+     * Specifies the maximum number of bytes which the client will read as the body of a response. Reading a larger
+     * body fails with an IOException rather than exhausting the heap. Zero or a negative value removes the limit.
+     */
+    public void setMaxResponseSize( int maxResponseSize ) {
+        _maxResponseSize = maxResponseSize;
+    }
+
+
+    /**
+     * Returns the size in bytes above which a response body is written to a temporary file rather than held in memory,
+     * or zero if bodies are always held in memory. The default is zero.
+     */
+    public int getMaxInMemoryResponseSize() {
+        return _maxInMemoryResponseSize;
+    }
+
+
+    /**
+     * Specifies the size in bytes above which a response body is written to a temporary file rather than held in
+     * memory. Such a body is read back from the file by getInputStream, and is only copied to the heap if
+     * getText or getBytes is called. Zero or a negative value keeps all bodies in memory.
+     */
+    public void setMaxInMemoryResponseSize( int maxInMemoryResponseSize ) {
+        _maxInMemoryResponseSize = maxInMemoryResponseSize;
+    }
+
+
+    /**
+     * Returns the maximum number of frames of a single frameset which may be requested at once. The default is 1,
+     * which loads the frames one after another.
+     */
+    public int getMaxParallelFrameRequests() {
+        return _maxParallelFrameRequests;
+    }
+
+
+    /**
+     * Specifies the maximum number of frames of a single frameset which may be requested at once. The requests
+     * are performed by the client's executor; the responses are still placed into their frames, and their scripts run,
+     * in document order. Because the frames are requested before any of them has been received, a cookie set by
+     * one frame is not sent with the requests for the others.
+     */
+    public void setMaxParallelFrameRequests( int maxParallelFrameRequests ) {
+        _maxParallelFrameRequests = maxParallelFrameRequests;
+    }
+
+
+    /**
+     * Returns the maximum number of external scripts of a single page which may be requested at once. The default is 1,
+     * which requests each script only when the parser reaches it.
+     */
+    public int getMaxParallelScriptRequests() {
+        return _maxParallelScriptRequests;
+    }
+
+
+    /**
+     * Specifies the maximum number of external scripts of a single page which may be requested at once. When greater
+     * than 1, the scripts referenced by a page are found by scanning the page before it is parsed, and are requested
+     * on the client's executor; the scripts are still run in document order. Scripts whose locations are only known
+     * once the page is being parsed, such as those written by other scripts, are requested when they are reached.
+     */
+    public void setMaxParallelScriptRequests( int maxParallelScriptRequests ) {
+        _maxParallelScriptRequests = maxParallelScriptRequests;
+    }
+
+
+    /**
+     * Returns true if text responses are read from the connection only when their contents are first requested.
+     * The default is false.
+     */
+    public boolean isStreamingResponses() {
+        return _streamingResponses;
+    }
+
+
+    /**
+     * Specifies whether text responses are read from the connection only when their contents are first requested.
+     * When enabled, getInputStream returns the stream from the connection itself, so that a large body can be
+     * processed without buffering it; reading the body that way makes it unavailable to getText and getDOM.
+     * Errors in the body, such as a truncated message, are reported when it is first read rather than when
+     * the response is received.
+     */
+    public void setStreamingResponses( boolean streamingResponses ) {
+        _streamingResponses = streamingResponses;
+    }
+
+
     /**
      * Returns true if the client should automatically follow page redirect requests (status 3xx).
      * By default, this is true.
@@ -297,6 +395,25 @@ public class ClientProperties {
 		}
 
 
+    /**
+     * Returns the configuration which controls how this client handles and parses responses. Unless one has been
+     * specified, this follows the current settings in HttpUnitOptions and HTMLParserFactory.
+     */
+    public HttpUnitConfiguration getConfiguration() {
+        return _configuration != null ? _configuration : HttpUnitConfiguration.getDefaults();
+    }
+
+
+    /**
+     * Specifies the configuration to be used by this client in place of the static settings in HttpUnitOptions
+     * and HTMLParserFactory. Since configurations are immutable, the same one may be shared by many clients.
+     * @param configuration the configuration to use, or null to follow the static settings
+     */
+    public void setConfiguration( HttpUnitConfiguration configuration ) {
+        _configuration = configuration;
+    }
+
+
     ClientProperties cloneProperties() {
         return new ClientProperties( this );
     }
@@ -311,15 +428,21 @@ public class ClientProperties {
     private int    _availWidth          = 800;
     private int    _availHeight         = 600;
     private int    _maxRedirects        = 5;
+    private int    _maxResponseSize;
+    private int    _maxInMemoryResponseSize;
+    private int    _maxParallelFrameRequests = 1;
+    private int    _maxParallelScriptRequests = 1;
 
     private boolean _iframeSupported = true;
     private boolean _acceptCookies = true;
     private boolean _acceptGzip    = true;
     private boolean _autoRedirect  = true;
     private boolean _autoRefresh   = false;
+    private boolean _streamingResponses;
 
     private DNSListener _dnsListener;
     private boolean _sendReferer;
+    private HttpUnitConfiguration _configuration;
 
     private static ClientProperties _defaultProperties = new ClientProperties();
 
@@ -351,6 +474,12 @@ public class ClientProperties {
         _autoRefresh         = source._autoRefresh;
         _sendReferer         = source._sendReferer;
         _maxRedirects		 = source._maxRedirects;
+        _maxResponseSize     = source._maxResponseSize;
+        _maxInMemoryResponseSize = source._maxInMemoryResponseSize;
+        _maxParallelFrameRequests = source._maxParallelFrameRequests;
+        _maxParallelScriptRequests = source._maxParallelScriptRequests;
+        _streamingResponses  = source._streamingResponses;
+        _configuration       = source._configuration;
     }
 
 
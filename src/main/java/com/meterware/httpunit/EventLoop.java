@@ -0,0 +1,252 @@
+package com.meterware.httpunit;
+/********************************************************************************************************************
+* $Id$
+*
+* Copyright (c) 2026, Russell Gold
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+* documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+* the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+* to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions
+* of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+* THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+* DEALINGS IN THE SOFTWARE.
+*
+*******************************************************************************************************************/
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+
+/**
+ * The timers scheduled by the scripts of the pages in a window, such as those set with <code>setTimeout</code> and
+ * <code>setInterval</code>. Timers run against a virtual clock, which starts at zero and moves only when a test
+ * advances it, so that a page which defers work may be exercised immediately and deterministically rather than
+ * by waiting. Timers which come due together run in the order in which they were scheduled. The timers set by a page
+ * are cancelled when the page is replaced or its window is closed.
+ *
+ * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
+ **/
+public class EventLoop {
+
+    /** The maximum number of timers which runAll will run before deciding that they will never finish. **/
+    public static final int MAX_RUN_ALL_TIMERS = 1000;
+
+    /**
+     * The maximum number of timers which may run at a single virtual time before advanceBy and runUntilIdle decide
+     * that they are rescheduling themselves without delay, and will never finish.
+     **/
+    public static final int MAX_TIMERS_AT_ONE_TIME = 1000;
+
+    private long _currentTime;
+
+    private int _lastTimerId;
+
+    private long _lastSequence;
+
+    /** The pending timers, in the order in which they are to run. **/
+    private final SortedSet _queue = new TreeSet();
+
+    /** The pending timers, indexed by their identifiers. **/
+    private final Map _timers = new HashMap();
+
+
+    EventLoop() {
+    }
+
+
+    /**
+     * Returns the current virtual time in milliseconds, measured from the creation of the window.
+     */
+    public synchronized long getCurrentTime() {
+        return _currentTime;
+    }
+
+
+    /**
+     * Returns the number of timers waiting to run.
+     */
+    public synchronized int getNumPendingTimers() {
+        return _queue.size();
+    }
+
+
+    /**
+     * Runs the timers which are due at the current virtual time, including any due timers which they schedule,
+     * without advancing the clock.
+     * @return the number of timers run
+     * @throws IllegalStateException if more than MAX_TIMERS_AT_ONE_TIME timers come due at the current time,
+     *         as when a timer keeps rescheduling itself with no delay
+     */
+    public int runUntilIdle() {
+        return advanceBy( 0 );
+    }
+
+
+    /**
+     * Advances the virtual clock by the specified number of milliseconds, running each timer as it comes due.
+     * @return the number of timers run
+     * @throws IllegalStateException if more than MAX_TIMERS_AT_ONE_TIME timers come due at a single time,
+     *         as when a timer keeps rescheduling itself with no delay
+     */
+    public int advanceBy( long milliseconds ) {
+        if (milliseconds < 0) throw new IllegalArgumentException( "May not move the clock backwards" );
+        long targetTime = getCurrentTime() + milliseconds;
+        int numRun = 0;
+        long lastDueTime = -1;
+        int numRunAtDueTime = 0;
+        for (Timer timer = nextTimerDue( targetTime ); timer != null; timer = nextTimerDue( targetTime )) {
+            long dueTime = getCurrentTime();     // the clock has moved to the time at which the timer was due
+            if (dueTime != lastDueTime) {
+                lastDueTime = dueTime;
+                numRunAtDueTime = 0;
+            } else if (numRunAtDueTime == MAX_TIMERS_AT_ONE_TIME) {
+                throw new IllegalStateException( "More than " + MAX_TIMERS_AT_ONE_TIME + " timers due at " + lastDueTime
+                                                 + " msec; a timer may be rescheduling itself without delay" );
+            }
+            timer._task.run();
+            numRun++;
+            numRunAtDueTime++;
+        }
+        synchronized (this) {
+            _currentTime = Math.max( _currentTime, targetTime );
+        }
+        return numRun;
+    }
+
+
+    /**
+     * Advances the virtual clock until no timers remain, running each as it comes due. Since repeating timers never
+     * finish on their own, this gives up once it has run MAX_RUN_ALL_TIMERS timers.
+     * @return the number of timers run
+     * @throws IllegalStateException if timers remain after MAX_RUN_ALL_TIMERS have been run
+     */
+    public int runAll() {
+        int numRun = 0;
+        for (Timer timer = nextTimerDue( Long.MAX_VALUE ); timer != null; timer = nextTimerDue( Long.MAX_VALUE )) {
+            if (numRun == MAX_RUN_ALL_TIMERS) {
+                throw new IllegalStateException( "Timers still pending after running " + MAX_RUN_ALL_TIMERS + "; a repeating timer may never be cleared" );
+            }
+            timer._task.run();
+            numRun++;
+        }
+        return numRun;
+    }
+
+
+    /**
+     * Cancels all pending timers.
+     */
+    public synchronized void clear() {
+        _queue.clear();
+        _timers.clear();
+    }
+
+
+//---------------------------------------- package members -------------------------------------------------------------
+
+
+    /**
+     * Schedules a task to run after the specified delay and, if an interval is specified, repeatedly thereafter.
+     * @param owner    the page which scheduled the task
+     * @param task     the task to run
+     * @param delay    the time in milliseconds before the task first runs
+     * @param interval the time in milliseconds between runs, or zero to run the task only once
+     * @return an identifier for the timer, which may be used to cancel it
+     */
+    synchronized int schedule( Object owner, Runnable task, long delay, long interval ) {
+        Timer timer = new Timer( ++_lastTimerId, owner, task, interval );
+        _timers.put( new Integer( timer._id ), timer );
+        enqueue( timer, _currentTime + Math.max( 0, delay ) );
+        return timer._id;
+    }
+
+
+    /**
+     * Cancels the specified timer, if it is still pending.
+     */
+    synchronized void cancel( int timerId ) {
+        Timer timer = (Timer) _timers.remove( new Integer( timerId ) );
+        if (timer != null) _queue.remove( timer );
+    }
+
+
+    /**
+     * Cancels all timers scheduled by the specified page.
+     */
+    synchronized void cancelAll( Object owner ) {
+        if (owner == null) return;
+        for (Iterator i = _timers.values().iterator(); i.hasNext();) {
+            Timer timer = (Timer) i.next();
+            if (timer._owner != owner) continue;
+            _queue.remove( timer );
+            i.remove();
+        }
+    }
+
+
+//---------------------------------------- private members -------------------------------------------------------------
+
+
+    private void enqueue( Timer timer, long dueTime ) {
+        timer._dueTime = dueTime;
+        timer._sequence = ++_lastSequence;
+        _queue.add( timer );
+    }
+
+
+    /**
+     * Removes and returns the first timer due no later than the specified time, moving the clock to its due time
+     * and rescheduling it if it repeats. Returns null if no timer is due.
+     */
+    private synchronized Timer nextTimerDue( long limit ) {
+        if (_queue.isEmpty()) return null;
+        Timer timer = (Timer) _queue.first();
+        if (timer._dueTime > limit) return null;
+
+        _queue.remove( timer );
+        _currentTime = Math.max( _currentTime, timer._dueTime );
+        if (timer._interval > 0) {
+            enqueue( timer, _currentTime + timer._interval );
+        } else {
+            _timers.remove( new Integer( timer._id ) );
+        }
+        return timer;
+    }
+
+
+    private static class Timer implements Comparable {
+
+        private final int _id;
+        private final Object _owner;
+        private final Runnable _task;
+        private final long _interval;
+        private long _dueTime;
+        private long _sequence;
+
+
+        Timer( int id, Object owner, Runnable task, long interval ) {
+            _id = id;
+            _owner = owner;
+            _task = task;
+            _interval = interval;
+        }
+
+
+        public int compareTo( Object o ) {
+            Timer other = (Timer) o;
+            if (_dueTime != other._dueTime) return _dueTime < other._dueTime ? -1 : 1;
+            if (_sequence != other._sequence) return _sequence < other._sequence ? -1 : 1;
+            return 0;
+        }
+    }
+
+}
@@ -50,7 +50,7 @@ class FrameHolder {
         _topFrame = FrameSelector.newTopFrame( window );
         DefaultWebResponse blankResponse = new DefaultWebResponse( window.getClient(), null, WebResponse.BLANK_HTML );
         _contents.put( _topFrame, blankResponse );
-        HttpUnitOptions.getScriptingEngine().associate( blankResponse );
+        blankResponse.getConfiguration().getScriptingEngine().associate( blankResponse );
     }
 
 
@@ -68,14 +68,24 @@ class FrameHolder {
 
 
     WebResponse getSubframeContents( FrameSelector frame, String subFrameName ) {
+        WebResponse response = findSubframeContents( frame, subFrameName );
+        if (response == null) throw new NoSuchFrameException( subFrameName );
+        return response;
+    }
+
+
+    /**
+     * Returns the contents of the named subframe of the specified frame, or null if there is no such subframe.
+     */
+    WebResponse findSubframeContents( FrameSelector frame, String subFrameName ) {
         FrameSelector[] subframes = (FrameSelector[]) _subframes.get( frame );
-        if (subframes == null) throw new NoSuchFrameException( subFrameName );
+        if (subframes == null) return null;
 
         for (int i = 0; i < subframes.length; i++) {
             FrameSelector subframe = subframes[i];
             if (subframe.getName().equalsIgnoreCase( subFrameName ) ) return get( subframe );
         }
-        throw new NoSuchFrameException( subFrameName );
+        return null;
     }
 
 
@@ -171,19 +181,15 @@ class FrameHolder {
 
     void updateFrames( WebResponse response, FrameSelector frame, RequestContext requestContext ) throws MalformedURLException, IOException, SAXException {
         removeSubFrames( frame );
-        _contents.put( frame, response );
+        _window.getEventLoop().cancelAll( _contents.put( frame, response ) );
 
         if (response.isHTML()) {
-            HttpUnitOptions.getScriptingEngine().associate( response );
+            response.getConfiguration().getScriptingEngine().associate( response );
             requestContext.addNewResponse( response );
             WebRequest[] requests = response.getFrameRequests();
             if (requests.length > 0) {
                 createSubFrames( frame, response.getFrameSelectors() );
-                for (int i = 0; i < requests.length; i++) {
-                    if (requests[i].getURLString().length() != 0) {
-                        response.getWindow().getSubframeResponse( requests[i], requestContext );
-                    }
-                }
+                response.getWindow().getSubframeResponses( requests, requestContext );
             }
         }
     }
@@ -196,7 +202,7 @@ class FrameHolder {
         _subframes.remove( frame );
         for (int i = 0; i < subframes.length; i++) {
             removeSubFrames( subframes[ i ] );
-            _contents.remove( subframes[ i ] );
+            _window.getEventLoop().cancelAll( _contents.remove( subframes[ i ] ) );
         }
     }
 
@@ -22,8 +22,7 @@ package com.meterware.httpunit;
 import com.meterware.httpunit.scripting.NamedDelegate;
 import com.meterware.httpunit.scripting.ScriptableDelegate;
 import com.meterware.httpunit.scripting.ScriptingHandler;
-import com.meterware.httpunit.parsing.HTMLParserFactory;
-import com.meterware.httpunit.parsing.DocumentAdapter;
+import com.meterware.httpunit.parsing.ConfiguredDocumentAdapter;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -32,7 +31,11 @@ import org.xml.sax.SAXException;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Future;
 
 
 /**
@@ -45,6 +48,20 @@ public class HTMLPage extends ParsedHTML {
 
     private Scriptable _scriptable;
 
+    /** The requests for the external scripts found by scanning the response, in document order. **/
+    private List _scriptRequests = new ArrayList();
+
+    /** The pending results of the script requests, or null for those not yet made or already consumed. **/
+    private Future[] _scriptResources;
+
+    /** The index of the next script request expected by the parser. **/
+    private int _nextScript;
+
+    /** The number of script requests made so far. **/
+    private int _numScriptsRequested;
+
+    private int _maxParallelScriptRequests;
+
 
     HTMLPage( WebResponse response, FrameSelector frame, URL baseURL, String baseTarget, String characterSet ) {
         super( response, frame, baseURL, baseTarget, null, characterSet );
@@ -268,11 +285,83 @@ public class HTMLPage extends ParsedHTML {
      * @throws IOException
      */
     public void parse( String text, URL pageURL ) throws SAXException, IOException {
-        HTMLParserFactory.getHTMLParser().parse( pageURL, text, new DocumentAdapter() {
-            public void setDocument(HTMLDocument document ) { HTMLPage.this.setRootNode( document ); }
-            public String getIncludedScript( String srcAttribute ) throws IOException { return HTMLPage.this.getIncludedScript( srcAttribute ); }
-            public ScriptingHandler getScriptingHandler() { return getResponse().getScriptingHandler(); }
-        });
+        final HttpUnitConfiguration configuration = getResponse().getConfiguration();
+        prefetchScripts();
+        try {
+            configuration.getHTMLParser().parse( pageURL, text, new ConfiguredDocumentAdapter() {
+                public void setDocument(HTMLDocument document ) { HTMLPage.this.setRootNode( document ); }
+                public String getIncludedScript( String srcAttribute ) throws IOException { return HTMLPage.this.getIncludedScript( srcAttribute ); }
+                public ScriptingHandler getScriptingHandler() { return getResponse().getScriptingHandler(); }
+                public HttpUnitConfiguration getConfiguration() { return configuration; }
+            });
+        } finally {
+            cancelPrefetchedScripts();
+        }
+    }
+
+
+    /**
+     * Returns the resource containing an included script, using the one requested by prefetchScripts if there is one.
+     */
+    WebResponse getIncludedScriptResource( WebWindow window, WebRequest request ) throws IOException {
+        String location = request.getURL().toExternalForm();
+        for (int i = _nextScript; i < _scriptRequests.size(); i++) {
+            if (!location.equals( ((WebRequest) _scriptRequests.get( i )).getURL().toExternalForm() )) continue;
+
+            for (; _nextScript < i; _nextScript++) {
+                if (_scriptResources[ _nextScript ] != null) _scriptResources[ _nextScript ].cancel( true );
+            }
+            requestScripts( window );
+            Future future = _scriptResources[ _nextScript ];
+            _scriptResources[ _nextScript++ ] = null;
+            requestScripts( window );
+            return future == null ? window.getResource( request ) : window.getRequestedResource( future );
+        }
+        return super.getIncludedScriptResource( window, request );
+    }
+
+
+    /**
+     * Starts requesting the external scripts found by scanning the response, if the client allows scripts to be
+     * requested in parallel.
+     */
+    private void prefetchScripts() throws IOException {
+        WebWindow window = getResponse().getWindow();
+        List sources = getResponse().getScriptSources();
+        if (window == null || sources.isEmpty() || !getResponse().getConfiguration().isScriptingEnabled()) return;
+
+        _maxParallelScriptRequests = getResponse().getClient().getClientProperties().getMaxParallelScriptRequests();
+        if (_maxParallelScriptRequests <= 1) return;
+
+        for (Iterator i = sources.iterator(); i.hasNext();) {
+            _scriptRequests.add( new GetMethodWebRequest( getBaseURL(), (String) i.next() ) );
+        }
+        _scriptResources = new Future[ _scriptRequests.size() ];
+        _nextScript = _numScriptsRequested = 0;
+        requestScripts( window );
+    }
+
+
+    /**
+     * Requests scripts until the permitted number are outstanding.
+     */
+    private void requestScripts( WebWindow window ) {
+        for (_numScriptsRequested = Math.max( _numScriptsRequested, _nextScript ); _numScriptsRequested < _scriptRequests.size() && _numScriptsRequested < _nextScript + _maxParallelScriptRequests; _numScriptsRequested++) {
+            _scriptResources[ _numScriptsRequested ] = window.requestResource( (WebRequest) _scriptRequests.get( _numScriptsRequested ) );
+        }
+    }
+
+
+    /**
+     * Abandons any prefetched scripts which the parser did not use.
+     */
+    private void cancelPrefetchedScripts() {
+        for (int i = _nextScript; i < _numScriptsRequested; i++) {
+            if (_scriptResources[ i ] != null) _scriptResources[ i ].cancel( true );
+        }
+        _scriptRequests.clear();
+        _scriptResources = null;
+        _nextScript = _numScriptsRequested = 0;
     }
 
 
@@ -0,0 +1,51 @@
+package com.meterware.httpunit;
+/********************************************************************************************************************
+* $Id$
+*
+* Copyright (c) 2026, Russell Gold
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+* documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+* the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+* to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions
+* of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+* THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+* DEALINGS IN THE SOFTWARE.
+*
+*******************************************************************************************************************/
+import java.io.IOException;
+
+import java.net.URL;
+
+import java.util.Dictionary;
+
+
+/**
+ * The mechanism used by a web conversation to send requests to a server and obtain its replies.
+ * The default transport opens a new java.net.URLConnection for each request; a conversation may be
+ * configured to use a different one via WebConversation#setTransport.
+ *
+ * @see URLConnectionTransport
+ * @see PooledHttpTransport
+ **/
+public interface HttpTransport {
+
+
+    /**
+     * Sends the specified request and returns the server's reply.
+     * @param client the conversation sending the request, which supplies its connection settings
+     * @param request the request to send
+     * @param url the URL to which the request should be sent. This may differ from the request URL if a DNSListener is active.
+     * @param headers the header fields to send with the request
+     * @return the status, headers and body of the reply
+     * @throws IOException if unable to communicate with the server
+     **/
+    HttpTransportResponse send( WebConversation client, WebRequest request, URL url, Dictionary headers ) throws IOException;
+
+}
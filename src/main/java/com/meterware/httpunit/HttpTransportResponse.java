@@ -0,0 +1,80 @@
+package com.meterware.httpunit;
+/********************************************************************************************************************
+* $Id$
+*
+* Copyright (c) 2026, Russell Gold
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+* documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+* the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+* to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions
+* of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+* THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+* DEALINGS IN THE SOFTWARE.
+*
+*******************************************************************************************************************/
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * The raw reply to a request, as returned by an HttpTransport.
+ **/
+public interface HttpTransportResponse {
+
+
+    /**
+     * Returns the status code of the reply.
+     **/
+    int getResponseCode() throws IOException;
+
+
+    /**
+     * Returns the message which accompanied the status code.
+     **/
+    String getResponseMessage() throws IOException;
+
+
+    /**
+     * Returns the first line of the reply, as received. Used for logging.
+     **/
+    String getStatusLine();
+
+
+    /**
+     * Returns the number of header fields in the reply.
+     **/
+    int getHeaderFieldCount();
+
+
+    /**
+     * Returns the name of the header field at the specified position, in the order received.
+     **/
+    String getHeaderFieldKey( int index );
+
+
+    /**
+     * Returns the value of the header field at the specified position, in the order received.
+     **/
+    String getHeaderField( int index );
+
+
+    /**
+     * Returns the content type of the reply, or null if none is known.
+     **/
+    String getContentType();
+
+
+    /**
+     * Returns a stream from which the body of the reply may be read. For error replies,
+     * this is the error body, which may be empty.
+     **/
+    InputStream getInputStream() throws IOException;
+
+}
@@ -0,0 +1,468 @@
+package com.meterware.httpunit;
+/********************************************************************************************************************
+* $Id$
+*
+* Copyright (c) 2026, Russell Gold
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+* documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+* the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+* to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions
+* of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+* THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+* DEALINGS IN THE SOFTWARE.
+*
+*******************************************************************************************************************/
+import com.meterware.httpunit.parsing.HTMLParser;
+import com.meterware.httpunit.parsing.HTMLParserFactory;
+import com.meterware.httpunit.parsing.HTMLParserListener;
+import com.meterware.httpunit.scripting.ScriptingEngineFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The settings which control how a web client handles and parses the responses it receives. A snapshot of the current
+ * defaults in {@link HttpUnitOptions} and {@link HTMLParserFactory} is created by {@link #fromDefaults}; variations
+ * are derived with the <code>with</code> methods, each of which returns a new snapshot and leaves the original
+ * unchanged. Snapshots are immutable, and may therefore be shared freely between clients running in different threads.
+ *
+ * The one exception is the configuration returned by {@link #getDefaults}, which is not a snapshot: it reads the
+ * static defaults each time it is asked for a setting, and so changes whenever they do.
+ *
+ * A configuration is assigned to a client with {@link ClientProperties#setConfiguration}. Clients without one
+ * use the live defaults, and so continue to follow the static settings.
+ *
+ * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
+ **/
+public class HttpUnitConfiguration {
+
+
+    /**
+     * Returns a configuration which captures the current settings of {@link HttpUnitOptions} and
+     * {@link HTMLParserFactory}. Later changes to those settings do not affect the returned object.
+     */
+    public static HttpUnitConfiguration fromDefaults() {
+        HttpUnitConfiguration configuration = new HttpUnitConfiguration();
+        configuration._redirectDelay         = HttpUnitOptions.getRedirectDelay();
+        configuration._loggingHttpHeaders    = HttpUnitOptions.isLoggingHttpHeaders();
+        configuration._characterSet          = HttpUnitOptions.getDefaultCharacterSet();
+        configuration._contentType           = HttpUnitOptions.getDefaultContentType();
+        configuration._checkContentLength    = HttpUnitOptions.isCheckContentLength();
+        configuration._checkHtmlContentType  = HttpUnitOptions.isCheckHtmlContentType();
+        configuration._scriptingEnabled      = HttpUnitOptions.isScriptingEnabled();
+        configuration._htmlParser            = HTMLParserFactory.getHTMLParser();
+        configuration._preserveTagCase       = HTMLParserFactory.isPreserveTagCase();
+        configuration._returnHTMLDocument    = HTMLParserFactory.isReturnHTMLDocument();
+        configuration._forceUpperCase        = HTMLParserFactory.getForceUpperCase();
+        configuration._forceLowerCase        = HTMLParserFactory.getForceLowerCase();
+        configuration._parserWarningsEnabled = HTMLParserFactory.isParserWarningsEnabled();
+        configuration._parserListeners       = Collections.unmodifiableList( HTMLParserFactory.getHTMLParserListeners() );
+        return configuration;
+    }
+
+
+    /**
+     * Returns a configuration which always reflects the current settings of {@link HttpUnitOptions} and
+     * {@link HTMLParserFactory}, for clients which have none of their own. Its <code>with</code> methods
+     * return snapshots.
+     */
+    public static HttpUnitConfiguration getDefaults() {
+        return LIVE_DEFAULTS;
+    }
+
+
+    /**
+     * Returns the delay in milliseconds before a redirect request is sent.
+     */
+    public int getRedirectDelay() {
+        return _redirectDelay;
+    }
+
+
+    /**
+     * Returns a copy of this configuration with the specified redirect delay.
+     */
+    public HttpUnitConfiguration withRedirectDelay( int delayInMilliseconds ) {
+        HttpUnitConfiguration configuration = copy();
+        configuration._redirectDelay = delayInMilliseconds;
+        return configuration;
+    }
+
+
+    /**
+     * Returns true if HTTP headers are to be dumped to system output.
+     */
+    public boolean isLoggingHttpHeaders() {
+        return _loggingHttpHeaders;
+    }
+
+
+    /**
+     * Returns a copy of this configuration which does or does not dump HTTP headers to system output.
+     */
+    public HttpUnitConfiguration withLoggingHttpHeaders( boolean enabled ) {
+        HttpUnitConfiguration configuration = copy();
+        configuration._loggingHttpHeaders = enabled;
+        return configuration;
+    }
+
+
+    /**
+     * Returns the character set to be used when the server does not specify one.
+     */
+    public String getDefaultCharacterSet() {
+        return _characterSet;
+    }
+
+
+    /**
+     * Returns a copy of this configuration with the specified default character set.
+     */
+    public HttpUnitConfiguration withDefaultCharacterSet( String characterSet ) {
+        HttpUnitConfiguration configuration = copy();
+        configuration._characterSet = characterSet;
+        return configuration;
+    }
+
+
+    /**
+     * Returns the content type to be assumed when the server does not specify one.
+     */
+    public String getDefaultContentType() {
+        return _contentType;
+    }
+
+
+    /**
+     * Returns a copy of this configuration with the specified default content type.
+     */
+    public HttpUnitConfiguration withDefaultContentType( String contentType ) {
+        HttpUnitConfiguration configuration = copy();
+        configuration._contentType = contentType;
+        return configuration;
+    }
+
+
+    /**
+     * Returns true if the content length of responses is to be checked against the number of bytes received.
+     */
+    public boolean isCheckContentLength() {
+        return _checkContentLength;
+    }
+
+
+    /**
+     * Returns a copy of this configuration which does or does not check the content length of responses.
+     */
+    public HttpUnitConfiguration withCheckContentLength( boolean checkContentLength ) {
+        HttpUnitConfiguration configuration = copy();
+        configuration._checkContentLength = checkContentLength;
+        return configuration;
+    }
+
+
+    /**
+     * Returns true if requesting HTML-specific information from a non-HTML response is to throw an exception.
+     */
+    public boolean isCheckHtmlContentType() {
+        return _checkHtmlContentType;
+    }
+
+
+    /**
+     * Returns a copy of this configuration which does or does not check the content type of responses
+     * before returning HTML-specific information.
+     */
+    public HttpUnitConfiguration withCheckHtmlContentType( boolean checkHtmlContentType ) {
+        HttpUnitConfiguration configuration = copy();
+        configuration._checkHtmlContentType = checkHtmlContentType;
+        return configuration;
+    }
+
+
+    /**
+     * Returns true if scripts in received pages are to be run.
+     */
+    public boolean isScriptingEnabled() {
+        return _scriptingEnabled;
+    }
+
+
+    /**
+     * Returns a copy of this configuration which does or does not run scripts in received pages.
+     * The scripting engine itself is always the one selected in {@link HttpUnitOptions}.
+     */
+    public HttpUnitConfiguration withScriptingEnabled( boolean scriptingEnabled ) {
+        HttpUnitConfiguration configuration = copy();
+        configuration._scriptingEnabled = scriptingEnabled;
+        return configuration;
+    }
+
+
+    /**
+     * Returns the scripting engine to be used, or a disabled engine if scripting is turned off.
+     */
+    public ScriptingEngineFactory getScriptingEngine() {
+        return _scriptingEnabled ? HttpUnitOptions.getScriptingEngine() : HttpUnitOptions.NULL_SCRIPTING_ENGINE_FACTORY;
+    }
+
+
+    /**
+     * Returns the parser to be used for HTML pages.
+     */
+    public HTMLParser getHTMLParser() {
+        return _htmlParser;
+    }
+
+
+    /**
+     * Returns a copy of this configuration which parses pages with the specified parser.
+     */
+    public HttpUnitConfiguration withHTMLParser( HTMLParser htmlParser ) {
+        if (htmlParser == null) throw new IllegalArgumentException( "No HTML parser specified" );
+        HttpUnitConfiguration configuration = copy();
+        configuration._htmlParser = htmlParser;
+        return configuration;
+    }
+
+
+    /**
+     * Returns true if the parser will preserve the case of HTML tags and attributes.
+     */
+    public boolean isPreserveTagCase() {
+        return _preserveTagCase && _htmlParser.supportsPreserveTagCase();
+    }
+
+
+    /**
+     * Returns a copy of this configuration which does or does not preserve the case of HTML tags and attributes.
+     * As with {@link HTMLParserFactory#setPreserveTagCase}, enabling this clears any forced tag case.
+     */
+    public HttpUnitConfiguration withPreserveTagCase( boolean preserveTagCase ) {
+        HttpUnitConfiguration configuration = copy();
+        configuration._preserveTagCase = preserveTagCase;
+        if (preserveTagCase) {
+            configuration._forceUpperCase = false;
+            configuration._forceLowerCase = false;
+        }
+        return configuration;
+    }
+
+
+    /**
+     * Returns true if the parser will return an HTMLDocument object rather than a Document object.
+     */
+    public boolean isReturnHTMLDocument() {
+        return _returnHTMLDocument && !isPreserveTagCase() && _htmlParser.supportsReturnHTMLDocument();
+    }
+
+
+    /**
+     * Returns a copy of this configuration which does or does not ask the parser for an HTMLDocument object.
+     * As with {@link HTMLParserFactory#setReturnHTMLDocument}, enabling this clears any tag case settings.
+     */
+    public HttpUnitConfiguration withReturnHTMLDocument( boolean returnHTMLDocument ) {
+        HttpUnitConfiguration configuration = copy();
+        configuration._returnHTMLDocument = returnHTMLDocument;
+        if (returnHTMLDocument) {
+            configuration._preserveTagCase = false;
+            configuration._forceUpperCase = false;
+            configuration._forceLowerCase = false;
+        }
+        return configuration;
+    }
+
+
+    /**
+     * Returns true if the parser will force HTML tags and attributes to upper case.
+     */
+    public boolean getForceUpperCase() {
+        return _forceUpperCase && _htmlParser.supportsPreserveTagCase();
+    }
+
+
+    /**
+     * Returns true if the parser will force HTML tags and attributes to lower case.
+     */
+    public boolean getForceLowerCase() {
+        return _forceLowerCase && _htmlParser.supportsPreserveTagCase();
+    }
+
+
+    /**
+     * Returns true if the parser will display warning messages.
+     */
+    public boolean isParserWarningsEnabled() {
+        return _parserWarningsEnabled && _htmlParser.supportsParserWarnings();
+    }
+
+
+    /**
+     * Returns a copy of this configuration which does or does not display parser warnings.
+     */
+    public HttpUnitConfiguration withParserWarningsEnabled( boolean enabled ) {
+        HttpUnitConfiguration configuration = copy();
+        configuration._parserWarningsEnabled = enabled;
+        return configuration;
+    }
+
+
+    /**
+     * Returns the listeners to be notified of parser errors and warnings, as an unmodifiable list.
+     */
+    public List getHTMLParserListeners() {
+        return _parserListeners;
+    }
+
+
+    /**
+     * Returns a copy of this configuration which also notifies the specified listener of parser errors and warnings.
+     */
+    public HttpUnitConfiguration withHTMLParserListener( HTMLParserListener listener ) {
+        HttpUnitConfiguration configuration = copy();
+        List listeners = new ArrayList( getHTMLParserListeners() );
+        listeners.add( listener );
+        configuration._parserListeners = Collections.unmodifiableList( listeners );
+        return configuration;
+    }
+
+
+//--------------------------------- private members --------------------------------------
+
+
+    private int        _redirectDelay;
+    private boolean    _loggingHttpHeaders;
+    private String     _characterSet;
+    private String     _contentType;
+    private boolean    _checkContentLength;
+    private boolean    _checkHtmlContentType;
+    private boolean    _scriptingEnabled;
+    private HTMLParser _htmlParser;
+    private boolean    _preserveTagCase;
+    private boolean    _returnHTMLDocument;
+    private boolean    _forceUpperCase;
+    private boolean    _forceLowerCase;
+    private boolean    _parserWarningsEnabled;
+    private List       _parserListeners;
+
+
+    private HttpUnitConfiguration() {
+    }
+
+
+    private static final HttpUnitConfiguration LIVE_DEFAULTS = new LiveDefaults();
+
+
+    HttpUnitConfiguration copy() {
+        HttpUnitConfiguration configuration = new HttpUnitConfiguration();
+        configuration._redirectDelay         = _redirectDelay;
+        configuration._loggingHttpHeaders    = _loggingHttpHeaders;
+        configuration._characterSet          = _characterSet;
+        configuration._contentType           = _contentType;
+        configuration._checkContentLength    = _checkContentLength;
+        configuration._checkHtmlContentType  = _checkHtmlContentType;
+        configuration._scriptingEnabled      = _scriptingEnabled;
+        configuration._htmlParser            = _htmlParser;
+        configuration._preserveTagCase       = _preserveTagCase;
+        configuration._returnHTMLDocument    = _returnHTMLDocument;
+        configuration._forceUpperCase        = _forceUpperCase;
+        configuration._forceLowerCase        = _forceLowerCase;
+        configuration._parserWarningsEnabled = _parserWarningsEnabled;
+        configuration._parserListeners       = _parserListeners;
+        return configuration;
+    }
+
+
+    /**
+     * The configuration which reads each setting from HttpUnitOptions and HTMLParserFactory when it is requested.
+     */
+    private static class LiveDefaults extends HttpUnitConfiguration {
+
+        HttpUnitConfiguration copy() {
+            return fromDefaults();
+        }
+
+
+        public int getRedirectDelay() {
+            return HttpUnitOptions.getRedirectDelay();
+        }
+
+
+        public boolean isLoggingHttpHeaders() {
+            return HttpUnitOptions.isLoggingHttpHeaders();
+        }
+
+
+        public String getDefaultCharacterSet() {
+            return HttpUnitOptions.getDefaultCharacterSet();
+        }
+
+
+        public String getDefaultContentType() {
+            return HttpUnitOptions.getDefaultContentType();
+        }
+
+
+        public boolean isCheckContentLength() {
+            return HttpUnitOptions.isCheckContentLength();
+        }
+
+
+        public boolean isCheckHtmlContentType() {
+            return HttpUnitOptions.isCheckHtmlContentType();
+        }
+
+
+        public boolean isScriptingEnabled() {
+            return HttpUnitOptions.isScriptingEnabled();
+        }
+
+
+        public ScriptingEngineFactory getScriptingEngine() {
+            return isScriptingEnabled() ? HttpUnitOptions.getScriptingEngine() : HttpUnitOptions.NULL_SCRIPTING_ENGINE_FACTORY;
+        }
+
+
+        public HTMLParser getHTMLParser() {
+            return HTMLParserFactory.getHTMLParser();
+        }
+
+
+        public boolean isPreserveTagCase() {
+            return HTMLParserFactory.isPreserveTagCase();
+        }
+
+
+        public boolean isReturnHTMLDocument() {
+            return HTMLParserFactory.isReturnHTMLDocument();
+        }
+
+
+        public boolean getForceUpperCase() {
+            return HTMLParserFactory.getForceUpperCase();
+        }
+
+
+        public boolean getForceLowerCase() {
+            return HTMLParserFactory.getForceLowerCase();
+        }
+
+
+        public boolean isParserWarningsEnabled() {
+            return HTMLParserFactory.isParserWarningsEnabled();
+        }
+
+
+        public List getHTMLParserListeners() {
+            return Collections.unmodifiableList( HTMLParserFactory.getHTMLParserListeners() );
+        }
+    }
+}
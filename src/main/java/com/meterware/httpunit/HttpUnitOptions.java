@@ -73,6 +73,10 @@ public abstract class HttpUnitOptions {
         _exceptionsThrownOnScriptError = true;
         _customAttributes = null;
         _javaScriptOptimizationLevel = -1;
+        _scriptInstructionLimit = 0;
+        _scriptTimeLimit = 0;
+        _pageScriptInstructionLimit = 0;
+        _pageScriptTimeLimit = 0;
         _checkHtmlContentType = false;
         setScriptEngineClassName( DEFAULT_SCRIPT_ENGINE_FACTORY );
         setScriptingEnabled( true );
@@ -515,7 +519,7 @@ public abstract class HttpUnitOptions {
 
     private static final String DEFAULT_CONTENT_TYPE   = "text/html";
 
-    private static final ScriptingEngineFactory NULL_SCRIPTING_ENGINE_FACTORY = new ScriptingEngineFactory() {
+    static final ScriptingEngineFactory NULL_SCRIPTING_ENGINE_FACTORY = new ScriptingEngineFactory() {
         public boolean isEnabled() { return false; }
         public void associate( WebResponse response ) {}
         public void load( WebResponse response ) {}
@@ -582,6 +586,14 @@ public abstract class HttpUnitOptions {
     
     private static int _javaScriptOptimizationLevel = -1;
 
+    private static long _scriptInstructionLimit;
+
+    private static long _scriptTimeLimit;
+
+    private static long _pageScriptInstructionLimit;
+
+    private static long _pageScriptTimeLimit;
+
     private static boolean _checkHtmlContentType = false;
 
 
@@ -609,9 +621,93 @@ public abstract class HttpUnitOptions {
   	 *    -1: interpret
      * 0: compile to Java bytecode, don't optimize
      * 1..9: compile to Java bytecode, optimize 		 * 
+		 * The level applies to page scripts, event handlers and javascript: URLs alike;
+		 * a script too large to compile to bytecode is interpreted instead.
 		 */
 		public static void setJavaScriptOptimizationLevel(
 				int scriptOptimizationLevel) {
 			_javaScriptOptimizationLevel = scriptOptimizationLevel;
 		}
+
+
+    /**
+     * Returns the number of instructions which a single script, event handler or javascript: URL may execute
+     * before it is aborted, or zero if there is no limit.
+     */
+    public static long getScriptInstructionLimit() {
+        return _scriptInstructionLimit;
+    }
+
+
+    /**
+     * Limits the number of instructions which a single script, event handler or javascript: URL may execute.
+     * A script which exceeds its limit is aborted with a ScriptException. Since instructions can be counted only for
+     * interpreted scripts, scripts are interpreted while any limit is set, whatever the JavaScript optimization level.
+     * @param limit the maximum number of instructions, or zero for no limit (the default)
+     */
+    public static void setScriptInstructionLimit( long limit ) {
+        _scriptInstructionLimit = limit;
+    }
+
+
+    /**
+     * Returns the time in milliseconds for which a single script, event handler or javascript: URL may run
+     * before it is aborted, or zero if there is no limit.
+     */
+    public static long getScriptTimeLimit() {
+        return _scriptTimeLimit;
+    }
+
+
+    /**
+     * Limits the time for which a single script, event handler or javascript: URL may run. A script which
+     * exceeds its limit is aborted with a ScriptException. Scripts are interpreted while any limit is set, whatever the
+     * JavaScript optimization level, since the time is checked only for interpreted scripts. The time is checked
+     * every 10000 instructions, or as often as the smallest instruction limit if that is lower, so a script may
+     * overrun its limit by the time it takes to run that many instructions.
+     * @param millis the maximum time in milliseconds, or zero for no limit (the default)
+     */
+    public static void setScriptTimeLimit( long millis ) {
+        _scriptTimeLimit = millis;
+    }
+
+
+    /**
+     * Returns the total number of instructions which the scripts of a single page may execute, or zero if there
+     * is no limit.
+     */
+    public static long getPageScriptInstructionLimit() {
+        return _pageScriptInstructionLimit;
+    }
+
+
+    /**
+     * Limits the total number of instructions which the scripts of a single page may execute, including its
+     * event handlers. Once the limit is reached, each further script run for the page is aborted with a ScriptException.
+     * @param limit the maximum number of instructions, or zero for no limit (the default)
+     */
+    public static void setPageScriptInstructionLimit( long limit ) {
+        _pageScriptInstructionLimit = limit;
+    }
+
+
+    /**
+     * Returns the total time in milliseconds for which the scripts of a single page may run, or zero if there
+     * is no limit.
+     */
+    public static long getPageScriptTimeLimit() {
+        return _pageScriptTimeLimit;
+    }
+
+
+    /**
+     * Limits the total time for which the scripts of a single page may run, including its event handlers.
+     * Once the limit is reached, each further script run for the page is aborted with a ScriptException.
+     * As with setScriptTimeLimit, the time is checked only every so many instructions, so the scripts may overrun
+     * the limit slightly before they are aborted.
+     * @param millis the maximum time in milliseconds, or zero for no limit (the default)
+     */
+    public static void setPageScriptTimeLimit( long millis ) {
+        _pageScriptTimeLimit = millis;
+    }
 }
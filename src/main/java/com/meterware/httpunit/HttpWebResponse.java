@@ -20,18 +20,13 @@ package com.meterware.httpunit;
 *
 *******************************************************************************************************************/
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
-import java.net.UnknownHostException;
 
 import java.util.Enumeration;
 import java.util.Hashtable;
-import java.util.StringTokenizer;
 import java.util.Vector;
 
 
@@ -46,83 +41,43 @@ class HttpWebResponse extends WebResponse {
 
 
     /**
-     * Constructs a response object from an input stream.
+     * Constructs a response object from the reply returned by a transport.
      * @param frame the target window or frame to which the request should be directed
      * @param url the url from which the response was received
-     * @param connection the URL connection from which the response can be read
+     * @param reply the transport reply from which the response can be read
      **/
-    HttpWebResponse( WebConversation client, FrameSelector frame, URL url, URLConnection connection, boolean throwExceptionOnError ) throws IOException {
+    HttpWebResponse( WebConversation client, FrameSelector frame, URL url, HttpTransportResponse reply, boolean throwExceptionOnError ) throws IOException {
         super( client, frame, url );
-        if (HttpUnitOptions.isLoggingHttpHeaders()) System.out.println( "\nReceived from " + url );
-        readHeaders( connection );
+        if (getConfiguration().isLoggingHttpHeaders()) System.out.println( "\nReceived from " + url );
+        readHeaders( reply );
 
         /** make sure that any IO exception for HTML received page happens here, not later. **/
         if (_responseCode < HttpURLConnection.HTTP_BAD_REQUEST || !throwExceptionOnError) {
-        	InputStream inputStream = getInputStream( connection );
-            defineRawInputStream( new BufferedInputStream( inputStream ) );
+            defineRawInputStream( new BufferedInputStream( reply.getInputStream() ) );
             String contentType = getContentType();
-            if (contentType.startsWith( "text" ))	{
+            if (contentType.startsWith( "text" ) && !client.getClientProperties().isStreamingResponses())	{
             	loadResponseText();
             }
+        } else {
+            discardBody( reply );
         }
     }
 
 
-    HttpWebResponse( WebConversation client, FrameSelector frame, WebRequest request, URLConnection connection, boolean throwExceptionOnError ) throws IOException {
-        this( client, frame, request.getURL(), connection, throwExceptionOnError );
+    HttpWebResponse( WebConversation client, FrameSelector frame, WebRequest request, HttpTransportResponse reply, boolean throwExceptionOnError ) throws IOException {
+        this( client, frame, request.getURL(), reply, throwExceptionOnError );
         super.setWithParse(!request.getMethod().equals("HEAD"));
         _referer = request.getReferer();
     }
 
 
-
     /**
-     * get the input stream for the given connection 
-     * @param connection
-     * @return
-     * @throws IOException
+     * Closes the unread body of an error reply, allowing the transport to reuse its connection.
      */
-    private InputStream getInputStream( URLConnection connection ) throws IOException {
-    	InputStream result=null;
-    	// check whether there is an error stream
-    	if (isResponseOnErrorStream( connection )) {
-    		result=((HttpURLConnection) connection).getErrorStream();
-    	} else  {     		
-    		// if there is no error stream it depends on the response code
-    		try {
-    			result=connection.getInputStream();
-    		} catch (java.io.FileNotFoundException fnfe) {
-    			// as of JDK 1.5 a null inputstream might have been returned here
-    			// see bug report [ 1283878 ] FileNotFoundException using Sun JDK 1.5 on empty error pages
-    			// by Roger Lindsj?
-    			if (isErrorResponse(connection)) {
-    				// fake an empty error stream
-    				result=new ByteArrayInputStream(new byte[0]);
-    			} else {
-    				throw fnfe;
-    			}
-    		}
-    	}
-    	return result;
-    }
-
-
-    /**
-     * check whether a response code >=400 was received
-     * @param connection
-     * @return
-     */
-    private boolean isErrorResponse(URLConnection connection ) {
-    	return _responseCode >= HttpURLConnection.HTTP_BAD_REQUEST;
-    }
-    
-    /**
-     * check whether the response is on the error stream
-     * @param connection
-     * @return
-     */
-    private boolean isResponseOnErrorStream( URLConnection connection ) {
-      return isErrorResponse(connection) && ((HttpURLConnection) connection).getErrorStream() != null;
+    private void discardBody( HttpTransportResponse reply ) {
+        try {
+            reply.getInputStream().close();
+        } catch (IOException e) { /* the body is not needed */ }
     }
 
 
@@ -191,97 +146,46 @@ class HttpWebResponse extends WebResponse {
 //------------------------------------- private members -------------------------------------
 
 
-    private final static String FILE_ENCODING = System.getProperty( "file.encoding" );
-
-
     private int       _responseCode    = HttpURLConnection.HTTP_OK;
 	private String    _responseMessage = "OK";
-    
-	/**
-	 * set the responseCode to the given code and message
-	 * @param code
-	 * @param message
-	 */
-    private  void setResponseCode(int code, String message) {
-		_responseCode = code;
-		_responseMessage=message;
-	}
 
     private Hashtable _headers = new Hashtable();
 
+
     /**
-     * read the response Header for the given connection and set the response code and
+     * read the headers of the given reply and set the response code and
      * message accordingly
-     * @param connection
+     * @param reply
      * @throws IOException
      */
-    private void readResponseHeader( HttpURLConnection connection ) throws IOException {
-        if (!needStatusWorkaround()) {
-            setResponseCode(connection.getResponseCode(),connection.getResponseMessage());
-        } else {
-             if (connection.getHeaderField(0) == null) throw new UnknownHostException( connection.getURL().toExternalForm() );
-
-            StringTokenizer st = new StringTokenizer( connection.getHeaderField(0) );
-            st.nextToken();
-            if (!st.hasMoreTokens()) {
-                setResponseCode(HttpURLConnection.HTTP_OK,"OK");
-            } else try {
-                setResponseCode(Integer.parseInt( st.nextToken()) ,getRemainingTokens( st ));
-            } catch (NumberFormatException e) {
-                setResponseCode (HttpURLConnection.HTTP_INTERNAL_ERROR,"Cannot parse response header");
-            }
-        }
-    }
-
-    private boolean needStatusWorkaround() {
-        final String jdkVersion = System.getProperty( "java.version" );
-        return jdkVersion.startsWith( "1.2" ) || jdkVersion.startsWith( "1.3" );
+    private void readHeaders( HttpTransportResponse reply ) throws IOException {
+        loadHeaders( reply );
+        _responseCode = reply.getResponseCode();
+        _responseMessage = reply.getResponseMessage();
     }
 
 
-    private String getRemainingTokens( StringTokenizer st ) {
-        StringBuffer messageBuffer = new StringBuffer( st.hasMoreTokens() ? st.nextToken() : "" );
-        while (st.hasMoreTokens()) {
-            messageBuffer.append( ' ' ).append( st.nextToken() );
+    private void loadHeaders( HttpTransportResponse reply ) {
+        boolean loggingHttpHeaders = getConfiguration().isLoggingHttpHeaders();
+        if (loggingHttpHeaders) {
+            System.out.println( "Header:: " + reply.getStatusLine() );
         }
-        return messageBuffer.toString();
-    }
-
-
-    private void readHeaders( URLConnection connection ) throws IOException {
-        loadHeaders( connection );
-        if (connection instanceof HttpURLConnection) {
-            readResponseHeader( (HttpURLConnection) connection );
-        } else {
-            setResponseCode (HttpURLConnection.HTTP_OK, "OK");
-            if (connection.getContentType().startsWith( "text" )) {
-                setContentTypeHeader( connection.getContentType() + "; charset=" + FILE_ENCODING );
-            }
-        }
-    }
-
-
-    private void loadHeaders( URLConnection connection ) {
-        if (HttpUnitOptions.isLoggingHttpHeaders()) {
-            System.out.println( "Header:: " + connection.getHeaderField(0) );
-        }
-        for (int i = 1; true; i++) {
-            String headerFieldKey = connection.getHeaderFieldKey( i );
-            String headerField = connection.getHeaderField(i);
-            if (headerFieldKey == null || headerField == null) break;
-            if (HttpUnitOptions.isLoggingHttpHeaders()) {
+        int count = reply.getHeaderFieldCount();
+        for (int i = 0; i < count; i++) {
+            String headerFieldKey = reply.getHeaderFieldKey( i );
+            String headerField = reply.getHeaderField( i );
+            if (loggingHttpHeaders) {
                 System.out.println( "Header:: " + headerFieldKey + ": " + headerField );
             }
             addHeader( headerFieldKey.toUpperCase(), headerField );
         }
 
-        if (connection.getContentType() != null) {
-            setContentTypeHeader( connection.getContentType() );
+        if (reply.getContentType() != null) {
+            setContentTypeHeader( reply.getContentType() );
         }
     }
 
 
-
     private void addHeader( String key, String field ) {
         _headers.put( key, HttpUnitUtils.withNewValue( (String[]) _headers.get( key ), field ) );
     }
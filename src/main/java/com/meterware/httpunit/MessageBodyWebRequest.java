@@ -27,6 +27,7 @@ import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 
@@ -39,6 +40,9 @@ abstract
 public class MessageBodyWebRequest extends WebRequest {
 
     protected MessageBody _body;
+
+    /** The size of the chunks used to send a body whose length is not known in advance. **/
+    private static final int CHUNK_SIZE = 8 * 1024;
     private boolean _mimeEncoded;
 
 
@@ -108,13 +112,27 @@ public class MessageBodyWebRequest extends WebRequest {
     }
 
 
+    protected long getMessageBodyLength() throws IOException {
+        return getMessageBody().getContentLength( getParameterHolder() );
+    }
+
+
     /**
-     * Performs any additional processing necessary to complete the request.
+     * Performs any additional processing necessary to complete the request. The body is streamed to the connection
+     * with a fixed length if it is known in advance, and in chunks otherwise, so that it is never held in memory.
      **/
     protected void completeRequest( URLConnection connection ) throws IOException {
         super.completeRequest( connection );
         connection.setDoInput( true );
         connection.setDoOutput( true );
+        if (connection instanceof HttpURLConnection) {
+            long length = getMessageBodyLength();
+            if (length >= 0 && length <= Integer.MAX_VALUE) {
+                ((HttpURLConnection) connection).setFixedLengthStreamingMode( (int) length );
+            } else {
+                ((HttpURLConnection) connection).setChunkedStreamingMode( CHUNK_SIZE );
+            }
+        }
 
         OutputStream stream = connection.getOutputStream();
         writeMessageBody( stream );
@@ -33,6 +33,7 @@ import java.io.IOException;
 import javax.management.RuntimeErrorException;
 
 import com.meterware.httpunit.scripting.ScriptableDelegate;
+import com.meterware.httpunit.scripting.ScriptingEngineFactory;
 import com.meterware.httpunit.dom.HTMLContainerElement;
 import com.meterware.httpunit.dom.HTMLDocumentImpl;
 import com.meterware.httpunit.dom.HTMLControl;
@@ -377,7 +378,7 @@ public class ParsedHTML {
      * @param element
      */
     void interpretScriptElement( Element element ) {
-        if (!HttpUnitOptions.isScriptingEnabled()) {
+        if (!getResponse().getConfiguration().isScriptingEnabled()) {
             _enableNoScriptNodes = true;
             return;
         }
@@ -427,7 +428,7 @@ public class ParsedHTML {
         WebWindow window = getResponse().getWindow();
         if (window == null) 
         	throw new IllegalStateException( "Unable to retrieve script included by this response, since it was loaded by getResource(). Use getResponse() instead.");
-        WebResponse response = window.getResource( req );
+        WebResponse response = getIncludedScriptResource( window, req );
         // check whether the Source is available
         int code = response.getResponseCode();
         // if everything is o.k.
@@ -441,12 +442,28 @@ public class ParsedHTML {
         	ScriptException se=new ScriptException("reponseCode "+code+" on getIncludedScript for src='"+srcAttribute+"'");
         	String badScript=null;
         	// let scripting engine decide what to do with this exception (throw it or remember it ...)
-        	HttpUnitOptions.getScriptingEngine().handleScriptException(se, badScript);
+        	ScriptingEngineFactory engine = getResponse().getConfiguration().getScriptingEngine();
+        	engine.handleScriptException(se, badScript);
+        	if (engine.isEnabled() && getResponse().getClient() != null) {
+        	    getResponse().getClient().postScriptError( new ScriptError( getResponse().getURL().toExternalForm(), -1, se.getMessage() ) );
+        	}
         	return "";
         }
     }
 
 
+    /**
+     * Retrieves the resource containing an included script.
+     * @param window the window which is to run the script
+     * @param request the request for the script
+     * @return the response containing the script
+     * @throws IOException if there is a problem retrieving the script
+     */
+    WebResponse getIncludedScriptResource( WebWindow window, WebRequest request ) throws IOException {
+        return window.getResource( request );
+    }
+
+
     /**
      * If noscript node content is enabled, returns null - otherwise returns a concealing element.
      */
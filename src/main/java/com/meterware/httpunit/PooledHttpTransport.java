@@ -0,0 +1,1057 @@
+package com.meterware.httpunit;
+/********************************************************************************************************************
+* $Id$
+*
+* Copyright (c) 2026, Russell Gold
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+* documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+* the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+* to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions
+* of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+* THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+* DEALINGS IN THE SOFTWARE.
+*
+*******************************************************************************************************************/
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import java.security.cert.Certificate;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+
+
+/**
+ * A transport which keeps HTTP/1.1 connections open between requests, so that later requests to the same
+ * host need not repeat the TCP and TLS handshakes. Connections are pooled per route (protocol, host and port);
+ * at most {@link #getMaxConnectionsPerRoute} connections to a route may be open at once, and idle connections are
+ * closed once they have been unused for longer than the {@link #getIdleTimeout idle timeout}.
+ * Requests for protocols other than http and https are sent via a URLConnectionTransport.
+ * Requests are sent through the proxy specified for the conversation, if any, or else through the proxy
+ * selected by the default ProxySelector. Secure requests are tunneled through HTTP proxies.
+ * <p>
+ * A connection is returned to the pool once the body of its reply has been read to the end, and is closed
+ * if the body stream is closed before then. Responses whose bodies are never read hold their connections;
+ * a request which finds all connections to its route so held fails once the {@link #getLeaseTimeout lease timeout}
+ * has passed.
+ * A single transport may be shared by many conversations.
+ *
+ * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
+ **/
+public class PooledHttpTransport implements HttpTransport {
+
+    /** The default maximum number of connections open at once to a single route. **/
+    public final static int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 5;
+
+    /** The default time in milliseconds for which an unused connection is kept open. **/
+    public final static long DEFAULT_IDLE_TIMEOUT = 30000;
+
+    /** The default time in milliseconds for which a request waits for a connection when all are in use. **/
+    public final static long DEFAULT_LEASE_TIMEOUT = 60000;
+
+    private final static String CRLF = "\r\n";
+
+    private final static String HEADER_ENCODING = "iso-8859-1";
+
+    /** The body length used for requests without a body. **/
+    private final static long NO_BODY = -2;
+
+    private final HttpTransport _fallbackTransport = new URLConnectionTransport();
+
+    /** A map of route keys to routes. **/
+    private final Map _routes = new HashMap();
+
+    private int  _maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private long _idleTimeout            = DEFAULT_IDLE_TIMEOUT;
+    private long _leaseTimeout           = DEFAULT_LEASE_TIMEOUT;
+
+    private int _connectionsOpened;
+    private int _connectionsReused;
+    private int _connectionsClosed;
+
+
+    /**
+     * Returns the maximum number of connections which may be open at once to a single route.
+     */
+    public synchronized int getMaxConnectionsPerRoute() {
+        return _maxConnectionsPerRoute;
+    }
+
+
+    /**
+     * Specifies the maximum number of connections which may be open at once to a single route. A request which
+     * needs a connection when that many are in use waits until one is released, or the lease timeout passes.
+     */
+    public synchronized void setMaxConnectionsPerRoute( int maxConnectionsPerRoute ) {
+        if (maxConnectionsPerRoute <= 0) throw new IllegalArgumentException( "Must allow at least one connection per route" );
+        _maxConnectionsPerRoute = maxConnectionsPerRoute;
+        notifyAll();
+    }
+
+
+    /**
+     * Returns the time in milliseconds for which an unused connection is kept open.
+     */
+    public synchronized long getIdleTimeout() {
+        return _idleTimeout;
+    }
+
+
+    /**
+     * Specifies the time in milliseconds for which an unused connection is kept open. If zero, connections are
+     * closed as soon as they are released.
+     */
+    public synchronized void setIdleTimeout( long idleTimeout ) {
+        if (idleTimeout < 0) throw new IllegalArgumentException( "Idle timeout may not be negative" );
+        _idleTimeout = idleTimeout;
+    }
+
+
+    /**
+     * Returns the time in milliseconds for which a request waits for a connection when the maximum number of
+     * connections to its route are in use.
+     */
+    public synchronized long getLeaseTimeout() {
+        return _leaseTimeout;
+    }
+
+
+    /**
+     * Specifies the time in milliseconds for which a request waits for a connection when the maximum number of
+     * connections to its route are in use, after which it fails with an IOException. A positive connect timeout
+     * set on the conversation is used instead.
+     */
+    public synchronized void setLeaseTimeout( long leaseTimeout ) {
+        if (leaseTimeout <= 0) throw new IllegalArgumentException( "Lease timeout must be positive" );
+        _leaseTimeout = leaseTimeout;
+    }
+
+
+    /**
+     * Returns a snapshot of the connection statistics for this transport.
+     */
+    public synchronized Statistics getStatistics() {
+        int leased = 0;
+        int idle = 0;
+        for (Iterator i = _routes.values().iterator(); i.hasNext();) {
+            Route route = (Route) i.next();
+            leased += route._leased;
+            idle += route._idle.size();
+        }
+        return new Statistics( _connectionsOpened, _connectionsReused, _connectionsClosed, leased, idle );
+    }
+
+
+    /**
+     * Closes all connections which are not currently in use.
+     */
+    public void closeIdleConnections() {
+        List connections = new ArrayList();
+        synchronized (this) {
+            for (Iterator i = _routes.values().iterator(); i.hasNext();) {
+                Route route = (Route) i.next();
+                connections.addAll( route._idle );
+                route._idle.clear();
+                if (route._leased == 0) i.remove();
+            }
+            _connectionsClosed += connections.size();
+        }
+        closeAll( connections );
+    }
+
+
+    public HttpTransportResponse send( WebConversation client, WebRequest request, URL url, Dictionary headers ) throws IOException {
+        if (!isHttpProtocol( url.getProtocol() )) return _fallbackTransport.send( client, request, url, headers );
+
+        Proxy proxy = selectProxy( client, url );
+        boolean tunneled = isSecure( url ) && proxy.type() == Proxy.Type.HTTP;
+        long bodyLength = request instanceof MessageBodyWebRequest ? request.getMessageBodyLength() : NO_BODY;
+        byte[] message = createRequestHeader( request, url, headers, bodyLength, proxy.type() == Proxy.Type.HTTP && !tunneled, tunneled );
+        boolean closeRequested = "close".equalsIgnoreCase( getHeader( headers, "Connection" ) );
+        String proxyAuthorization = tunneled ? getHeader( headers, "Proxy-Authorization" ) : null;
+        String routeKey = getRouteKey( url, proxy );
+
+        PooledConnection connection = lease( routeKey, url, proxy, proxyAuthorization, client.get_connectTimeout() );
+        try {
+            return connection.exchange( message, request, bodyLength, client.get_readTimeout(), closeRequested );
+        } catch (IOException e) {
+            release( connection, false );
+            if (!connection.isReused() || e instanceof SocketTimeoutException) throw e;
+            if (!mayResend( request, bodyLength, connection )) throw e;
+        }
+
+        // the server closed a pooled connection; any others to the same route are likely to be stale as well
+        closeIdleConnections( routeKey );
+        connection = lease( routeKey, url, proxy, proxyAuthorization, client.get_connectTimeout() );
+        try {
+            return connection.exchange( message, request, bodyLength, client.get_readTimeout(), closeRequested );
+        } catch (IOException e) {
+            release( connection, false );
+            throw e;
+        }
+    }
+
+
+//------------------------------------------ private members -------------------------------------
+
+
+    /** The methods which may be repeated without changing the result. **/
+    private final static String[] IDEMPOTENT_METHODS = { "GET", "HEAD", "OPTIONS", "TRACE", "PUT", "DELETE" };
+
+
+    /**
+     * Returns true if a request which failed on a reused connection may be sent again. A request with a body is resent
+     * only if none of the body was written, since the body may not be replayable and the server may already have acted
+     * on it; one without a body is resent only if its method is idempotent.
+     */
+    private static boolean mayResend( WebRequest request, long bodyLength, PooledConnection connection ) {
+        if (bodyLength != NO_BODY) return !connection.isBodyStarted();
+
+        for (int i = 0; i < IDEMPOTENT_METHODS.length; i++) {
+            if (IDEMPOTENT_METHODS[i].equalsIgnoreCase( request.getMethod() )) return true;
+        }
+        return false;
+    }
+
+
+    private static boolean isHttpProtocol( String protocol ) {
+        return protocol.equalsIgnoreCase( "http" ) || protocol.equalsIgnoreCase( "https" );
+    }
+
+
+    private static boolean isSecure( URL url ) {
+        return url.getProtocol().equalsIgnoreCase( "https" );
+    }
+
+
+    private static int getPort( URL url ) {
+        if (url.getPort() != -1) return url.getPort();
+        return isSecure( url ) ? 443 : 80;
+    }
+
+
+    private static String getRouteKey( URL url, Proxy proxy ) {
+        String key = url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ':' + getPort( url );
+        return proxy.type() == Proxy.Type.DIRECT ? key : key + " via " + proxy;
+    }
+
+
+    /**
+     * Returns the proxy specified for the conversation, if any; otherwise, the first proxy chosen by the default ProxySelector.
+     */
+    private static Proxy selectProxy( WebConversation client, URL url ) {
+        if (client.getProxy() != null) return client.getProxy();
+
+        ProxySelector selector = ProxySelector.getDefault();
+        if (selector == null) return Proxy.NO_PROXY;
+        try {
+            List proxies = selector.select( new URI( url.getProtocol(), null, url.getHost(), url.getPort(), "/", null, null ) );
+            return (proxies == null || proxies.isEmpty()) ? Proxy.NO_PROXY : (Proxy) proxies.get( 0 );
+        } catch (URISyntaxException e) {
+            return Proxy.NO_PROXY;
+        }
+    }
+
+
+    private static String getHeader( Dictionary headers, String name ) {
+        for (Enumeration e = headers.keys(); e.hasMoreElements();) {
+            String key = (String) e.nextElement();
+            if (key.equalsIgnoreCase( name )) return (String) headers.get( key );
+        }
+        return null;
+    }
+
+
+    /**
+     * Builds the request line and headers. A body whose length is known is sent with a Content-Length header;
+     * any other body is sent with chunked transfer encoding.
+     * @param bodyLength the length of the body, -1 if it is unknown, or NO_BODY if there is none
+     */
+    private byte[] createRequestHeader( WebRequest request, URL url, Dictionary headers, long bodyLength, boolean absoluteURI, boolean tunneled ) throws IOException {
+        StringBuffer sb = new StringBuffer();
+        String file = url.getFile().length() == 0 ? "/" : url.getFile();
+        String target = absoluteURI ? new URL( url, file ).toExternalForm() : file;
+        sb.append( request.getMethod() ).append( ' ' ).append( target ).append( " HTTP/1.1" ).append( CRLF );
+        if (getHeader( headers, "Host" ) == null) {
+            sb.append( "Host: " ).append( url.getHost() );
+            if (url.getPort() != -1) sb.append( ':' ).append( url.getPort() );
+            sb.append( CRLF );
+        }
+        for (Enumeration e = headers.keys(); e.hasMoreElements();) {
+            String key = (String) e.nextElement();
+            if (key.equalsIgnoreCase( "Content-Length" ) || key.equalsIgnoreCase( "Transfer-Encoding" )) continue;
+            if (tunneled && key.equalsIgnoreCase( "Proxy-Authorization" )) continue;
+            sb.append( key ).append( ": " ).append( headers.get( key ) ).append( CRLF );
+        }
+        if (bodyLength >= 0) {
+            sb.append( "Content-Length: " ).append( bodyLength ).append( CRLF );
+        } else if (bodyLength != NO_BODY) {
+            sb.append( "Transfer-Encoding: chunked" ).append( CRLF );
+        }
+        sb.append( CRLF );
+        return sb.toString().getBytes( HEADER_ENCODING );
+    }
+
+
+    /**
+     * Obtains a connection to the specified route, reusing an idle one if possible. Waits if the
+     * maximum number of connections to the route are already in use, for at most the connect timeout, if set,
+     * or else the lease timeout.
+     */
+    private PooledConnection lease( String key, URL url, Proxy proxy, String proxyAuthorization, int connectTimeout ) throws IOException {
+        Route route;
+        synchronized (this) {
+            closeExpiredConnections();
+            long deadline = System.currentTimeMillis() + (connectTimeout > 0 ? connectTimeout : _leaseTimeout);
+            while (true) {
+                route = getRoute( key );
+                if (!route._idle.isEmpty()) {
+                    PooledConnection connection = (PooledConnection) route._idle.removeLast();
+                    route._leased++;
+                    _connectionsReused++;
+                    connection.setReused();
+                    return connection;
+                }
+                if (route._leased < _maxConnectionsPerRoute) {
+                    route._leased++;
+                    break;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException( "Timed out waiting for a connection to " + key
+                                           + "; the bodies of earlier responses may not have been read" );
+                }
+                try {
+                    wait( remaining );
+                } catch (InterruptedException e) {
+                    throw new IOException( "Interrupted while waiting for a connection to " + key );
+                }
+            }
+        }
+
+        try {
+            PooledConnection connection = new PooledConnection( route, openSocket( url, proxy, proxyAuthorization, connectTimeout ) );
+            synchronized (this) { _connectionsOpened++; }
+            return connection;
+        } catch (IOException e) {
+            synchronized (this) {
+                route._leased--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+
+    private Route getRoute( String key ) {
+        Route route = (Route) _routes.get( key );
+        if (route == null) _routes.put( key, route = new Route( key ) );
+        return route;
+    }
+
+
+    /**
+     * Returns a connection to the pool. If the connection may not be reused, closes it instead.
+     */
+    private void release( PooledConnection connection, boolean reusable ) {
+        synchronized (this) {
+            if (!connection.markReleased()) return;
+            Route route = connection.getRoute();
+            route._leased--;
+            notifyAll();
+            if (reusable && _idleTimeout > 0) {
+                route._idle.addLast( connection );
+                return;
+            }
+            _connectionsClosed++;
+            if (route._leased == 0 && route._idle.isEmpty()) _routes.remove( route._key );
+        }
+        connection.close();
+    }
+
+
+    private void closeIdleConnections( String key ) {
+        List connections = new ArrayList();
+        synchronized (this) {
+            Route route = (Route) _routes.get( key );
+            if (route == null) return;
+            connections.addAll( route._idle );
+            route._idle.clear();
+            _connectionsClosed += connections.size();
+        }
+        closeAll( connections );
+    }
+
+
+    /**
+     * Closes any idle connections which have been unused for longer than the idle timeout.
+     * Must be called while synchronized on this transport.
+     */
+    private void closeExpiredConnections() {
+        long expiration = System.currentTimeMillis() - _idleTimeout;
+        for (Iterator i = _routes.values().iterator(); i.hasNext();) {
+            Route route = (Route) i.next();
+            for (Iterator j = route._idle.iterator(); j.hasNext();) {
+                PooledConnection connection = (PooledConnection) j.next();
+                if (connection.getLastUsed() <= expiration) {
+                    j.remove();
+                    _connectionsClosed++;
+                    connection.close();
+                }
+            }
+            if (route._leased == 0 && route._idle.isEmpty()) i.remove();
+        }
+    }
+
+
+    private static void closeAll( Collection connections ) {
+        for (Iterator i = connections.iterator(); i.hasNext();) {
+            ((PooledConnection) i.next()).close();
+        }
+    }
+
+
+    private static Socket openSocket( URL url, Proxy proxy, String proxyAuthorization, int connectTimeout ) throws IOException {
+        Socket socket = proxy.type() == Proxy.Type.SOCKS ? new Socket( proxy ) : new Socket();
+        SocketAddress address = proxy.type() == Proxy.Type.HTTP ? resolve( (InetSocketAddress) proxy.address() )
+                                                                : new InetSocketAddress( url.getHost(), getPort( url ) );
+        socket.connect( address, Math.max( connectTimeout, 0 ) );
+        socket.setTcpNoDelay( true );
+        if (!isSecure( url )) return socket;
+
+        try {
+            if (proxy.type() == Proxy.Type.HTTP) openTunnel( socket, url, proxyAuthorization );
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        SSLSocket sslSocket = (SSLSocket) HttpsURLConnection.getDefaultSSLSocketFactory().createSocket( socket, url.getHost(), getPort( url ), true );
+        try {
+            sslSocket.startHandshake();
+            verifyHostName( url.getHost(), sslSocket.getSession() );
+        } catch (IOException e) {
+            sslSocket.close();
+            throw e;
+        }
+        return sslSocket;
+    }
+
+
+    private static InetSocketAddress resolve( InetSocketAddress address ) {
+        return address.isUnresolved() ? new InetSocketAddress( address.getHostName(), address.getPort() ) : address;
+    }
+
+
+    /**
+     * Asks an HTTP proxy to open a tunnel to the host of the specified URL. The proxy's reply is read
+     * a byte at a time, so that no part of the tunneled stream is consumed.
+     */
+    private static void openTunnel( Socket socket, URL url, String proxyAuthorization ) throws IOException {
+        String hostAndPort = url.getHost() + ':' + getPort( url );
+        StringBuffer sb = new StringBuffer( "CONNECT " ).append( hostAndPort ).append( " HTTP/1.1" ).append( CRLF );
+        sb.append( "Host: " ).append( hostAndPort ).append( CRLF );
+        if (proxyAuthorization != null) sb.append( "Proxy-Authorization: " ).append( proxyAuthorization ).append( CRLF );
+        sb.append( CRLF );
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write( sb.toString().getBytes( HEADER_ENCODING ) );
+        outputStream.flush();
+
+        InputStream inputStream = socket.getInputStream();
+        String statusLine = readLine( inputStream );
+        for (String line = readLine( inputStream ); line.length() > 0; line = readLine( inputStream ));
+        if (new Reply( statusLine ).getResponseCode() != HttpURLConnection.HTTP_OK) {
+            throw new IOException( "Unable to tunnel through proxy. Proxy returns \"" + statusLine + '"' );
+        }
+    }
+
+
+    private static String readLine( InputStream inputStream ) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b = inputStream.read();
+        if (b == -1) throw new IOException( "Connection closed by server" );
+        while (b != -1 && b != '\n') {
+            if (b != '\r') line.write( b );
+            b = inputStream.read();
+        }
+        return line.toString( HEADER_ENCODING );
+    }
+
+
+    /**
+     * Verifies that the server certificate was issued to the specified host. As with HttpsURLConnection,
+     * a certificate which does not match is accepted if the default hostname verifier accepts it.
+     */
+    private static void verifyHostName( String hostName, SSLSession session ) throws IOException {
+        Certificate[] certificates = session.getPeerCertificates();
+        if (certificates.length > 0 && certificates[0] instanceof X509Certificate && isIssuedTo( (X509Certificate) certificates[0], hostName )) return;
+        if (HttpsURLConnection.getDefaultHostnameVerifier().verify( hostName, session )) return;
+        throw new SSLPeerUnverifiedException( "Server certificate does not match host name " + hostName );
+    }
+
+
+    private static boolean isIssuedTo( X509Certificate certificate, String hostName ) {
+        boolean hasDnsNames = false;
+        Collection alternativeNames = getSubjectAlternativeNames( certificate );
+        if (alternativeNames != null) {
+            for (Iterator i = alternativeNames.iterator(); i.hasNext();) {
+                List entry = (List) i.next();
+                int type = ((Integer) entry.get( 0 )).intValue();
+                if (type == 2) {
+                    hasDnsNames = true;
+                    if (matchesHostName( (String) entry.get( 1 ), hostName )) return true;
+                } else if (type == 7 && hostName.equalsIgnoreCase( (String) entry.get( 1 ) )) {
+                    return true;
+                }
+            }
+        }
+        if (hasDnsNames) return false;
+
+        StringTokenizer st = new StringTokenizer( certificate.getSubjectX500Principal().getName(), "," );
+        while (st.hasMoreTokens()) {
+            String token = st.nextToken().trim();
+            if (token.toUpperCase().startsWith( "CN=" )) return matchesHostName( token.substring( 3 ), hostName );
+        }
+        return false;
+    }
+
+
+    private static Collection getSubjectAlternativeNames( X509Certificate certificate ) {
+        try {
+            return certificate.getSubjectAlternativeNames();
+        } catch (CertificateParsingException e) {
+            return null;
+        }
+    }
+
+
+    private static boolean matchesHostName( String pattern, String hostName ) {
+        if (!pattern.startsWith( "*." )) return pattern.equalsIgnoreCase( hostName );
+        int dot = hostName.indexOf( '.' );
+        return dot > 0 && hostName.substring( dot ).equalsIgnoreCase( pattern.substring( 1 ) );
+    }
+
+
+//=======================================================================================
+
+
+    /**
+     * A snapshot of the connection statistics for a pooled transport.
+     **/
+    public static class Statistics {
+
+        private final int _connectionsOpened;
+        private final int _connectionsReused;
+        private final int _connectionsClosed;
+        private final int _leasedConnections;
+        private final int _idleConnections;
+
+
+        Statistics( int connectionsOpened, int connectionsReused, int connectionsClosed, int leasedConnections, int idleConnections ) {
+            _connectionsOpened = connectionsOpened;
+            _connectionsReused = connectionsReused;
+            _connectionsClosed = connectionsClosed;
+            _leasedConnections = leasedConnections;
+            _idleConnections   = idleConnections;
+        }
+
+
+        /**
+         * Returns the number of connections which have been opened.
+         */
+        public int getConnectionsOpened() {
+            return _connectionsOpened;
+        }
+
+
+        /**
+         * Returns the number of requests which were sent over a previously used connection.
+         */
+        public int getConnectionsReused() {
+            return _connectionsReused;
+        }
+
+
+        /**
+         * Returns the number of connections which have been closed, whether because they expired,
+         * could not be reused, or were explicitly closed.
+         */
+        public int getConnectionsClosed() {
+            return _connectionsClosed;
+        }
+
+
+        /**
+         * Returns the number of connections currently in use.
+         */
+        public int getLeasedConnections() {
+            return _leasedConnections;
+        }
+
+
+        /**
+         * Returns the number of open connections available for reuse.
+         */
+        public int getIdleConnections() {
+            return _idleConnections;
+        }
+
+
+        public String toString() {
+            return "Statistics [opened=" + _connectionsOpened + "; reused=" + _connectionsReused + "; closed=" + _connectionsClosed
+                    + "; leased=" + _leasedConnections + "; idle=" + _idleConnections + ']';
+        }
+    }
+
+
+//=======================================================================================
+
+
+    /**
+     * The connections to a single protocol, host and port.
+     **/
+    private static class Route {
+
+        private final String     _key;
+        private final LinkedList _idle = new LinkedList();
+        private int              _leased;
+
+
+        Route( String key ) {
+            _key = key;
+        }
+    }
+
+
+//=======================================================================================
+
+
+    /**
+     * A socket connection which may be used for a series of requests.
+     **/
+    private class PooledConnection {
+
+        private final Route        _route;
+        private final Socket       _socket;
+        private final InputStream  _inputStream;
+        private final OutputStream _outputStream;
+        private boolean            _reused;
+        private boolean            _released;
+        private boolean            _bodyStarted;
+        private long               _lastUsed;
+
+
+        PooledConnection( Route route, Socket socket ) throws IOException {
+            _route = route;
+            _socket = socket;
+            _inputStream = new BufferedInputStream( socket.getInputStream() );
+            _outputStream = new BufferedOutputStream( socket.getOutputStream() );
+        }
+
+
+        Route getRoute() {
+            return _route;
+        }
+
+
+        boolean isReused() {
+            return _reused;
+        }
+
+
+        /**
+         * Returns true if the last exchange on this connection began to write a request body.
+         */
+        boolean isBodyStarted() {
+            return _bodyStarted;
+        }
+
+
+        void setReused() {
+            _reused = true;
+            _released = false;
+        }
+
+
+        long getLastUsed() {
+            return _lastUsed;
+        }
+
+
+        /**
+         * Records that this connection has been released, returning false if it already was.
+         */
+        boolean markReleased() {
+            if (_released) return false;
+            _released = true;
+            _lastUsed = System.currentTimeMillis();
+            return true;
+        }
+
+
+        /**
+         * Sends the request header followed by the body, if any, and reads the status line and headers of the reply.
+         * The body is written directly to the connection, so it cannot be sent again once writing has begun.
+         */
+        Reply exchange( byte[] header, WebRequest request, long bodyLength, int readTimeout, boolean closeRequested ) throws IOException {
+            String method = request.getMethod();
+            _bodyStarted = false;
+            _socket.setSoTimeout( Math.max( readTimeout, 0 ) );
+            _outputStream.write( header );
+            if (bodyLength != NO_BODY) _bodyStarted = true;
+            if (bodyLength >= 0) {
+                request.writeMessageBody( _outputStream );
+            } else if (bodyLength != NO_BODY) {
+                ChunkedOutputStream chunkedStream = new ChunkedOutputStream( _outputStream );
+                request.writeMessageBody( chunkedStream );
+                chunkedStream.finish();
+            }
+            _outputStream.flush();
+
+            Reply reply;
+            do {
+                reply = new Reply( readLine() );
+                for (String line = readLine(); line.length() > 0; line = readLine()) reply.addHeaderLine( line );
+            } while (reply.isInterim());
+
+            if (method.equalsIgnoreCase( "HEAD" ) || !reply.hasBody()) {
+                release( this, !closeRequested && reply.isKeepAlive() );
+                reply.setInputStream( new ByteArrayInputStream( new byte[0] ) );
+            } else {
+                reply.setInputStream( new BodyInputStream( this, reply, !closeRequested && reply.isKeepAlive() ) );
+            }
+            return reply;
+        }
+
+
+        InputStream getInputStream() {
+            return _inputStream;
+        }
+
+
+        String readLine() throws IOException {
+            return PooledHttpTransport.readLine( _inputStream );
+        }
+
+
+        void close() {
+            try {
+                _socket.close();
+            } catch (IOException e) { /* nothing to do */ }
+        }
+    }
+
+
+//=======================================================================================
+
+
+    /**
+     * The status line and headers of a reply received over a pooled connection.
+     **/
+    private static class Reply implements HttpTransportResponse {
+
+        private final String _statusLine;
+        private final String _version;
+        private final int    _responseCode;
+        private final String _responseMessage;
+        private final List   _headerKeys = new ArrayList();
+        private final List   _headerValues = new ArrayList();
+        private InputStream  _inputStream;
+
+
+        Reply( String statusLine ) throws IOException {
+            _statusLine = statusLine;
+            StringTokenizer st = new StringTokenizer( statusLine );
+            if (st.countTokens() < 2 || !statusLine.startsWith( "HTTP/" )) throw new IOException( "Invalid status line: " + statusLine );
+            _version = st.nextToken();
+            try {
+                _responseCode = Integer.parseInt( st.nextToken() );
+            } catch (NumberFormatException e) {
+                throw new IOException( "Invalid status line: " + statusLine );
+            }
+            _responseMessage = st.hasMoreTokens() ? st.nextToken( "" ).trim() : "";
+        }
+
+
+        void addHeaderLine( String line ) {
+            if ((line.charAt( 0 ) == ' ' || line.charAt( 0 ) == '\t') && !_headerValues.isEmpty()) {
+                int last = _headerValues.size() - 1;
+                _headerValues.set( last, _headerValues.get( last ) + " " + line.trim() );
+                return;
+            }
+            int colon = line.indexOf( ':' );
+            if (colon <= 0) return;
+            _headerKeys.add( line.substring( 0, colon ).trim() );
+            _headerValues.add( line.substring( colon+1 ).trim() );
+        }
+
+
+        boolean isInterim() {
+            return _responseCode >= 100 && _responseCode < 200 && _responseCode != 101;
+        }
+
+
+        boolean hasBody() {
+            return _responseCode >= 200 && _responseCode != HttpURLConnection.HTTP_NO_CONTENT && _responseCode != HttpURLConnection.HTTP_NOT_MODIFIED;
+        }
+
+
+        boolean isChunked() {
+            String encoding = getHeader( "Transfer-Encoding" );
+            return encoding != null && encoding.toLowerCase().indexOf( "chunked" ) >= 0;
+        }
+
+
+        /**
+         * Returns the declared length of the body, or -1 if it is delimited by the end of the connection.
+         */
+        long getContentLength() {
+            String length = getHeader( "Content-Length" );
+            if (length == null) return -1;
+            try {
+                return Long.parseLong( length.trim() );
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+
+        boolean isKeepAlive() {
+            String connection = getHeader( "Connection" );
+            if (!isChunked() && getContentLength() < 0 && hasBody()) return false;
+            if (_version.equals( "HTTP/1.0" )) return "keep-alive".equalsIgnoreCase( connection );
+            return !"close".equalsIgnoreCase( connection );
+        }
+
+
+        String getHeader( String name ) {
+            for (int i = 0; i < _headerKeys.size(); i++) {
+                if (name.equalsIgnoreCase( (String) _headerKeys.get( i ) )) return (String) _headerValues.get( i );
+            }
+            return null;
+        }
+
+
+        void setInputStream( InputStream inputStream ) {
+            _inputStream = inputStream;
+        }
+
+
+        public int getResponseCode() {
+            return _responseCode;
+        }
+
+
+        public String getResponseMessage() {
+            return _responseMessage;
+        }
+
+
+        public String getStatusLine() {
+            return _statusLine;
+        }
+
+
+        public int getHeaderFieldCount() {
+            return _headerKeys.size();
+        }
+
+
+        public String getHeaderFieldKey( int index ) {
+            return (String) _headerKeys.get( index );
+        }
+
+
+        public String getHeaderField( int index ) {
+            return (String) _headerValues.get( index );
+        }
+
+
+        public String getContentType() {
+            return getHeader( "Content-Type" );
+        }
+
+
+        public InputStream getInputStream() {
+            return _inputStream;
+        }
+    }
+
+
+//=======================================================================================
+
+
+    /**
+     * The body of a reply. Decodes chunked transfer encoding and releases the connection when the end of the
+     * body is reached.
+     **/
+    private class BodyInputStream extends InputStream {
+
+        private final PooledConnection _connection;
+        private final InputStream      _inputStream;
+        private final boolean          _chunked;
+        private final boolean          _reusable;
+
+        /** The number of bytes left in the body or current chunk, or -1 if the body is delimited by the end of the connection. **/
+        private long    _remaining;
+        private boolean _inChunk;
+        private boolean _eof;
+
+
+        BodyInputStream( PooledConnection connection, Reply reply, boolean reusable ) {
+            _connection = connection;
+            _inputStream = connection.getInputStream();
+            _chunked = reply.isChunked();
+            _remaining = _chunked ? 0 : reply.getContentLength();
+            _reusable = reusable;
+            if (_remaining == 0 && !_chunked) finish( true );
+        }
+
+
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int count = read( buffer, 0, 1 );
+            return count <= 0 ? -1 : buffer[0] & 0xff;
+        }
+
+
+        public int read( byte[] buffer, int offset, int length ) throws IOException {
+            if (_eof) return -1;
+            if (length == 0) return 0;
+            if (_chunked && _remaining == 0 && !startNextChunk()) return -1;
+
+            int count = _inputStream.read( buffer, offset, _remaining < 0 ? length : (int) Math.min( length, _remaining ) );
+            if (count < 0) {
+                if (_remaining < 0) {
+                    finish( false );
+                    return -1;
+                }
+                finish( false );
+                throw new IOException( "Connection closed before end of response body" );
+            }
+            if (_remaining > 0) {
+                _remaining -= count;
+                if (_remaining == 0 && !_chunked) finish( true );
+            }
+            return count;
+        }
+
+
+        public int available() throws IOException {
+            if (_eof) return 0;
+            int available = _inputStream.available();
+            return (_remaining < 0 || _chunked) ? available : (int) Math.min( available, _remaining );
+        }
+
+
+        public void close() throws IOException {
+            if (!_eof) finish( false );
+        }
+
+
+        /**
+         * Reads the header of the next chunk, returning false if it was the last chunk.
+         */
+        private boolean startNextChunk() throws IOException {
+            try {
+                if (_inChunk) _connection.readLine();
+                String line = _connection.readLine();
+                int semicolon = line.indexOf( ';' );
+                _remaining = Long.parseLong( (semicolon < 0 ? line : line.substring( 0, semicolon )).trim(), 16 );
+                _inChunk = true;
+                if (_remaining > 0) return true;
+
+                for (String trailer = _connection.readLine(); trailer.length() > 0; trailer = _connection.readLine());
+                finish( true );
+                return false;
+            } catch (NumberFormatException e) {
+                finish( false );
+                throw new IOException( "Invalid chunk header in response body" );
+            } catch (IOException e) {
+                finish( false );
+                throw e;
+            }
+        }
+
+
+        private void finish( boolean complete ) {
+            _eof = true;
+            release( _connection, complete && _reusable );
+        }
+    }
+
+
+//=======================================================================================
+
+
+    /**
+     * Writes a request body of unknown length using chunked transfer encoding.
+     **/
+    private static class ChunkedOutputStream extends OutputStream {
+
+        private final OutputStream _outputStream;
+
+
+        ChunkedOutputStream( OutputStream outputStream ) {
+            _outputStream = outputStream;
+        }
+
+
+        public void write( int b ) throws IOException {
+            write( new byte[] { (byte) b }, 0, 1 );
+        }
+
+
+        public void write( byte[] buffer, int offset, int length ) throws IOException {
+            if (length == 0) return;
+            _outputStream.write( (Integer.toHexString( length ) + CRLF).getBytes( HEADER_ENCODING ) );
+            _outputStream.write( buffer, offset, length );
+            _outputStream.write( CRLF.getBytes( HEADER_ENCODING ) );
+        }
+
+
+        /**
+         * Writes the last chunk, which marks the end of the body.
+         */
+        void finish() throws IOException {
+            _outputStream.write( ("0" + CRLF + CRLF).getBytes( HEADER_ENCODING ) );
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.meterware.httpunit;
+/********************************************************************************************************************
+* $Id$
+*
+* Copyright (c) 2026, Russell Gold
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+* documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+* the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+* to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions
+* of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+* THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+* DEALINGS IN THE SOFTWARE.
+*
+*******************************************************************************************************************/
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+import java.util.Dictionary;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.StringTokenizer;
+
+
+/**
+ * A bounded cache of responses to GET requests, which may be shared by web clients. Responses are kept only if their
+ * headers permit it: a response which specifies a lifetime, with <code>Cache-Control: max-age</code> or
+ * <code>Expires</code>, is reused without contacting the server until it expires; one which carries an
+ * <code>ETag</code> or <code>Last-Modified</code> header is revalidated with a conditional request, and reused if the
+ * server replies <code>304 Not Modified</code>. Responses marked <code>Cache-Control: private</code> are never kept,
+ * and a response is only reused for requests sending the same credentials and cookies. When the total size of the cached bodies would exceed the limit,
+ * the least recently used responses are discarded.
+ *
+ * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
+ **/
+public class ResponseCache {
+
+    private static final String RFC1123_DATE_SPEC = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    /** Indicates that a response may be stored, but must be revalidated before each use. **/
+    private static final long MUST_REVALIDATE = 0;
+
+    /** Indicates that a response may not be stored. **/
+    private static final long NO_STORE = -1;
+
+    private final long _maxSize;
+
+    private long _size;
+
+    private final LinkedHashMap _entries = new LinkedHashMap( 16, 0.75f, /* access order */ true );
+
+
+    /**
+     * Creates a cache which holds at most the specified number of bytes of response bodies.
+     */
+    public ResponseCache( long maxSize ) {
+        if (maxSize <= 0) throw new IllegalArgumentException( "Cache size must be positive" );
+        _maxSize = maxSize;
+    }
+
+
+    /**
+     * Returns the maximum number of bytes of response bodies held by this cache.
+     */
+    public long getMaxSize() {
+        return _maxSize;
+    }
+
+
+    /**
+     * Returns the number of bytes of response bodies currently held by this cache.
+     */
+    public synchronized long getSize() {
+        return _size;
+    }
+
+
+    /**
+     * Returns the number of responses currently held by this cache.
+     */
+    public synchronized int getEntryCount() {
+        return _entries.size();
+    }
+
+
+    /**
+     * Discards all cached responses.
+     */
+    public synchronized void clear() {
+        _entries.clear();
+        _size = 0;
+    }
+
+
+//------------------------------------------ package members ------------------------------------------------
+
+
+    /**
+     * Returns true if the reply to the specified request may be taken from this cache.
+     */
+    static boolean isCacheable( WebRequest request, Dictionary headers ) {
+        return request.getMethod().equals( "GET" )
+                && headers.get( "If-None-Match" ) == null
+                && headers.get( "If-Modified-Since" ) == null
+                && headers.get( "Range" ) == null;
+    }
+
+
+    /**
+     * Returns the reply to the specified request, using or revalidating a cached response if possible,
+     * and otherwise sending the request through the specified transport and caching the reply if permitted.
+     */
+    HttpTransportResponse send( HttpTransport transport, WebConversation client, WebRequest request, URL url, Dictionary headers ) throws IOException {
+        String key = getKey( request, headers );
+        Entry entry = getEntry( key );
+        if (entry != null && entry.isFresh()) return entry.createReply();
+
+        if (entry != null) entry.addValidators( headers );
+        HttpTransportResponse reply = transport.send( client, request, url, headers );
+        if (entry != null && reply.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            reply.getInputStream().close();
+            entry.revalidate( reply );
+            return entry.createReply();
+        }
+        return store( key, reply );
+    }
+
+
+//------------------------------------------ private members ------------------------------------------------
+
+
+    /** The request headers which identify the user making a request. A response is only reused for the same values. **/
+    private static final String[] CREDENTIAL_HEADERS = { "Authorization", "Proxy-Authorization", "Cookie" };
+
+
+    /**
+     * Returns the key under which the reply to the specified request is cached. Since a cache may be shared by clients
+     * with different credentials, the key includes the headers which identify the user as well as the URL.
+     */
+    private static String getKey( WebRequest request, Dictionary headers ) throws MalformedURLException {
+        StringBuffer key = new StringBuffer( request.getURL().toExternalForm() );
+        for (int i = 0; i < CREDENTIAL_HEADERS.length; i++) {
+            Object value = headers.get( CREDENTIAL_HEADERS[i] );
+            if (value != null) key.append( '\n' ).append( CREDENTIAL_HEADERS[i] ).append( ": " ).append( value );
+        }
+        return key.toString();
+    }
+
+
+    private synchronized Entry getEntry( String key ) {
+        return (Entry) _entries.get( key );
+    }
+
+
+    private HttpTransportResponse store( String key, HttpTransportResponse reply ) throws IOException {
+        if (reply.getResponseCode() != HttpURLConnection.HTTP_OK) return reply;
+
+        String[] names = new String[ reply.getHeaderFieldCount() ];
+        String[] values = new String[ names.length ];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = reply.getHeaderFieldKey( i );
+            values[i] = reply.getHeaderField( i );
+        }
+        if (getHeader( names, values, "Vary" ) != null || getHeader( names, values, "Set-Cookie" ) != null) return reply;
+
+        long expires = getExpiration( names, values );
+        if (expires == NO_STORE) return reply;
+        if (expires == MUST_REVALIDATE && getHeader( names, values, "ETag" ) == null
+                                       && getHeader( names, values, "Last-Modified" ) == null) return reply;
+
+        InputStream inputStream = reply.getInputStream();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[ 8 * 1024 ];
+        int count;
+        while ((count = inputStream.read( buffer )) != -1) {
+            outputStream.write( buffer, 0, count );
+            if (outputStream.size() > _maxSize) {
+                return new CachedReply( reply, names, values,
+                                        new SequenceInputStream( new ByteArrayInputStream( outputStream.toByteArray() ), inputStream ) );
+            }
+        }
+        inputStream.close();
+
+        Entry entry = new Entry( reply, names, values, outputStream.toByteArray(), expires );
+        addEntry( key, entry );
+        return entry.createReply();
+    }
+
+
+    private synchronized void addEntry( String key, Entry entry ) {
+        Entry oldEntry = (Entry) _entries.remove( key );
+        if (oldEntry != null) _size -= oldEntry.getSize();
+        _entries.put( key, entry );
+        _size += entry.getSize();
+
+        for (Iterator i = _entries.values().iterator(); _size > _maxSize && i.hasNext();) {
+            Entry eldest = (Entry) i.next();
+            i.remove();
+            _size -= eldest.getSize();
+        }
+    }
+
+
+    /**
+     * Returns the time until which a response with the specified headers may be used without revalidation,
+     * MUST_REVALIDATE if it must always be revalidated, or NO_STORE if it may not be cached.
+     */
+    private static long getExpiration( String[] names, String[] values ) {
+        String cacheControl = getHeader( names, values, "Cache-Control" );
+        if (cacheControl != null) {
+            long maxAge = -1;
+            for (StringTokenizer st = new StringTokenizer( cacheControl.toLowerCase(), "," ); st.hasMoreTokens();) {
+                String directive = st.nextToken().trim();
+                if (directive.equals( "no-store" ) || directive.equals( "private" )) return NO_STORE;
+                if (directive.equals( "no-cache" )) return MUST_REVALIDATE;
+                if (directive.startsWith( "max-age=" )) maxAge = parseSeconds( directive.substring( "max-age=".length() ) );
+            }
+            if (maxAge > 0) return System.currentTimeMillis() + maxAge * 1000;
+            if (maxAge == 0) return MUST_REVALIDATE;
+        }
+        String expires = getHeader( names, values, "Expires" );
+        return expires == null ? MUST_REVALIDATE : parseDate( expires );
+    }
+
+
+    private static boolean hasExpiration( String[] names, String[] values ) {
+        return getHeader( names, values, "Cache-Control" ) != null || getHeader( names, values, "Expires" ) != null;
+    }
+
+
+    private static long parseSeconds( String value ) {
+        try {
+            return Long.parseLong( value.trim() );
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+
+    private static long parseDate( String value ) {
+        try {
+            long time = new SimpleDateFormat( RFC1123_DATE_SPEC, Locale.US ).parse( value.trim() ).getTime();
+            return time > System.currentTimeMillis() ? time : MUST_REVALIDATE;
+        } catch (ParseException e) {
+            return MUST_REVALIDATE;
+        }
+    }
+
+
+    private static String getHeader( String[] names, String[] values, String name ) {
+        for (int i = 0; i < names.length; i++) {
+            if (name.equalsIgnoreCase( names[i] )) return values[i];
+        }
+        return null;
+    }
+
+
+//=======================================================================================
+
+
+    /**
+     * A cached response.
+     */
+    private static class Entry {
+
+        private int      _responseCode;
+        private String   _responseMessage;
+        private String   _statusLine;
+        private String   _contentType;
+        private String[] _names;
+        private String[] _values;
+        private byte[]   _body;
+        private long     _expires;
+
+
+        Entry( HttpTransportResponse reply, String[] names, String[] values, byte[] body, long expires ) throws IOException {
+            _responseCode = reply.getResponseCode();
+            _responseMessage = reply.getResponseMessage();
+            _statusLine = reply.getStatusLine();
+            _contentType = reply.getContentType();
+            _names = names;
+            _values = values;
+            _body = body;
+            _expires = expires;
+        }
+
+
+        int getSize() {
+            return _body.length;
+        }
+
+
+        synchronized boolean isFresh() {
+            return _expires != MUST_REVALIDATE && System.currentTimeMillis() < _expires;
+        }
+
+
+        void addValidators( Dictionary headers ) {
+            String eTag = getHeader( _names, _values, "ETag" );
+            String lastModified = getHeader( _names, _values, "Last-Modified" );
+            if (eTag != null) headers.put( "If-None-Match", eTag );
+            if (lastModified != null) headers.put( "If-Modified-Since", lastModified );
+        }
+
+
+        /**
+         * Updates the lifetime of this response from a <code>304 Not Modified</code> reply.
+         */
+        synchronized void revalidate( HttpTransportResponse reply ) {
+            String[] names = new String[ reply.getHeaderFieldCount() ];
+            String[] values = new String[ names.length ];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = reply.getHeaderFieldKey( i );
+                values[i] = reply.getHeaderField( i );
+            }
+            _expires = hasExpiration( names, values ) ? getExpiration( names, values ) : getExpiration( _names, _values );
+        }
+
+
+        HttpTransportResponse createReply() {
+            return new CachedReply( _responseCode, _responseMessage, _statusLine, _contentType, _names, _values,
+                                    new ByteArrayInputStream( _body ) );
+        }
+    }
+
+
+//=======================================================================================
+
+
+    /**
+     * A reply whose headers have already been read, and whose body is supplied as a stream.
+     */
+    private static class CachedReply implements HttpTransportResponse {
+
+        private int         _responseCode;
+        private String      _responseMessage;
+        private String      _statusLine;
+        private String      _contentType;
+        private String[]    _names;
+        private String[]    _values;
+        private InputStream _inputStream;
+
+
+        CachedReply( HttpTransportResponse reply, String[] names, String[] values, InputStream inputStream ) throws IOException {
+            this( reply.getResponseCode(), reply.getResponseMessage(), reply.getStatusLine(), reply.getContentType(),
+                  names, values, inputStream );
+        }
+
+
+        CachedReply( int responseCode, String responseMessage, String statusLine, String contentType,
+                     String[] names, String[] values, InputStream inputStream ) {
+            _responseCode = responseCode;
+            _responseMessage = responseMessage;
+            _statusLine = statusLine;
+            _contentType = contentType;
+            _names = names;
+            _values = values;
+            _inputStream = inputStream;
+        }
+
+
+        public int getResponseCode() {
+            return _responseCode;
+        }
+
+
+        public String getResponseMessage() {
+            return _responseMessage;
+        }
+
+
+        public String getStatusLine() {
+            return _statusLine;
+        }
+
+
+        public int getHeaderFieldCount() {
+            return _names.length;
+        }
+
+
+        public String getHeaderFieldKey( int index ) {
+            return _names[ index ];
+        }
+
+
+        public String getHeaderField( int index ) {
+            return _values[ index ];
+        }
+
+
+        public String getContentType() {
+            return _contentType;
+        }
+
+
+        public InputStream getInputStream() {
+            return _inputStream;
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.meterware.httpunit;
+/********************************************************************************************************************
+* $Id$
+*
+* Copyright (c) 2026, Russell Gold
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+* documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+* the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+* to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions
+* of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+* THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+* DEALINGS IN THE SOFTWARE.
+*
+*******************************************************************************************************************/
+
+/**
+ * An error reported by a script run in a web client, when script errors are not set to throw exceptions.
+ *
+ * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
+ **/
+public class ScriptError {
+
+    private String _sourceURL;
+    private int    _lineNumber;
+    private String _message;
+    private long   _timestamp;
+
+
+    /**
+     * Creates an error reported at the current time.
+     * @param sourceURL  the URL of the page whose script failed, or null if it is not known
+     * @param lineNumber the line of the script at which the error was found, or -1 if it is not known
+     * @param message    the description of the error
+     */
+    public ScriptError( String sourceURL, int lineNumber, String message ) {
+        _sourceURL = sourceURL;
+        _lineNumber = lineNumber;
+        _message = message;
+        _timestamp = System.currentTimeMillis();
+    }
+
+
+    /**
+     * Returns the URL of the page whose script failed, or null if it is not known.
+     */
+    public String getSourceURL() {
+        return _sourceURL;
+    }
+
+
+    /**
+     * Returns the line of the script at which the error was found, or -1 if it is not known.
+     */
+    public int getLineNumber() {
+        return _lineNumber;
+    }
+
+
+    /**
+     * Returns the description of the error.
+     */
+    public String getMessage() {
+        return _message;
+    }
+
+
+    /**
+     * Returns the time at which the error was reported, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return _timestamp;
+    }
+
+
+    public String toString() {
+        return _message;
+    }
+}
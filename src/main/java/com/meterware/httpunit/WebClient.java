@@ -27,6 +27,13 @@ import java.net.URL;
 import java.net.PasswordAuthentication;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 import org.xml.sax.SAXException;
 
@@ -47,6 +54,9 @@ import com.meterware.httpunit.cookies.CookieJar;
 abstract
 public class WebClient {
 
+    /** The number of script errors kept by a client unless otherwise specified. **/
+    public static final int DEFAULT_MAX_SCRIPT_ERRORS = 100;
+
     private ArrayList _openWindows = new ArrayList();
 
     /** The current main window. **/
@@ -160,6 +170,71 @@ public class WebClient {
     }
 
 
+    /**
+     * Requests the resource specified by the request without waiting for it to arrive. As with {@link #getResource},
+     * the client is not updated and included framesets and scripts are not loaded; any number of such requests
+     * may therefore be outstanding at once. The request is executed by the executor set for this client.
+     * Calling {@link Future#get} on the result returns the response, or throws an ExecutionException wrapping
+     * any exception thrown while retrieving it.
+     * <p>
+     * A JavaScript URL is evaluated against the current page, as by {@link #getResource}, but on the executor's thread
+     * rather than the caller's, so its script may run concurrently with other scripts of the page.
+     * </p>
+     *
+     * @param request the request to send
+     * @return a future which completes with the response; for a JavaScript URL, a response holding the value of
+     *         the script, or null if the script returned no value
+     */
+    public Future getResourceAsync( final WebRequest request ) {
+        FutureTask task = new FutureTask( new Callable() {
+            public Object call() throws Exception {
+                return getResource( request );
+            }
+        } );
+        getExecutor().execute( task );
+        return task;
+    }
+
+
+    /**
+     * Returns the cache consulted for the responses to GET requests, or null if responses are not cached.
+     */
+    public ResponseCache getResponseCache() {
+        return _responseCache;
+    }
+
+
+    /**
+     * Specifies a cache to consult for the responses to GET requests, including those for included scripts and frames.
+     * A cache may be shared by several clients. By default, responses are not cached.
+     * @param responseCache the cache to use, or null to disable caching
+     */
+    public void setResponseCache( ResponseCache responseCache ) {
+        _responseCache = responseCache;
+    }
+
+
+    /**
+     * Returns the executor used to perform asynchronous requests for this client.
+     */
+    public Executor getExecutor() {
+        synchronized (this) {
+            if (_executor != null) return _executor;
+        }
+        return getDefaultExecutor();
+    }
+
+
+    /**
+     * Specifies the executor used to perform asynchronous requests for this client. If none is specified,
+     * a pool of daemon threads shared by all clients is used.
+     * @param executor the executor to use, or null to restore the default
+     */
+    public synchronized void setExecutor( Executor executor ) {
+        _executor = executor;
+    }
+
+
     /**
      * Resets the state of this client, removing all cookies, frames, and per-client headers. This does not affect
      * any listeners or preferences which may have been set.
@@ -396,6 +471,69 @@ public class WebClient {
     }
 
 
+    /**
+     * Adds a listener to be told of errors reported by scripts run in this client.
+     */
+    public void addScriptErrorListener( ScriptErrorListener listener ) {
+        synchronized (_scriptErrorListeners) {
+            if (listener != null && !_scriptErrorListeners.contains( listener )) _scriptErrorListeners.add( listener );
+        }
+    }
+
+
+    /**
+     * Removes a listener to be told of errors reported by scripts run in this client.
+     */
+    public void removeScriptErrorListener( ScriptErrorListener listener ) {
+        synchronized (_scriptErrorListeners) {
+            _scriptErrorListeners.remove( listener );
+        }
+    }
+
+
+    /**
+     * Returns the errors most recently reported by scripts run in this client, oldest first. Only the number
+     * specified by setMaxScriptErrors are kept.
+     */
+    public ScriptError[] getScriptErrors() {
+        synchronized (_scriptErrors) {
+            return (ScriptError[]) _scriptErrors.toArray( new ScriptError[ _scriptErrors.size() ] );
+        }
+    }
+
+
+    /**
+     * Discards the errors reported by scripts run in this client.
+     */
+    public void clearScriptErrors() {
+        synchronized (_scriptErrors) {
+            _scriptErrors.clear();
+        }
+    }
+
+
+    /**
+     * Returns the maximum number of script errors kept by this client.
+     */
+    public int getMaxScriptErrors() {
+        return _maxScriptErrors;
+    }
+
+
+    /**
+     * Specifies the maximum number of script errors kept by this client. Once that many have been reported,
+     * each new error discards the oldest one. If zero, no errors are kept, but they are still reported to any
+     * script error listeners. The default is DEFAULT_MAX_SCRIPT_ERRORS.
+     */
+    public void setMaxScriptErrors( int maxScriptErrors ) {
+        if (maxScriptErrors < 0) throw new IllegalArgumentException( "Maximum number of script errors may not be negative" );
+        synchronized (_scriptErrors) {
+            _maxScriptErrors = maxScriptErrors;
+            while (_scriptErrors.size() > _maxScriptErrors) _scriptErrors.removeFirst();
+        }
+    }
+
+
     /**
      * Returns the next javascript alert without removing it from the queue.
      */
@@ -447,10 +585,18 @@ public class WebClient {
     }
 
 
+    /**
+     * Returns the length of the message body for the request, or -1 if it is not known in advance.
+     **/
+    final protected long getMessageBodyLength( WebRequest request ) throws IOException {
+        return request.getMessageBodyLength();
+    }
+
+
     /**
      * Returns the value of all current header fields.
      **/
-    protected Dictionary getHeaderFields( URL targetURL ) {
+    protected synchronized Dictionary getHeaderFields( URL targetURL ) {
         Hashtable result = (Hashtable) _headers.clone();
         result.put( "User-Agent", getClientProperties().getUserAgent() );
         if (getClientProperties().isAcceptGzip()) result.put( "Accept-Encoding", "gzip" );
@@ -508,7 +654,9 @@ public class WebClient {
 
 
     void updateClient( WebResponse response ) throws IOException {
-        if (getClientProperties().isAcceptCookies()) _cookieJar.updateCookies( response.getCookieJar() );
+        if (getClientProperties().isAcceptCookies()) {
+            synchronized (this) { _cookieJar.updateCookies( response.getCookieJar() ); }
+        }
         validateHeaders( response );
     }
 
@@ -595,6 +743,28 @@ public class WebClient {
         _alerts.addLast( message );
     }
 
+    /**
+     * Records an error reported by a script and tells the script error listeners about it.
+     * @param error - the error to record
+     */
+    void postScriptError( ScriptError error ) {
+        synchronized (_scriptErrors) {
+            if (_maxScriptErrors > 0) {
+                if (_scriptErrors.size() == _maxScriptErrors) _scriptErrors.removeFirst();
+                _scriptErrors.addLast( error );
+            }
+        }
+
+        List listeners;
+        synchronized (_scriptErrorListeners) {
+            listeners = new ArrayList( _scriptErrorListeners );
+        }
+
+        for (Iterator i = listeners.iterator(); i.hasNext();) {
+            ((ScriptErrorListener) i.next()).scriptErrorReported( this, error );
+        }
+    }
+
 //------------------------------------------ private members -------------------------------------
 
     /** The list of alerts generated by JavaScript. **/
@@ -613,10 +783,42 @@ public class WebClient {
 
     private final List _windowListeners = new ArrayList();
 
+    private final List _scriptErrorListeners = new ArrayList();
+
+    /** The most recent errors reported by scripts, oldest first. **/
+    private final LinkedList _scriptErrors = new LinkedList();
+
+    private int _maxScriptErrors = DEFAULT_MAX_SCRIPT_ERRORS;
+
     private DialogResponder _dialogResponder = new DialogAdapter();
 
     private ClientProperties _clientProperties;
 
+    private Executor _executor;
+
+    private ResponseCache _responseCache;
+
+    /** The number of threads in the default pool used for asynchronous requests. **/
+    private static final int DEFAULT_EXECUTOR_THREADS = 4;
+
+    private static ExecutorService _defaultExecutor;
+
+
+    private static synchronized Executor getDefaultExecutor() {
+        if (_defaultExecutor == null) {
+            _defaultExecutor = Executors.newFixedThreadPool( DEFAULT_EXECUTOR_THREADS, new ThreadFactory() {
+                private int _threadNumber;
+
+                public synchronized Thread newThread( Runnable runnable ) {
+                    Thread thread = new Thread( runnable, "httpunit-async-" + (++_threadNumber) );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        }
+        return _defaultExecutor;
+    }
+
 
     /**
      * Examines the headers in the response and throws an exception if appropriate.
@@ -669,8 +871,11 @@ public class WebClient {
         if (!challenge.needToAuthenticate()) {
             return response;
         } else {
-            setOnetimeAuthenticationHeader( challenge.createAuthenticationHeader() );
-            WebResponse response2 = newResponse( request, targetFrame );
+            WebResponse response2;
+            synchronized (this) {   // the one-time header must not be picked up by a concurrent request for another frame
+                setOnetimeAuthenticationHeader( challenge.createAuthenticationHeader() );
+                response2 = newResponse( request, targetFrame );
+            }
             if (response2.getHeaderField( "WWW-Authenticate" ) != null && getExceptionsThrownOnErrorStatus()) {
                 throw AuthenticationChallenge.createException( response2.getHeaderField( "WWW-Authenticate" ) );
             }
@@ -679,7 +884,7 @@ public class WebClient {
     }
 
 
-    private void setOnetimeAuthenticationHeader( String authorizationHeader ) {
+    private synchronized void setOnetimeAuthenticationHeader( String authorizationHeader ) {
         _authorizationString = authorizationHeader;
     }
 
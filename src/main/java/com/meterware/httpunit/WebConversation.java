@@ -21,14 +21,13 @@ package com.meterware.httpunit;
 *******************************************************************************************************************/
 import java.io.IOException;
 
-import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
+import java.net.Proxy;
 import java.net.URL;
-import java.net.URLConnection;
 
 import java.util.Dictionary;
 import java.util.Enumeration;
-import java.util.Properties;
 
 
 /**
@@ -42,8 +41,10 @@ public class WebConversation extends WebClient {
 
     private String _proxyHost;
     private int _proxyPort;
+    private Proxy _proxy;
     private int _connectTimeout = -1;
     private int _readTimeout = -1;    
+    private HttpTransport _transport = new URLConnectionTransport();
 
 
     /**
@@ -60,45 +61,85 @@ public class WebConversation extends WebClient {
      * Creates a web response object which represents the response to the specified web request.
      **/
     protected WebResponse newResponse( WebRequest request, FrameSelector targetFrame ) throws MalformedURLException, IOException {
-        Properties savedProperties = (Properties) System.getProperties().clone();
-        try {
-            if (_proxyHost != null) {
-                System.setProperty( "proxyHost", _proxyHost );
-                System.setProperty( "proxyPort", Integer.toString( _proxyPort ) );
-            }
-            URLConnection connection = openConnection( getRequestURL( request ) );
-            // [ 1518901 ] enable http connect and read timeouts (needs JDK 1.5)
-            // comment the next two line if you do not need this and have JDK <1.5
-            if (_connectTimeout>=0) connection.setConnectTimeout( _connectTimeout );
-            if (_readTimeout>=0)    connection.setReadTimeout( _readTimeout );            
-            if (HttpUnitOptions.isLoggingHttpHeaders()) {
-                String urlString = request.getURLString();
-                System.out.println( "\nConnecting to " + request.getURL().getHost() );
-                System.out.println( "Sending:: " + request.getMethod() + " " + urlString );
-            }
-            sendHeaders( connection, getHeaderFields( request.getURL() ) );
-            sendHeaders( connection, request.getHeaderDictionary() );
-            request.completeRequest( connection );
-            return new HttpWebResponse( this, targetFrame, request, connection, getExceptionsThrownOnErrorStatus() );
-        } finally {
-            System.setProperties( savedProperties );
+        if (isLoggingHttpHeaders()) {
+            String urlString = request.getURLString();
+            System.out.println( "\nConnecting to " + request.getURL().getHost() );
+            System.out.println( "Sending:: " + request.getMethod() + " " + urlString );
         }
+        HeaderDictionary headers = new HeaderDictionary();
+        addHeaders( headers, getHeaderFields( request.getURL() ) );
+        URL url = getRequestURL( request, headers );
+        addHeaders( headers, request.getHeaderDictionary() );
+        ResponseCache cache = getResponseCache();
+        HttpTransportResponse reply = (cache != null && ResponseCache.isCacheable( request, headers ))
+                                      ? cache.send( _transport, this, request, url, headers )
+                                      : _transport.send( this, request, url, headers );
+        return new HttpWebResponse( this, targetFrame, request, reply, getExceptionsThrownOnErrorStatus() );
     }
 
 
     public void clearProxyServer() {
         _proxyHost = null;
+        _proxy = null;
     }
 
 
     /**
-     * set the proxy server to the given proxyHost with the given proxy Port
+     * Returns the name of the proxy server used by this conversation. If none has been specified,
+     * returns the name of the proxy server defined for the JVM, if any.
+     */
+    public String getProxyHost() {
+        return _proxyHost != null ? _proxyHost : super.getProxyHost();
+    }
+
+
+    /**
+     * Returns the number of the proxy port used by this conversation. If no proxy server has been specified,
+     * returns the proxy port defined for the JVM, or 0 if none is specified.
+     */
+    public int getProxyPort() {
+        return _proxyHost != null ? _proxyPort : super.getProxyPort();
+    }
+
+
+    /**
+     * Returns the proxy through which requests from this conversation are sent, or null if none has been specified
+     * for this conversation, in which case the proxy settings of the JVM apply.
+     */
+    public Proxy getProxy() {
+        return _proxy;
+    }
+
+
+    /**
+     * Returns the transport used to send requests from this conversation.
+     */
+    public HttpTransport getTransport() {
+        return _transport;
+    }
+
+
+    /**
+     * Specifies the transport used to send requests from this conversation. By default, each request
+     * opens a new java.net.URLConnection.
+     * @param transport the transport to use
+     */
+    public void setTransport( HttpTransport transport ) {
+        if (transport == null) throw new IllegalArgumentException( "Must specify a transport" );
+        _transport = transport;
+    }
+
+
+    /**
+     * set the proxy server to the given proxyHost with the given proxy Port.
+     * This affects only this conversation; the proxy settings of the JVM are left unchanged.
      * @param proxyHost - the hostname of the proxy e.g. proxy.somedomain.org
      * @param proxyPort - the number of the port to use e.g. 8080
      */
     public void setProxyServer( String proxyHost, int proxyPort ) {
         _proxyHost = proxyHost;
         _proxyPort = proxyPort;
+        _proxy = new Proxy( Proxy.Type.HTTP, new InetSocketAddress( proxyHost, proxyPort ) );
     }
 
 
@@ -136,20 +177,22 @@ public class WebConversation extends WebClient {
 
 
 		/**
-		 * get the Uniform Resource Locator for this request
+		 * get the Uniform Resource Locator for this request. If the request is rerouted, the Host header for it
+		 * is added to the specified headers rather than to those of the conversation, which other requests may share.
 		 * @param request
+		 * @param headers the headers to be sent with the request
 		 * @return the URL
 		 * @throws MalformedURLException
 		 */
-		private URL getRequestURL( WebRequest request ) throws MalformedURLException {
+		private URL getRequestURL( WebRequest request, HeaderDictionary headers ) throws MalformedURLException {
         DNSListener dnsListener = getClientProperties().getDnsListener();
         if (dnsListener == null) return request.getURL();
 
         String hostName = request.getURL().getHost();
         String portPortion = request.getURL().getPort() == -1 ? "" : (":" + request.getURL().getPort());
-        setHeaderField( "Host", hostName + portPortion );
+        headers.put( "Host", hostName + portPortion );
         String actualHost = dnsListener.getIpAddress( hostName );
-        if (HttpUnitOptions.isLoggingHttpHeaders()) System.out.println( "Rerouting request to :: " + actualHost );
+        if (isLoggingHttpHeaders()) System.out.println( "Rerouting request to :: " + actualHost );
         return new URL( request.getURL().getProtocol(), actualHost, request.getURL().getPort(), request.getURL().getFile() );
     }
 
@@ -157,38 +200,28 @@ public class WebConversation extends WebClient {
 //---------------------------------- private members --------------------------------
 
 
-    /**
-     * open a connection for the given uniform resource locator
-     * @param url - the url to use
-     */
-    private URLConnection openConnection( URL url ) throws MalformedURLException, IOException {
-        URLConnection connection = url.openConnection();
-        if (connection instanceof HttpURLConnection) ((HttpURLConnection) connection).setInstanceFollowRedirects( false );
-        connection.setUseCaches( false );
-        return connection;
+    private boolean isLoggingHttpHeaders() {
+        return getClientProperties().getConfiguration().isLoggingHttpHeaders();
     }
 
 
     /**
-     * send the headers for the given connection based on the given Dictionary of headers
-     * @param connection
-     * @param headers
+     * add the given Dictionary of headers to those to be sent
+     * @param target the headers to be sent
+     * @param headers the headers to add
      */
-    private void sendHeaders( URLConnection connection, Dictionary headers ) {
+    private void addHeaders( HeaderDictionary target, Dictionary headers ) {
         boolean sendReferer = getClientProperties().isSendReferer();
+        boolean loggingHttpHeaders = isLoggingHttpHeaders();
         for (Enumeration e = headers.keys(); e.hasMoreElements();) {
             String key = (String) e.nextElement();
             if ( sendReferer || !"referer".equalsIgnoreCase( key ) ) {
-	            connection.setRequestProperty( key, (String) headers.get( key ) );
-	            if (HttpUnitOptions.isLoggingHttpHeaders()) {
-	                if (key.equalsIgnoreCase( "authorization" ) || key.equalsIgnoreCase( "proxy-authorization") ) {
-	                    System.out.println( "Sending:: " + key + ": " + headers.get( key ) );
-	                } else {
-	                    System.out.println( "Sending:: " + key + ": " + connection.getRequestProperty( key ) );
-	                }
+	            target.put( key, headers.get( key ) );
+	            if (loggingHttpHeaders) {
+	                System.out.println( "Sending:: " + key + ": " + headers.get( key ) );
 	            }
-        		} else if (HttpUnitOptions.isLoggingHttpHeaders()) {
-        				System.out.println( "Blocked sending referer:: "+ connection.getRequestProperty( key ) );
+        		} else if (loggingHttpHeaders) {
+        				System.out.println( "Blocked sending referer:: "+ headers.get( key ) );
         		}		
         } // for
     }
@@ -509,6 +509,14 @@ public class WebRequest {
     }
 
 
+    /**
+     * Returns the number of bytes which writeMessageBody will write, or -1 if that is not known in advance.
+     */
+    protected long getMessageBodyLength() throws IOException {
+        return 0;
+    }
+
+
     final
     protected URL getURLBase() {
         return _urlBase;
@@ -455,7 +455,7 @@ abstract public class WebRequestSource extends ParameterHolder implements
 	 */
 	public ScriptingHandler getScriptingHandler() {
 		if (_scriptable == null) {
-			_scriptable = HttpUnitOptions.getScriptingEngine().createHandler(this);
+			_scriptable = getBaseResponse().getConfiguration().getScriptingEngine().createHandler(this);
 		}
 		return _scriptable;
 	}
@@ -35,7 +35,8 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.MalformedURLException;
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 import java.util.zip.GZIPInputStream;
 
@@ -70,8 +71,6 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
     
     
     private static final int UNINITIALIZED_INT = -2;
-    private static final int UNKNOWN_LENGTH_TIMEOUT = 500;
-    private static final int UNKNOWN_LENGTH_RETRY_INTERVAL = 10;
 
     private FrameSelector _frame;
     // allow to switch off parsing e.g. for method="HEAD"
@@ -80,6 +79,8 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
     private String  _refreshHeader;
     private URL     _baseURL;
     private boolean _parsingPage;
+    /** The src attributes of the script tags found by readTags, in document order. **/
+    private List    _scriptSources = new ArrayList();
 
     /**
      * is parsing on?
@@ -103,7 +104,8 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
      * access to WebResponse parsing without using a WebClient.
      **/
     public static WebResponse newResponse( URLConnection connection ) throws IOException {
-        return new HttpWebResponse( null, FrameSelector.TOP_FRAME, connection.getURL(), connection, HttpUnitOptions.getExceptionsThrownOnErrorStatus() );
+        return new HttpWebResponse( null, FrameSelector.TOP_FRAME, connection.getURL(), new URLConnectionTransport.Response( connection ),
+                                    HttpUnitOptions.getExceptionsThrownOnErrorStatus() );
     }
 
 
@@ -257,7 +259,7 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
         if (_characterSet == null) {
             readContentTypeHeader();
             if (_characterSet == null) setCharacterSet( getHeaderField( "Charset" ) );
-            if (_characterSet == null) setCharacterSet( HttpUnitOptions.getDefaultCharacterSet() );
+            if (_characterSet == null) setCharacterSet( getConfiguration().getDefaultCharacterSet() );
         }
         return _characterSet;
     }
@@ -299,9 +301,9 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
      * @throws IOException
      */
     public byte[] getBytes() throws IOException {
-        if (_responseText == null) 
+        if (!isBodyLoaded()) 
         	loadResponseText();
-        return _bytes;
+        return _bodyFile == null ? _bytes : readBodyFile();
     } 
     
     /**
@@ -310,13 +312,17 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
      * @return the response text
      **/
     public String getText() throws IOException {
-        if (_responseText == null) 
+        if (!isBodyLoaded()) 
         	loadResponseText();
+        if (_responseText == null)
+            _responseText = decodeBody();
         return _responseText;
     }
 
     /**
-     * Returns a buffered input stream for reading the contents of this reply.
+     * Returns a buffered input stream for reading the contents of this reply. If the client uses streaming responses
+     * and the body has not yet been read, this is the stream from the connection itself.
+     * @see ClientProperties#setStreamingResponses
      **/
     public InputStream getInputStream() throws IOException {
         if (_inputStream == null) 
@@ -712,7 +718,7 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
 
 
     public ScriptingHandler getScriptingHandler() {
-        if (_scriptingHandler == null) _scriptingHandler = HttpUnitOptions.getScriptingEngine().createHandler( this );
+        if (_scriptingHandler == null) _scriptingHandler = getConfiguration().getScriptingEngine().createHandler( this );
         return _scriptingHandler;
     }
 
@@ -818,6 +824,14 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
         }
 
 
+        /**
+         * Records an error reported by a script of this page with the client which requested it.
+         */
+        public void reportScriptError( ScriptError error ) {
+            if (_client != null) _client.postScriptError( error );
+        }
+
+
         public String getUserResponse( String prompt, String defaultResponse ) {
             return prompt( prompt, defaultResponse );
         }
@@ -856,6 +870,26 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
         }
 
 
+        /**
+         * Schedules a task on behalf of a script in this page, to run against the virtual clock of its window.
+         * The task is cancelled if the page is replaced before it runs.
+         * @param delay    the time in milliseconds before the task first runs
+         * @param interval the time in milliseconds between runs, or zero to run the task only once
+         * @return an identifier for the timer, or zero if the page is not in a window
+         */
+        public int setTimer( Runnable task, long delay, long interval ) {
+            return _window == null ? 0 : _window.getEventLoop().schedule( WebResponse.this, task, delay, interval );
+        }
+
+
+        /**
+         * Cancels a timer scheduled with setTimer.
+         */
+        public void clearTimer( int timerId ) {
+            if (_window != null) _window.getEventLoop().cancel( timerId );
+        }
+
+
         public Scriptable open( String urlString, String name, String features, boolean replace )
                 throws IOException, SAXException {
             WebResponse response = (WebResponse) openNewWindow( name, urlString );
@@ -883,11 +917,8 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
             } else if (propertyName.equalsIgnoreCase( "closed" )) {
                 return (getFrameName().equals( WebRequest.TOP_FRAME ) && _window.isClosed()) ? Boolean.TRUE : Boolean.FALSE;
             } else {
-                try {
-                    return getSubframeContents( propertyName ).getScriptableObject();
-                } catch (NoSuchFrameException e) {
-                    return super.get( propertyName );
-                }
+                WebResponse subframe = _window == null ? null : _window.findSubframeContents( _frame, propertyName );
+                return subframe != null ? subframe.getScriptableObject() : super.get( propertyName );
             }
         }
 
@@ -972,7 +1003,7 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
 
     final
     protected void defineRawInputStream( InputStream inputStream ) throws IOException {
-        if (_inputStream != null || _responseText != null) {
+        if (_inputStream != null || isBodyLoaded()) {
             throw new IllegalStateException( "Must be called before response text is defined." );
         }
 
@@ -1104,6 +1135,16 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
      */
     private byte[] _bytes;
 
+    /**
+     * the file holding a response body too large to be kept in memory
+     */
+    private BodyFile _bodyFile;
+
+    /**
+     * true once the body has been read from the underlying stream
+     */
+    private boolean _bodyLoaded;
+
 	private InputStream _inputStream;
 
     private final URL    _pageURL;
@@ -1118,26 +1159,37 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
     	return _client;
     }
 
+
+    /**
+     * Returns the configuration which controls how this response is handled and parsed.
+     */
+    HttpUnitConfiguration getConfiguration() {
+        return _client == null ? HttpUnitConfiguration.getDefaults() : _client.getClientProperties().getConfiguration();
+    }
+
     private ScriptingHandler _scriptingHandler;
 
 
+    /**
+     * Reads the body of this response from its input stream. The text is decoded only when first requested.
+     * Bodies larger than the client's in-memory limit are written to a temporary file rather than kept on the heap.
+     */
     protected void loadResponseText() throws IOException {
-        if (_responseText != null) throw new IllegalStateException( "May only invoke loadResponseText once" );
-        _responseText = "";
+        if (isBodyLoaded()) throw new IllegalStateException( "May only invoke loadResponseText once" );
+        _bodyLoaded = true;
 
         InputStream inputStream = getInputStream();
         try {
             final int contentLength = this.encodedUsingGZIP() ? -1 : getContentLength();
             int bytesRemaining = contentLength < 0 ? Integer.MAX_VALUE : contentLength;
-            _bytes = readFromStream( inputStream, bytesRemaining );
+            int length = readFromStream( inputStream, bytesRemaining );
 
-            readTags( _bytes );
-            _responseText = new String( _bytes, getCharacterSet() );
-            _inputStream  = new ByteArrayInputStream( _bytes );
+            _inputStream  = _bodyFile == null ? (InputStream) new ByteArrayInputStream( _bytes )
+                                              : new BodyFileInputStream( _bodyFile );
 
-            if (HttpUnitOptions.isCheckContentLength() && contentLength >= 0 && _bytes.length != contentLength) {
+            if (getConfiguration().isCheckContentLength() && contentLength >= 0 && length != contentLength) {
                 throw new IOException("Truncated message. Expected length: " + contentLength +
-                                                       ", Actual length: " + _bytes.length);
+                                                       ", Actual length: " + length);
             }
         } finally {
             inputStream.close();
@@ -1145,65 +1197,151 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
     }
 
 
-    private byte[] readFromStream( InputStream inputStream, int maxBytes ) throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private boolean isBodyLoaded() {
+        return _bodyLoaded || _responseText != null;
+    }
+
+
+    /**
+     * Reads the body from the specified stream, stopping after the specified number of bytes or at the end of the stream.
+     * Blocks until the transport reports the end of the body, so an unknown length is bounded only by the read timeout.
+     * The body is left in _bytes unless it exceeds the client's in-memory limit, in which case it is copied
+     * to _bodyFile, and only the part already read is scanned for meta and base tags.
+     * @return the number of bytes read
+     * @throws IOException if the body is larger than the maximum response size of the client
+     */
+    private int readFromStream( InputStream inputStream, int maxBytes ) throws IOException {
+        ClientProperties properties = getClientPropertiesOrDefaults();
+        int maxResponseSize = properties.getMaxResponseSize();
+        int maxInMemorySize = properties.getMaxInMemoryResponseSize();
+        if (maxResponseSize > 0 && maxBytes != Integer.MAX_VALUE && maxBytes > maxResponseSize) {
+            throw new IOException( "Response too large. Content length: " + maxBytes + ", maximum: " + maxResponseSize );
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream( Math.min( maxBytes, 8 * 1024 ) );
+        OutputStream fileStream = null;
         byte[] buffer = new byte[8 * 1024];
-        int count = 0;
-        if (maxBytes > 0) {
-            do {
-                outputStream.write( buffer, 0, count );
+        int length = 0;
+        boolean complete = false;
+        try {
+            while (maxBytes > 0) {
+                int count = inputStream.read( buffer, 0, Math.min( maxBytes, buffer.length ) );
+                if (count == -1) break;
                 maxBytes -= count;
-                if (maxBytes <= 0) break;
-                count = inputStream.read( buffer, 0, Math.min( maxBytes, buffer.length ) );
-            } while (count != -1);
-        } else {
-            do {
-                outputStream.write( buffer, 0, count );
-                int available = getAvailableBytes( inputStream );
-                count = (available == 0) ? -1 : inputStream.read( buffer, 0, buffer.length );
-            } while (count != -1);
+                length += count;
+                if (maxResponseSize > 0 && length > maxResponseSize) {
+                    throw new IOException( "Response too large. Maximum length: " + maxResponseSize );
+                }
+                if (fileStream != null) {
+                    fileStream.write( buffer, 0, count );
+                } else {
+                    outputStream.write( buffer, 0, count );
+                    if (maxInMemorySize > 0 && length > maxInMemorySize) {
+                        _bodyFile = new BodyFile();
+                        fileStream = new BufferedOutputStream( new FileOutputStream( _bodyFile.getFile() ) );
+                        outputStream.writeTo( fileStream );
+                    }
+                }
+            }
+            if (fileStream != null) fileStream.close();
+            complete = true;
+        } finally {
+            if (!complete && _bodyFile != null) {
+                try {
+                    if (fileStream != null) fileStream.close();
+                } catch (IOException e) {
+                    // the partial body is being discarded, so there is nothing more to report
+                } finally {
+                    _bodyFile.delete();
+                    _bodyFile = null;
+                }
+            }
         }
 
-        return outputStream.toByteArray();
+        byte[] bytes = outputStream.toByteArray();
+        readTags( bytes );
+        if (_bodyFile == null) _bytes = bytes;
+        return length;
     }
 
 
-    private int getAvailableBytes( InputStream inputStream ) throws IOException {
-        int timeLeft = UNKNOWN_LENGTH_TIMEOUT;
-        int available;
-        do {
-            timeLeft -= UNKNOWN_LENGTH_RETRY_INTERVAL;
-            try { Thread.sleep( UNKNOWN_LENGTH_RETRY_INTERVAL ); } catch (InterruptedException e) { /* do nothing */ }
-            available = inputStream.available();
-        } while (available == 0 && timeLeft > 0);
-        return available;
+    /**
+     * Decodes the body read by loadResponseText, using the character set of this response.
+     */
+    private String decodeBody() throws IOException {
+        if (_bodyFile == null) return _bytes == null ? "" : new String( _bytes, getCharacterSet() );
+
+        Reader reader = new InputStreamReader( new FileInputStream( _bodyFile.getFile() ), getCharacterSet() );
+        try {
+            StringBuffer sb = new StringBuffer( (int) Math.min( _bodyFile.getFile().length(), Integer.MAX_VALUE ) );
+            char[] buffer = new char[8 * 1024];
+            int count;
+            while ((count = reader.read( buffer )) != -1) sb.append( buffer, 0, count );
+            return sb.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+
+    private byte[] readBodyFile() throws IOException {
+        byte[] bytes = new byte[ (int) _bodyFile.getFile().length() ];
+        DataInputStream inputStream = new DataInputStream( new FileInputStream( _bodyFile.getFile() ) );
+        try {
+            inputStream.readFully( bytes );
+            return bytes;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+
+    private ClientProperties getClientPropertiesOrDefaults() {
+        return _client == null ? ClientProperties.getDefaultProperties() : _client.getClientProperties();
     }
 
     /**
-     * read the tags from the given message
+     * read the tags from the head of the given message which affect how it is loaded, and the sources of its scripts
+     * if they may be requested in parallel
      * @param rawMessage
      * @throws UnsupportedEncodingException
      * @throws MalformedURLException
      */
     private void readTags( byte[] rawMessage ) throws UnsupportedEncodingException, MalformedURLException {
-        ByteTagParser parser = new ByteTagParser( rawMessage );
-        ByteTag tag = parser.getNextTag();
-        while (tag != null ) {
-            if (tag.getName().equalsIgnoreCase( "meta" )) processMetaTag( tag );
-            if (tag.getName().equalsIgnoreCase( "base" )) processBaseTag( tag );
-            // loop over a noscript region
-            if (tag.getName().equalsIgnoreCase( "noscript") && HttpUnitOptions.isScriptingEnabled()) {
-                do { 
-                	tag = parser.getNextTag(); 
-                } 
-                while (!tag.getName().equalsIgnoreCase( "/noscript") );
+        HeadScanner scanner = new HeadScanner( rawMessage );
+        boolean scriptingEnabled = getConfiguration().isScriptingEnabled();
+        boolean findScripts = scriptingEnabled && getClientPropertiesOrDefaults().getMaxParallelScriptRequests() > 1;
+        boolean inHead = true;
+        _scriptSources.clear();
+        while (scanner.nextTag()) {
+            if (inHead && scanner.isPastHead()) {
+                inHead = false;
+                if (!findScripts) break;
+            }
+            if (scanner.isTag( "script" )) {
+                String source = findScripts ? scanner.getAttribute( "src" ) : null;
+                if (source != null) _scriptSources.add( source );
+            } else if (inHead && scanner.isTag( "meta" )) {
+                processMetaTag( scanner );
+            } else if (inHead && scanner.isTag( "base" )) {
+                processBaseTag( scanner );
+            } else if (scanner.isTag( "noscript" ) && scriptingEnabled) {
+                scanner.skipContentsOf( "noscript" );
             }
-            tag = parser.getNextTag();
         }
     }
 
 
-    private void processBaseTag( ByteTag tag ) throws MalformedURLException {
+    /**
+     * Returns the src attributes of the external scripts referenced by this response, in document order,
+     * as found by scanning the raw response before it is parsed.
+     */
+    List getScriptSources() {
+        return _scriptSources;
+    }
+
+
+    private void processBaseTag( HeadScanner tag ) throws UnsupportedEncodingException, MalformedURLException {
         if (tag.getAttribute( "href" ) != null) _baseURL = new URL( getURL(), tag.getAttribute( "href" ) );
         if (tag.getAttribute( "target" ) != null) _baseTarget = tag.getAttribute( "target" );
     }
@@ -1213,7 +1351,7 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
      * process MetaTags based on the tag
      * @param tag
      */
-    private void processMetaTag( ByteTag tag ) {
+    private void processMetaTag( HeadScanner tag ) throws UnsupportedEncodingException {
         if (isHttpEquivMetaTag( tag, "content-type" )) {
             inferContentType( tag.getAttribute( "content" ) );
         } else if (isHttpEquivMetaTag( tag, "refresh" )) {
@@ -1228,7 +1366,7 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
      * @param headerName
      * @return
      */
-    private boolean isHttpEquivMetaTag( ByteTag tag, String headerName )
+    private boolean isHttpEquivMetaTag( HeadScanner tag, String headerName ) throws UnsupportedEncodingException
     {
     	String equiv1=tag.getAttribute( "http_equiv" );
     	String equiv2=tag.getAttribute( "http-equiv" );
@@ -1320,8 +1458,9 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
         String contentHeader = (_contentHeader != null) ? _contentHeader
                                                         : getHeaderField( "Content-type" );
         if (contentHeader == null) {
-            _contentType = HttpUnitOptions.getDefaultContentType();
-            setCharacterSet( HttpUnitOptions.getDefaultCharacterSet() );
+            HttpUnitConfiguration configuration = getConfiguration();
+            _contentType = configuration.getDefaultContentType();
+            setCharacterSet( configuration.getDefaultCharacterSet() );
             _contentHeader = _contentType + ";charset=" + _characterSet;
         } else {
             String[] parts = HttpUnitUtils.parseContentTypeHeader( contentHeader );
@@ -1352,7 +1491,7 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
         if (_page == null) {
             try {
                 _parsingPage = true;
-                if (HttpUnitOptions.isCheckHtmlContentType() && !isHTML()) throw new NotHTMLException( getContentType() );
+                if (getConfiguration().isCheckHtmlContentType() && !isHTML()) throw new NotHTMLException( getContentType() );
                 _page = new HTMLPage( this, _frame, _baseURL, _baseTarget, getCharacterSet() );
                 if (_withParse) {
                 	_page.parse( getText(), _pageURL );
@@ -1420,116 +1559,291 @@ public class WebResponse implements HTMLSegment, CookieSource, DomWindowProxy {
 
 //=======================================================================================
 
-    static class ByteTag {
+    /**
+     * A temporary file holding a response body. The file is deleted as soon as the response which reads it, and any
+     * stream open on it, may no longer be used, or at once if the body could not be written completely.
+     */
+    static class BodyFile {
+
+        private File _file;
+
 
-        ByteTag( byte[] buffer, int start, int length ) throws UnsupportedEncodingException {
-            _buffer = new String( buffer, start, length, WebResponse.getDefaultEncoding() ).toCharArray();
-            _name = nextToken();
+        BodyFile() throws IOException {
+            _file = File.createTempFile( "httpunit", ".body" );
+        }
+
+
+        File getFile() throws IOException {
+            if (_file == null) throw new IOException( "Response body has been discarded" );
+            return _file;
+        }
 
-            String attribute = "";
-            String token = nextToken();
-            while (token.length() != 0) {
-                if (token.equals( "=" ) && attribute.length() != 0) {
-                    getAttributes().put( attribute.toLowerCase(), nextToken() );
-                    attribute = "";
+
+        synchronized void delete() {
+            if (_file != null) _file.delete();
+            _file = null;
+        }
+
+
+        protected void finalize() throws Throwable {
+            delete();
+            super.finalize();
+        }
+    }
+
+
+    /**
+     * A stream which reads a body file. The file is opened by the first read and closed when the end is reached.
+     */
+    static class BodyFileInputStream extends InputStream {
+
+        private BodyFile    _bodyFile;
+        private InputStream _stream;
+        private boolean     _closed;
+
+
+        BodyFileInputStream( BodyFile bodyFile ) {
+            _bodyFile = bodyFile;
+        }
+
+
+        public int read() throws IOException {
+            InputStream stream = getStream();
+            int result = stream == null ? -1 : stream.read();
+            if (result == -1) close();
+            return result;
+        }
+
+
+        public int read( byte[] buffer, int offset, int length ) throws IOException {
+            InputStream stream = getStream();
+            int result = stream == null ? -1 : stream.read( buffer, offset, length );
+            if (result == -1) close();
+            return result;
+        }
+
+
+        public int available() throws IOException {
+            InputStream stream = getStream();
+            return stream == null ? 0 : stream.available();
+        }
+
+
+        public void close() throws IOException {
+            _closed = true;
+            if (_stream != null) _stream.close();
+            _stream = null;
+        }
+
+
+        private InputStream getStream() throws IOException {
+            if (_closed) return null;
+            if (_stream == null) _stream = new BufferedInputStream( new FileInputStream( _bodyFile.getFile() ) );
+            return _stream;
+        }
+    }
+
+
+    /**
+     * A scanner which finds the tags of a page in its raw bytes, without copying them. Only the tag names asked about
+     * are compared, and only the attribute values asked for are decoded into strings. Comments and declarations are
+     * skipped, as are the contents of the elements which hold text rather than tags, such as scripts.
+     */
+    static class HeadScanner {
+
+        /** The elements whose contents are skipped up to their end tags. **/
+        private final static String[] RAW_TEXT_ELEMENTS = { "script", "style", "title", "textarea" };
+
+        /** The elements which may appear in the head of a page. Any other tag ends the head. **/
+        private final static String[] HEAD_ELEMENTS = { "html", "head", "title", "meta", "base", "link", "script",
+                                                       "style", "noscript" };
+
+        HeadScanner( byte[] buffer ) {
+            _buffer = buffer;
+        }
+
+
+        /**
+         * Advances to the next tag, returning false if there are no more.
+         */
+        boolean nextTag() {
+            if (_rawTextElement != null) skipContentsOf( _rawTextElement );
+            _rawTextElement = null;
+            _followsText = false;
+            while (true) {
+                int start = _position;
+                while (start < _buffer.length && _buffer[ start ] != '<') {
+                    if (_buffer[ start ] > ' ' && _buffer[ start ] < 0x7F) _followsText = true;
+                    start++;
+                }
+                if (start + 1 >= _buffer.length) return noMoreTags();
+
+                if (startsWith( start + 1, "!--" )) {
+                    int end = indexOf( start + 4, "-->" );
+                    if (end < 0) return noMoreTags();
+                    _position = end + 3;
+                } else if (_buffer[ start + 1 ] == '!' || _buffer[ start + 1 ] == '?') {
+                    int end = indexOf( start + 2, ">" );
+                    if (end < 0) return noMoreTags();
+                    _position = end + 1;
                 } else {
-                    if (attribute.length() > 0) getAttributes().put( attribute.toLowerCase(), "" );
-                    attribute = token;
+                    int end = findTagEnd( start + 1 );
+                    if (end < 0) return noMoreTags();
+                    _nameStart = start + 1;
+                    for (_nameEnd = _nameStart + 1; _nameEnd < end && !isNameTerminator( _buffer[ _nameEnd ] ); _nameEnd++);
+                    _tagEnd = end;
+                    _position = end + 1;
+                    for (int i = 0; i < RAW_TEXT_ELEMENTS.length; i++) {
+                        if (isTag( RAW_TEXT_ELEMENTS[i] )) _rawTextElement = RAW_TEXT_ELEMENTS[i];
+                    }
+                    return true;
                 }
-                token = nextToken();
             }
         }
 
 
-        public String getName() {
-            return _name;
+        /**
+         * Returns true if the current tag has the specified name, ignoring case. The name of an end tag starts with '/'.
+         */
+        boolean isTag( String name ) {
+            return matches( _nameStart, _nameEnd, name );
         }
 
-        public String getAttribute( String attributeName ) {
-            return (String) getAttributes().get( attributeName );
+
+        /**
+         * Returns true if the current tag, or text preceding it, could not appear in the head of a page.
+         */
+        boolean isPastHead() {
+            if (_followsText || isTag( "/head" )) return true;
+            if (_buffer[ _nameStart ] == '/') return false;
+            for (int i = 0; i < HEAD_ELEMENTS.length; i++) {
+                if (isTag( HEAD_ELEMENTS[i] )) return false;
+            }
+            return true;
         }
 
-        public String toString() {
-            return "ByteTag[ name=" + _name + ";attributes = " + _attributes + ']';
+
+        /**
+         * Returns the value of the named attribute of the current tag, or null if it has no such attribute.
+         */
+        String getAttribute( String name ) throws UnsupportedEncodingException {
+            int i = _nameEnd;
+            while (i < _tagEnd) {
+                while (i < _tagEnd && (isWhitespace( _buffer[ i ] ) || _buffer[ i ] == '/')) i++;
+                int nameStart = i;
+                while (i < _tagEnd && !isNameTerminator( _buffer[ i ] ) && _buffer[ i ] != '=') i++;
+                int nameEnd = i;
+                while (i < _tagEnd && isWhitespace( _buffer[ i ] )) i++;
+                int valueStart = i, valueEnd = i;
+                if (i < _tagEnd && _buffer[ i ] == '=') {
+                    i++;
+                    while (i < _tagEnd && isWhitespace( _buffer[ i ] )) i++;
+                    if (i < _tagEnd && (_buffer[ i ] == '"' || _buffer[ i ] == '\'')) {
+                        byte quote = _buffer[ i++ ];
+                        valueStart = i;
+                        while (i < _tagEnd && _buffer[ i ] != quote) i++;
+                        valueEnd = i++;
+                    } else {
+                        valueStart = i;
+                        while (i < _tagEnd && !isWhitespace( _buffer[ i ] )) i++;
+                        valueEnd = i;
+                    }
+                }
+                if (nameEnd > nameStart && matches( nameStart, nameEnd, name )) {
+                    return new String( _buffer, valueStart, valueEnd - valueStart, WebResponse.getDefaultEncoding() );
+                }
+                if (nameEnd == nameStart && i == nameStart) i++;
+            }
+            return null;
         }
 
 
-        private Hashtable getAttributes() {
-            if (_attributes == null) _attributes = new Hashtable();
-            return _attributes;
+        /**
+         * Skips to the end tag of the specified element, so that it will be the next tag found.
+         */
+        void skipContentsOf( String name ) {
+            _rawTextElement = null;
+            for (int i = indexOf( _position, "</" ); i >= 0; i = indexOf( i + 2, "</" )) {
+                int end = i + 2 + name.length();
+                if (end <= _buffer.length && matches( i + 2, end, name ) && (end == _buffer.length || isNameTerminator( _buffer[ end ] ))) {
+                    _position = i;
+                    return;
+                }
+            }
+            _position = _buffer.length;
         }
 
 
-        private String _name = "";
-        private Hashtable _attributes;
+        private boolean noMoreTags() {
+            _position = _buffer.length;
+            return false;
+        }
 
 
-        private char[] _buffer;
-        private int    _end = -1;
+        /**
+         * Returns the index of the '>' which ends the tag starting at the specified index, ignoring any within
+         * quoted attribute values, or -1 if the tag is not ended.
+         */
+        private int findTagEnd( int start ) {
+            byte previous = 0;
+            for (int i = start; i < _buffer.length; i++) {
+                byte b = _buffer[ i ];
+                if (b == '>') return i;
+                if ((b == '"' || b == '\'') && previous == '=') {
+                    int close = indexOf( i + 1, b == '"' ? "\"" : "'" );
+                    if (close >= 0) i = close;
+                }
+                if (!isWhitespace( b )) previous = b;
+            }
+            return -1;
+        }
 
 
-        private String nextToken() {
-            int start = _end + 1;
-            while (start < _buffer.length && Character.isWhitespace( _buffer[ start ] )) start++;
-            if (start >= _buffer.length) {
-                return "";
-            } else if (_buffer[ start ] == '"') {
-                for (_end = start +1; _end < _buffer.length && _buffer[ _end ] != '"'; _end++);
-                return new String( _buffer, start +1, _end-start -1 );
-            } else if (_buffer[ start ] == '\'') {
-                for (_end = start +1; _end < _buffer.length && _buffer[ _end ] != '\''; _end++);
-                return new String( _buffer, start +1, _end-start -1 );
-            } else if (_buffer[ start ] == '=') {
-                _end = start;
-                return "=";
-            } else {
-                for (_end = start +1; _end < _buffer.length && _buffer[ _end ] != '=' && !Character.isWhitespace( _buffer[ _end ] ); _end++);
-                return new String( _buffer, start, (_end--)-start );
+        private int indexOf( int start, String target ) {
+            for (int i = start; i + target.length() <= _buffer.length; i++) {
+                if (startsWith( i, target )) return i;
             }
+            return -1;
         }
-    }
 
 
-//=======================================================================================
+        private boolean startsWith( int start, String target ) {
+            if (start + target.length() > _buffer.length) return false;
+            for (int i = 0; i < target.length(); i++) {
+                if (_buffer[ start + i ] != target.charAt( i )) return false;
+            }
+            return true;
+        }
 
 
-    static class ByteTagParser {
-        ByteTagParser( byte[] buffer ) {
-            _buffer = buffer;
+        private boolean matches( int start, int end, String name ) {
+            if (end - start != name.length()) return false;
+            for (int i = 0; i < name.length(); i++) {
+                int b = _buffer[ start + i ];
+                if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+                if (b != name.charAt( i )) return false;
+            }
+            return true;
         }
 
 
-        ByteTag getNextTag() throws UnsupportedEncodingException {
-            ByteTag byteTag=null;
-            do {
-                int _start = _end + 1;
-                while (_start < _buffer.length && _buffer[ _start ] != '<') _start++;
-                // proposed patch for bug report 
-                // [ 1376739 ] iframe tag not recognized if Javascript code contains '<'
-                // by Nathan Jakubiak
-                // uncommented since it doesn't seem to fix the test in WebFrameTest.java
-                // if (_scriptDepth > 0 && _start+1 < _buffer.length &&
-                //		_buffer[ _start+1 ] != '/') {
-                //		_end = _start+1;
-                //		continue;
-                //}
-                for (_end =_start +1; _end < _buffer.length && _buffer[ _end ] != '>'; _end++);
-                if (_end >= _buffer.length || _end < _start) return null;
-                byteTag = new ByteTag( _buffer, _start +1, _end-_start -1 );
-                if (byteTag.getName().equalsIgnoreCase("script")) {
-                    _scriptDepth++;
-                    return byteTag;
-                }
-                if (byteTag.getName().equalsIgnoreCase("/script")) _scriptDepth--;
-            } while (_scriptDepth > 0);
-            return byteTag;
+        private static boolean isNameTerminator( byte b ) {
+            return isWhitespace( b ) || b == '>' || b == '/';
         }
 
 
-        private int _scriptDepth = 0;
-        private int _end   = -1;
+        private static boolean isWhitespace( byte b ) {
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+        }
+
 
         private byte[] _buffer;
+        private int    _position;
+        private int    _nameStart;
+        private int    _nameEnd;
+        private int    _tagEnd;
+        private boolean _followsText;
+        private String _rawTextElement;
     }
 
 
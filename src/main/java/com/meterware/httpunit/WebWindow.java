@@ -21,12 +21,17 @@ package com.meterware.httpunit;
  *
  *******************************************************************************************************************/
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.xml.sax.SAXException;
 import com.meterware.httpunit.scripting.ScriptingHandler;
@@ -53,6 +58,9 @@ public class WebWindow {
 	/** True if this window has been closed. **/
 	private boolean _closed;
 
+	/** The timers scheduled by the scripts of the pages in this window. **/
+	private final EventLoop _eventLoop = new EventLoop();
+
 	static final String NO_NAME = "$$HttpUnit_Window$$_";
 
 	/**
@@ -102,6 +110,15 @@ public class WebWindow {
 		if (!_closed)
 			_client.close(this);
 		_closed = true;
+		_eventLoop.clear();
+	}
+
+	/**
+	 * Returns the timers scheduled by the scripts of the pages in this window,
+	 * which run against a virtual clock advanced by the caller.
+	 */
+	public EventLoop getEventLoop() {
+		return _eventLoop;
 	}
 
 	/**
@@ -201,6 +218,94 @@ public class WebWindow {
 				response, requestContext);
 	}
 
+	/**
+	 * Loads the contents of the specified subframes, in order. If the client
+	 * allows it, the frames are requested concurrently, but each response is
+	 * still placed into its frame only after those of the frames before it.
+	 * 
+	 * @param requests
+	 *            the requests for the subframes; those with empty URLs are
+	 *            skipped
+	 * @param requestContext
+	 * @throws IOException
+	 * @throws SAXException
+	 */
+	void getSubframeResponses(WebRequest[] requests,
+			RequestContext requestContext) throws IOException, SAXException {
+		int maxParallelRequests = _client.getClientProperties()
+				.getMaxParallelFrameRequests();
+		Future[] pending = new Future[requests.length];
+		int numRequested = 0;
+		try {
+			for (int i = 0; i < requests.length; i++) {
+				if (maxParallelRequests > 1) {
+					for (; numRequested < requests.length
+							&& numRequested < i + maxParallelRequests; numRequested++) {
+						pending[numRequested] = requestResource(requests[numRequested]);
+					}
+				}
+				if (requests[i].getURLString().length() == 0) {
+					continue;
+				} else if (pending[i] == null) {
+					getSubframeResponse(requests[i], requestContext);
+				} else {
+					WebResponse response = getRequestedResource(pending[i]);
+					pending[i] = null;
+					if (response != null)
+						updateWindow(requests[i].getTarget(), response,
+								requestContext);
+				}
+			}
+		} finally {
+			for (int i = 0; i < pending.length; i++) {
+				if (pending[i] != null)
+					pending[i].cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Starts retrieving the specified resource on the client's executor.
+	 * Returns null if the request should instead be handled in order, as
+	 * when it is empty or would run a script.
+	 */
+	Future requestResource(final WebRequest request) {
+		String urlString = request.getURLString().trim();
+		if (urlString.length() == 0 || urlString.startsWith("about:")
+				|| HttpUnitUtils.isJavaScriptURL(urlString))
+			return null;
+
+		FutureTask task = new FutureTask(new Callable() {
+			public Object call() throws Exception {
+				return getResource(request);
+			}
+		});
+		_client.getExecutor().execute(task);
+		return task;
+	}
+
+	/**
+	 * Waits for a resource started by requestResource, and returns it,
+	 * rethrowing any exception thrown while retrieving it.
+	 */
+	WebResponse getRequestedResource(Future future) throws IOException {
+		try {
+			return (WebResponse) future.get();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException(
+					"Interrupted while waiting for a frame");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause.toString());
+		}
+	}
+
 	/**
 	 * Updates this web client based on a received response. This includes
 	 * updating cookies and frames.
@@ -214,7 +319,7 @@ public class WebWindow {
 			WebResponse result = getResponse(request);
 			return result;
 		} else if (shouldFollowRedirect(response)) {
-			delay(HttpUnitOptions.getRedirectDelay());
+			delay(_client.getClientProperties().getConfiguration().getRedirectDelay());
 			return getResponse(new RedirectWebRequest(response));
 		} else {
 			_client.updateFrameContents(this, requestTarget, response,
@@ -296,6 +401,10 @@ public class WebWindow {
 		return _frameContents.getSubframeContents(frame, subFrameName);
 	}
 
+	WebResponse findSubframeContents(FrameSelector frame, String subFrameName) {
+		return _frameContents.findSubframeContents(frame, subFrameName);
+	}
+
 	WebResponse getParentFrameContents(FrameSelector frame) {
 		return _frameContents.getParentFrameContents(frame);
 	}
@@ -49,7 +49,7 @@ public class AttrImpl extends NodeImpl implements Attr {
 
     protected void initialize( DocumentImpl owner, String name ) {
         super.initialize( owner );
-        _name = name;
+        _name = Symbols.intern( name );
     }
 
 
@@ -89,8 +89,13 @@ public class AttrImpl extends NodeImpl implements Attr {
 
 
     public void setValue( String value ) throws DOMException {
+        ElementImpl element = _ownerElement instanceof ElementImpl ? (ElementImpl) _ownerElement : null;
+        ElementIndex index = element == null ? null : element.getIndexFor( _name );
+        if (index != null) index.removeAttribute( element, _name );
         _value = value;
         _specified = true;
+        if (index != null) index.addAttribute( element, _name );
+        if (element != null) ((DocumentImpl) getOwnerDocument()).documentChanged();
     }
 
 
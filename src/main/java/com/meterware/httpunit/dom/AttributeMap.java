@@ -0,0 +1,125 @@
+package com.meterware.httpunit.dom;
+/********************************************************************************************************************
+ * $Id$
+ *
+ * Copyright (c) 2026, Russell Gold
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ *******************************************************************************************************************/
+
+/**
+ * The attributes of an element, keyed by name. Elements rarely have more than a few attributes, so they are kept in
+ * an array, in the order in which they were first set, and searched in turn.
+ *
+ * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
+ **/
+class AttributeMap {
+
+    private final static AttrImpl[] NO_ATTRIBUTES = new AttrImpl[0];
+
+    private AttrImpl[] _attributes = NO_ATTRIBUTES;
+    private int        _size;
+
+
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+
+    int size() {
+        return _size;
+    }
+
+
+    /**
+     * Returns the attribute with the specified name, or null if there is none.
+     */
+    AttrImpl get( String name ) {
+        int index = indexOf( name );
+        return index < 0 ? null : _attributes[ index ];
+    }
+
+
+    boolean containsKey( String name ) {
+        return indexOf( name ) >= 0;
+    }
+
+
+    boolean containsValue( Object attribute ) {
+        for (int i = 0; i < _size; i++) {
+            if (_attributes[i] == attribute) return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Adds the specified attribute, replacing any with the same name.
+     * @return the attribute replaced, or null if there was none
+     */
+    AttrImpl put( AttrImpl attribute ) {
+        int index = indexOf( attribute.getName() );
+        if (index >= 0) {
+            AttrImpl oldAttribute = _attributes[ index ];
+            _attributes[ index ] = attribute;
+            return oldAttribute;
+        }
+
+        if (_size == _attributes.length) {
+            AttrImpl[] attributes = new AttrImpl[ Math.max( 4, 2 * _size ) ];
+            System.arraycopy( _attributes, 0, attributes, 0, _size );
+            _attributes = attributes;
+        }
+        _attributes[ _size++ ] = attribute;
+        return null;
+    }
+
+
+    /**
+     * Removes the attribute with the specified name.
+     * @return the attribute removed, or null if there was none
+     */
+    AttrImpl remove( String name ) {
+        int index = indexOf( name );
+        if (index < 0) return null;
+
+        AttrImpl oldAttribute = _attributes[ index ];
+        System.arraycopy( _attributes, index + 1, _attributes, index, _size - index - 1 );
+        _attributes[ --_size ] = null;
+        return oldAttribute;
+    }
+
+
+    /**
+     * Returns a copy of the attributes, in the order in which they were first set.
+     */
+    AttrImpl[] toArray() {
+        AttrImpl[] attributes = new AttrImpl[ _size ];
+        System.arraycopy( _attributes, 0, attributes, 0, _size );
+        return attributes;
+    }
+
+
+    private int indexOf( String name ) {
+        for (int i = 0; i < _size; i++) {
+            if (_attributes[i].getName() == name) return i;
+        }
+        for (int i = 0; i < _size; i++) {
+            if (_attributes[i].getName().equals( name )) return i;
+        }
+        return -1;
+    }
+}
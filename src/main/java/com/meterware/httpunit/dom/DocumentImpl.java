@@ -32,6 +32,9 @@ public class DocumentImpl extends NodeImpl implements Document {
 
     protected Element _documentElement;
 
+    /** The number of changes made to the nodes of this document, used to tell when live lists must be updated. **/
+    private int _modificationCount;
+
 
     static DocumentImpl createDocument() {
         DocumentImpl document = new DocumentImpl();
@@ -150,6 +153,7 @@ public class DocumentImpl extends NodeImpl implements Document {
 
 
     public Element getElementById( String elementId ) {
+        if (getElementIndex() != null) return getElementIndex().getElementById( elementId );
         for (Iterator each = preOrderIterator(); each.hasNext();) {
             Node node = (Node) each.next();
             if (!(node instanceof HTMLElement)) continue;
@@ -160,6 +164,30 @@ public class DocumentImpl extends NodeImpl implements Document {
     }
 
 
+    /**
+     * Returns the number of changes made to the structure or the attributes of the nodes of this document.
+     */
+    int getModificationCount() {
+        return _modificationCount;
+    }
+
+
+    /**
+     * Records a change to the structure or the attributes of the nodes of this document.
+     */
+    void documentChanged() {
+        _modificationCount++;
+    }
+
+
+    /**
+     * Returns the index of the elements of this document, or null if it keeps none.
+     */
+    ElementIndex getElementIndex() {
+        return null;
+    }
+
+
     public Element createElementNS( String namespaceURI, String qualifiedName ) throws DOMException {
         return ElementImpl.createElement( this, namespaceURI, qualifiedName );
     }
@@ -182,10 +210,8 @@ public class DocumentImpl extends NodeImpl implements Document {
      * @param copy
      */
     void importChildren( Node original, Node copy ) {
-        NodeList children = original.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node childCopy = importNode( children.item(i), /* deep */ true );
-            copy.appendChild( childCopy );
+        for (Node child = original.getFirstChild(); child != null; child = child.getNextSibling()) {
+            copy.appendChild( importNode( child, /* deep */ true ) );
         }
     }
 
@@ -87,8 +87,7 @@ public class DomBasedScriptingEngineFactory implements ScriptingEngineFactory {
     public void load( WebResponse response ) {
     		Function onLoadEvent=null;
         try {
-            Context context = Context.enter();
-            context.initStandardObjects( null );
+            Context context = ScriptingEngineImpl.enterContext();
 
             HTMLDocument htmlDocument = ((DomWindow) response.getScriptingHandler()).getDocument();
             if (!(htmlDocument instanceof HTMLDocumentImpl)) return;
@@ -105,7 +104,7 @@ public class DomBasedScriptingEngineFactory implements ScriptingEngineFactory {
         	//throw ee;
         	ScriptingEngineImpl.handleScriptException(ee, onLoadEvent.toString());        	
         } finally {
-            Context.exit();
+            ScriptingEngineImpl.exitContext();
         }
     }
 
@@ -21,7 +21,6 @@ package com.meterware.httpunit.dom;
  *******************************************************************************************************************/
 import org.w3c.dom.*;
 
-import java.util.Hashtable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.beans.PropertyChangeListener;
@@ -33,8 +32,10 @@ import java.beans.PropertyChangeEvent;
  **/
 public class ElementImpl extends NamespaceAwareNodeImpl implements Element {
 
-    private Hashtable _attributes = new Hashtable();
-    private ArrayList _listeners = new ArrayList( );
+    private AttributeMap _attributes = new AttributeMap();
+
+    /** The listeners to changes in this element, created when the first is added. **/
+    private ArrayList    _listeners;
 
     static ElementImpl createElement( DocumentImpl owner, String tagName ) {
         ElementImpl element = new ElementImpl();
@@ -51,7 +52,8 @@ public class ElementImpl extends NamespaceAwareNodeImpl implements Element {
 
 
     public void addDomListener( DomListener listener ) {
-        synchronized (_listeners) {
+        synchronized (this) {
+            if (_listeners == null) _listeners = new ArrayList( 1 );
             _listeners.add( listener );
         }
     }
@@ -59,7 +61,8 @@ public class ElementImpl extends NamespaceAwareNodeImpl implements Element {
 
     protected void reportPropertyChanged( String propertyName ) {
         ArrayList listeners;
-        synchronized( _listeners ) {
+        synchronized( this ) {
+            if (_listeners == null) return;
             listeners = (ArrayList) _listeners.clone();
         }
 
@@ -90,7 +93,7 @@ public class ElementImpl extends NamespaceAwareNodeImpl implements Element {
 
 
     public NamedNodeMap getAttributes() {
-        return new NamedNodeMapImpl( _attributes );
+        return new NamedNodeMapImpl( _attributes.toArray() );
     }
 
 
@@ -140,21 +143,28 @@ public class ElementImpl extends NamespaceAwareNodeImpl implements Element {
 
 
     public void removeAttribute( String name ) throws DOMException {
+        ElementIndex index = getIndexFor( name );
+        if (index != null) index.removeAttribute( this, name );
         _attributes.remove( name );
+        ((DocumentImpl) getOwnerDocument()).documentChanged();
     }
 
 
     public Attr getAttributeNode( String name ) {
-        return (Attr) _attributes.get( name );
+        return _attributes.get( name );
     }
 
 
     public Attr setAttributeNode( Attr newAttr ) throws DOMException {
         if (newAttr.getOwnerDocument() != getOwnerDocument()) throw new DOMException( DOMException.WRONG_DOCUMENT_ERR, "attribute must be from the same document as the element" );
 
+        ElementIndex index = getIndexFor( newAttr.getName() );
+        if (index != null) index.removeAttribute( this, newAttr.getName() );
         ((AttrImpl) newAttr).setOwnerElement( this );
-        AttrImpl oldAttr = (AttrImpl) _attributes.put( newAttr.getName(), newAttr );
+        AttrImpl oldAttr = _attributes.put( (AttrImpl) newAttr );
         if (oldAttr != null) oldAttr.setOwnerElement( null );
+        if (index != null) index.addAttribute( this, newAttr.getName() );
+        ((DocumentImpl) getOwnerDocument()).documentChanged();
         return oldAttr;
     }
 
@@ -162,9 +172,13 @@ public class ElementImpl extends NamespaceAwareNodeImpl implements Element {
     public Attr setAttributeNodeNS( Attr newAttr ) throws DOMException {
         if (newAttr.getOwnerDocument() != getOwnerDocument()) throw new DOMException( DOMException.WRONG_DOCUMENT_ERR, "attribute must be from the same document as the element" );
 
+        ElementIndex index = getIndexFor( newAttr.getName() );
+        if (index != null) index.removeAttribute( this, newAttr.getName() );
         ((AttrImpl) newAttr).setOwnerElement( this );
-        AttrImpl oldAttr = (AttrImpl) _attributes.put( newAttr.getName(), newAttr );
+        AttrImpl oldAttr = _attributes.put( (AttrImpl) newAttr );
         if (oldAttr != null) oldAttr.setOwnerElement( null );
+        if (index != null) index.addAttribute( this, newAttr.getName() );
+        ((DocumentImpl) getOwnerDocument()).documentChanged();
         return oldAttr;
     }
 
@@ -172,8 +186,11 @@ public class ElementImpl extends NamespaceAwareNodeImpl implements Element {
     public Attr removeAttributeNode( Attr oldAttr ) throws DOMException {
         if (!_attributes.containsValue( oldAttr)) throw new DOMException( DOMException.NOT_FOUND_ERR, "Specified attribute is not defined for this element" );
 
-        AttrImpl removedAttr = (AttrImpl) _attributes.remove( oldAttr.getName() );
+        ElementIndex index = getIndexFor( oldAttr.getName() );
+        if (index != null) index.removeAttribute( this, oldAttr.getName() );
+        AttrImpl removedAttr = _attributes.remove( oldAttr.getName() );
         if (removedAttr != null) removedAttr.setOwnerElement( null );
+        ((DocumentImpl) getOwnerDocument()).documentChanged();
         return removedAttr;
     }
 
@@ -183,6 +200,15 @@ public class ElementImpl extends NamespaceAwareNodeImpl implements Element {
     }
 
 
+    /**
+     * Returns the element index to update when the named attribute of this element changes, or null if none needs
+     * updating.
+     */
+    ElementIndex getIndexFor( String attributeName ) {
+        return ElementIndex.isIndexedAttribute( attributeName ) ? getAttachedIndex() : null;
+    }
+
+
     // ----------------------- namespaces are not supported at present --------------------------------
 
 
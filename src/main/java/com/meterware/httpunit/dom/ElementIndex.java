@@ -0,0 +1,270 @@
+package com.meterware.httpunit.dom;
+/********************************************************************************************************************
+ * $Id$
+ *
+ * Copyright (c) 2026, Russell Gold
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ *******************************************************************************************************************/
+
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indexes of the elements of an HTML document by id, name and tag name. Elements are added when they become part
+ * of the document and removed when they leave it, and are re-indexed when their id or name attributes change.
+ * Each index entry is kept in document order: since a page is built in document order, elements are almost always
+ * added at the end of their entries, and any entry to which an element is added out of order is sorted again the
+ * next time it is requested.
+ *
+ * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
+ **/
+class ElementIndex {
+
+    private final static String ID   = "id";
+    private final static String NAME = "name";
+
+    /** Orders nodes as they appear in the document. **/
+    private final static Comparator DOCUMENT_ORDER = new Comparator() {
+        public int compare( Object o1, Object o2 ) {
+            return compareDocumentOrder( (Node) o1, (Node) o2 );
+        }
+    };
+
+    private Map _ids      = new HashMap();
+    private Map _names    = new HashMap();
+    private Map _tagNames = new HashMap();
+
+
+    /**
+     * Returns true if changes to the named attribute affect this index.
+     */
+    static boolean isIndexedAttribute( String attributeName ) {
+        return attributeName.equals( ID ) || attributeName.equals( NAME );
+    }
+
+
+    /**
+     * Returns the first element in the document with the specified id, or null if there is none.
+     */
+    HTMLElementImpl getElementById( String id ) {
+        Entry entry = (Entry) _ids.get( id );
+        return entry == null ? null : (HTMLElementImpl) entry.getElements().get( 0 );
+    }
+
+
+    /**
+     * Returns the elements in the document with the specified name attribute, in document order.
+     */
+    List getElementsByName( String name ) {
+        return getElements( _names, name );
+    }
+
+
+    /**
+     * Returns the elements in the document with the specified tag name, ignoring case, in document order.
+     */
+    List getElementsByTagName( String tagName ) {
+        return getElements( _tagNames, tagName.toLowerCase() );
+    }
+
+
+    /**
+     * Adds the specified node and the elements below it, which have just become part of the document.
+     */
+    void addSubtree( NodeImpl node ) {
+        ArrayList elements = new ArrayList();
+        collectElements( node, elements );
+        for (int i = 0; i < elements.size(); i++) add( (ElementImpl) elements.get( i ) );
+    }
+
+
+    /**
+     * Removes the specified node and the elements below it, which are about to leave the document.
+     */
+    void removeSubtree( NodeImpl node ) {
+        ArrayList elements = new ArrayList();
+        collectElements( node, elements );
+        Map removed = new IdentityHashMap();
+        Set tagNames = new HashSet(), ids = new HashSet(), names = new HashSet();
+        for (int i = 0; i < elements.size(); i++) {
+            ElementImpl element = (ElementImpl) elements.get( i );
+            removed.put( element, element );
+            tagNames.add( element.getTagName().toLowerCase() );
+            if (!(element instanceof HTMLElementImpl)) continue;
+            if (element.hasAttribute( ID )) ids.add( element.getAttribute( ID ) );
+            if (element.hasAttribute( NAME )) names.add( element.getAttribute( NAME ) );
+        }
+        removeAll( _tagNames, tagNames, removed );
+        removeAll( _ids, ids, removed );
+        removeAll( _names, names, removed );
+    }
+
+
+    /**
+     * Removes the specified element from the index of the named attribute, before the attribute changes.
+     */
+    void removeAttribute( ElementImpl element, String attributeName ) {
+        if (!(element instanceof HTMLElementImpl) || !element.hasAttribute( attributeName )) return;
+        Map index = attributeName.equals( ID ) ? _ids : _names;
+        Entry entry = (Entry) index.get( element.getAttribute( attributeName ) );
+        if (entry == null) return;
+        entry.remove( element );
+        if (entry.isEmpty()) index.remove( element.getAttribute( attributeName ) );
+    }
+
+
+    /**
+     * Adds the specified element to the index of the named attribute, after the attribute has changed.
+     */
+    void addAttribute( ElementImpl element, String attributeName ) {
+        if (!(element instanceof HTMLElementImpl) || !element.hasAttribute( attributeName )) return;
+        add( attributeName.equals( ID ) ? _ids : _names, element.getAttribute( attributeName ), element );
+    }
+
+
+    private void add( ElementImpl element ) {
+        add( _tagNames, element.getTagName().toLowerCase(), element );
+        addAttribute( element, ID );
+        addAttribute( element, NAME );
+    }
+
+
+    private void add( Map index, String key, ElementImpl element ) {
+        Entry entry = (Entry) index.get( key );
+        if (entry == null) index.put( key, entry = new Entry() );
+        entry.add( element );
+    }
+
+
+    private List getElements( Map index, String key ) {
+        Entry entry = (Entry) index.get( key );
+        return entry == null ? Collections.EMPTY_LIST : new ArrayList( entry.getElements() );
+    }
+
+
+    private void removeAll( Map index, Set keys, Map removed ) {
+        for (Iterator each = keys.iterator(); each.hasNext();) {
+            Object key = each.next();
+            Entry entry = (Entry) index.get( key );
+            if (entry == null) continue;
+            entry.removeAll( removed );
+            if (entry.isEmpty()) index.remove( key );
+        }
+    }
+
+
+    private static void collectElements( NodeImpl node, List elements ) {
+        if (node instanceof ElementImpl) elements.add( node );
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            collectElements( (NodeImpl) child, elements );
+        }
+    }
+
+
+    /**
+     * Returns a negative number if the first node precedes the second in the document, or a positive number if
+     * it follows it. An element precedes its descendants.
+     */
+    static int compareDocumentOrder( Node first, Node second ) {
+        if (first == second) return 0;
+        int firstDepth = getDepth( first );
+        int secondDepth = getDepth( second );
+        Node firstAncestor = first, secondAncestor = second;
+        for (; firstDepth > secondDepth; firstDepth--) firstAncestor = firstAncestor.getParentNode();
+        if (firstAncestor == second) return 1;
+        for (; secondDepth > firstDepth; secondDepth--) secondAncestor = secondAncestor.getParentNode();
+        if (secondAncestor == first) return -1;
+
+        while (firstAncestor.getParentNode() != secondAncestor.getParentNode()) {
+            firstAncestor = firstAncestor.getParentNode();
+            secondAncestor = secondAncestor.getParentNode();
+        }
+        for (Node node = firstAncestor.getNextSibling(); node != null; node = node.getNextSibling()) {
+            if (node == secondAncestor) return -1;
+        }
+        return 1;
+    }
+
+
+    private static int getDepth( Node node ) {
+        int depth = 0;
+        for (Node parent = node.getParentNode(); parent != null; parent = parent.getParentNode()) depth++;
+        return depth;
+    }
+
+
+    /**
+     * The elements indexed under a single key.
+     */
+    private static class Entry {
+
+        private ArrayList _elements = new ArrayList( 1 );
+        private boolean   _sorted = true;
+
+
+        void add( ElementImpl element ) {
+            if (_sorted && !_elements.isEmpty()) {
+                _sorted = compareDocumentOrder( (Node) _elements.get( _elements.size() - 1 ), element ) < 0;
+            }
+            _elements.add( element );
+        }
+
+
+        void remove( ElementImpl element ) {
+            for (int i = 0; i < _elements.size(); i++) {
+                if (_elements.get( i ) == element) {
+                    _elements.remove( i );
+                    return;
+                }
+            }
+        }
+
+
+        void removeAll( Map removed ) {
+            ArrayList remaining = new ArrayList( _elements.size() );
+            for (Iterator each = _elements.iterator(); each.hasNext();) {
+                Object element = each.next();
+                if (!removed.containsKey( element )) remaining.add( element );
+            }
+            _elements = remaining;
+        }
+
+
+        boolean isEmpty() {
+            return _elements.isEmpty();
+        }
+
+
+        List getElements() {
+            if (!_sorted) {
+                Collections.sort( _elements, DOCUMENT_ORDER );
+                _sorted = true;
+            }
+            return _elements;
+        }
+    }
+}
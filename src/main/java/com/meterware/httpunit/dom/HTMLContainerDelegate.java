@@ -28,6 +28,7 @@ import com.meterware.httpunit.ParsedHTML;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
@@ -42,12 +43,76 @@ class HTMLContainerDelegate {
     }
 
 
+    void setIteratorMask( NodeImpl.IteratorMask iteratorMask ) {
+        _iteratorMask = iteratorMask;
+    }
+
+
     /**
      * get Links for a given Node
      * @param rootNode - an array of forms
      * @return
      */
     HTMLCollection getLinks( NodeImpl rootNode ) {
+        return getLiveCollection( rootNode, "links" );
+    }
+
+
+    /**
+     * get forms for a given Node
+     * @param rootNode - the node to start from
+     * @return - an array of forms
+     */
+    HTMLCollection getForms( NodeImpl rootNode ) {
+        return getLiveCollection( rootNode, "forms" );
+    }
+
+
+    HTMLCollection getAnchors( NodeImpl rootNode ) {
+        return getLiveCollection( rootNode, "anchors" );
+    }
+
+
+    HTMLCollection getImages( NodeImpl rootNode ) {
+        return getLiveCollection( rootNode, "images" );
+    }
+
+
+    HTMLCollection getApplets( NodeImpl rootNode ) {
+        return getLiveCollection( rootNode, "applets" );
+    }
+
+
+    /**
+     * Returns the named collection for the specified node, creating it the first time it is requested. The collection
+     * is live: it is searched for again whenever the document has changed since it was last read.
+     */
+    private HTMLCollection getLiveCollection( final NodeImpl rootNode, final String name ) {
+        HTMLCollection collection = (HTMLCollection) rootNode.getLiveCollection( name );
+        if (collection == null) {
+            collection = HTMLCollectionImpl.createHTMLCollectionImpl( new LiveNodeList( rootNode ) {
+                List findNodes() {
+                    return findElements( rootNode, name );
+                }
+            } );
+            rootNode.putLiveCollection( name, collection );
+        }
+        return collection;
+    }
+
+
+    private List findElements( NodeImpl rootNode, String name ) {
+        if (name.equals( "links" )) return findLinks( rootNode );
+        if (name.equals( "forms" )) return findForms( rootNode );
+        if (name.equals( "anchors" )) return findAnchors( rootNode );
+
+        ArrayList elements = new ArrayList();
+        rootNode.appendElementsWithTags( new String[] { name.equals( "images" ) ? "img" : "applet" }, elements );
+        return elements;
+    }
+
+
+    private List findLinks( NodeImpl rootNode ) {
         ArrayList elements = new ArrayList();
         for (Iterator each = rootNode.preOrderIteratorWithinNode( _iteratorMask ); each.hasNext();) {
             Node node = (Node) each.next();
@@ -57,16 +122,11 @@ class HTMLContainerDelegate {
                 elements.add( node );
             }
         }
-        return HTMLCollectionImpl.createHTMLCollectionImpl( new NodeListImpl( elements ) );
+        return elements;
     }
 
 
-    /**
-     * get forms for a given Node
-     * @param rootNode - the node to start from
-     * @return - an array of forms
-     */
-    HTMLCollection getForms( NodeImpl rootNode ) {
+    private List findForms( NodeImpl rootNode ) {
         ArrayList elements = new ArrayList();
         for (Iterator each = rootNode.preOrderIteratorWithinNode( _iteratorMask ); each.hasNext();) {
             Node node = (Node) each.next();
@@ -76,11 +136,11 @@ class HTMLContainerDelegate {
                 elements.add( node );
             }
         }
-        return HTMLCollectionImpl.createHTMLCollectionImpl( new NodeListImpl( elements ) );
+        return elements;
     }
 
 
-    HTMLCollection getAnchors( NodeImpl rootNode ) {
+    private List findAnchors( NodeImpl rootNode ) {
         NodeList nodeList = rootNode.getElementsByTagName( "A" );
         ArrayList elements = new ArrayList();
         for (int i = 0; i < nodeList.getLength(); i++) {
@@ -89,20 +149,6 @@ class HTMLContainerDelegate {
                 elements.add( node );
             }
         }
-        return HTMLCollectionImpl.createHTMLCollectionImpl( new NodeListImpl( elements ) );
-    }
-
-
-    HTMLCollection getImages( NodeImpl rootNode ) {
-        ArrayList elements = new ArrayList();
-        rootNode.appendElementsWithTags( new String[] {"img"}, elements );
-        return HTMLCollectionImpl.createHTMLCollectionImpl( new NodeListImpl( elements ) );
-    }
-
-
-    HTMLCollection getApplets( NodeImpl rootNode ) {
-        ArrayList elements = new ArrayList();
-        rootNode.appendElementsWithTags( new String[] {"applet"}, elements );
-        return HTMLCollectionImpl.createHTMLCollectionImpl( new NodeListImpl( elements ) );
+        return elements;
     }
 }
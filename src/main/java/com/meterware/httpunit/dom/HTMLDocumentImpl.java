@@ -25,8 +25,6 @@ import org.w3c.dom.Node;
 import org.mozilla.javascript.*;
 
 import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.ArrayList;
 import java.net.URL;
 import java.net.MalformedURLException;
 
@@ -40,10 +38,12 @@ public class HTMLDocumentImpl extends DocumentImpl implements HTMLDocument, HTML
     private DomWindow _window;
     private StringBuffer _writeBuffer;
     private HTMLContainerDelegate _containerDelegate = new HTMLContainerDelegate( SKIP_IFRAMES );
+    private ElementIndex _elementIndex = new ElementIndex();
 
 
     public void setIFramesEnabled( boolean enabled ) {
-        _containerDelegate = new HTMLContainerDelegate( enabled ? SKIP_IFRAMES : null );
+        _containerDelegate.setIteratorMask( enabled ? SKIP_IFRAMES : null );
+        documentChanged();
     }
 
 
@@ -226,14 +226,7 @@ public class HTMLDocumentImpl extends DocumentImpl implements HTMLDocument, HTML
 
 
     public NodeList getElementsByName( String elementName ) {
-        ArrayList elements = new ArrayList();
-        for (Iterator each = preOrderIterator(); each.hasNext();) {
-            Node node = (Node) each.next();
-            if (!(node instanceof HTMLElementImpl)) continue;
-            HTMLElementImpl element = (HTMLElementImpl) node;
-            if (elementName.equals( element.getAttributeWithNoDefault( "name" ) )) elements.add( element );
-        }
-        return new NodeListImpl( elements );
+        return new NodeListImpl( _elementIndex.getElementsByName( elementName ) );
     }
 
 
@@ -252,7 +245,13 @@ public class HTMLDocumentImpl extends DocumentImpl implements HTMLDocument, HTML
 
 
     public NodeList getElementsByTagName( String name ) {
-        return super.getElementsByTagName( toNodeCase( name ) );
+        if (name.equals( "*" )) return super.getElementsByTagName( name );
+        return new NodeListImpl( _elementIndex.getElementsByTagName( name ) );
+    }
+
+
+    ElementIndex getElementIndex() {
+        return _elementIndex;
     }
 
 
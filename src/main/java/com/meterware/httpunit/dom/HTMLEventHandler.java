@@ -19,6 +19,8 @@ package com.meterware.httpunit.dom;
  * DEALINGS IN THE SOFTWARE.
  *
  *******************************************************************************************************************/
+import com.meterware.httpunit.javascript.ScriptCache;
+
 import org.mozilla.javascript.Function;
 import org.mozilla.javascript.Context;
 
@@ -63,7 +65,7 @@ class HTMLEventHandler {
         if (_handler == null) {
             String attribute = _baseElement.getAttributeWithNoDefault( _handlerName );
             if (attribute != null && Context.getCurrentContext() != null) {
-                _handler = Context.getCurrentContext().compileFunction( _baseElement, "function " + AbstractDomComponent.createAnonymousFunctionName() + "() { " + attribute + "}", "httpunit", 0, null );
+                _handler = ScriptCache.getSharedCache().getFunction( Context.getCurrentContext(), _baseElement, attribute, "anon", "httpunit" );
             }
         }
         return _handler;
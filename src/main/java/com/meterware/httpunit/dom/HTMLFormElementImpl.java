@@ -29,6 +29,7 @@ import org.mozilla.javascript.ScriptableObject;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.net.URL;
 import java.io.IOException;
 
@@ -140,6 +141,20 @@ public class HTMLFormElementImpl extends HTMLElementImpl implements HTMLFormElem
 
 
     public HTMLCollection getElements() {
+        HTMLCollection elements = (HTMLCollection) getLiveCollection( "elements" );
+        if (elements == null) {
+            elements = HTMLCollectionImpl.createHTMLCollectionImpl( new LiveNodeList( this ) {
+                List findNodes() {
+                    return findElements();
+                }
+            } );
+            putLiveCollection( "elements", elements );
+        }
+        return elements;
+    }
+
+
+    private List findElements() {
         ArrayList elements = new ArrayList();
         String[] names = new String[]{"INPUT", "TEXTAREA", "BUTTON", "SELECT"};
         for (Iterator each = preOrderIteratorAfterNode(); each.hasNext();) {
@@ -152,7 +167,7 @@ public class HTMLFormElementImpl extends HTMLElementImpl implements HTMLFormElem
                 if (tagName.equalsIgnoreCase( names[i] )) elements.add( node );
             }
         }
-        return HTMLCollectionImpl.createHTMLCollectionImpl( new NodeListImpl( elements ) );
+        return elements;
     }
 
 
@@ -24,9 +24,12 @@ import org.w3c.dom.html.HTMLElement;
 import org.w3c.dom.html.HTMLCollection;
 import org.w3c.dom.html.HTMLOptionElement;
 import org.w3c.dom.DOMException;
+import org.w3c.dom.NodeList;
 import com.meterware.httpunit.protocol.ParameterProcessor;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -83,7 +86,19 @@ public class HTMLSelectElementImpl extends HTMLControl implements HTMLSelectElem
 
 
     public HTMLCollection getOptions() {
-        return HTMLCollectionImpl.createHTMLCollectionImpl( getElementsByTagName( getHtmlDocument().toNodeCase( "option" ) ) );
+        HTMLCollection options = (HTMLCollection) getLiveCollection( "options" );
+        if (options == null) {
+            options = HTMLCollectionImpl.createHTMLCollectionImpl( new LiveNodeList( this ) {
+                List findNodes() {
+                    NodeList nodes = getElementsByTagName( getHtmlDocument().toNodeCase( "option" ) );
+                    ArrayList options = new ArrayList( nodes.getLength() );
+                    for (int i = 0; i < nodes.getLength(); i++) options.add( nodes.item( i ) );
+                    return options;
+                }
+            } );
+            putLiveCollection( "options", options );
+        }
+        return options;
     }
 
 
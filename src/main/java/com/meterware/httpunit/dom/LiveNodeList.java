@@ -0,0 +1,58 @@
+package com.meterware.httpunit.dom;
+/********************************************************************************************************************
+ * $Id$
+ *
+ * Copyright (c) 2026, Russell Gold
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ *******************************************************************************************************************/
+
+import java.util.List;
+
+/**
+ * A list of nodes which reflects the current state of its document. The nodes are found again only when the document
+ * has changed since they were last found, so that a script which reads the list repeatedly, as in a loop over its
+ * items, does not search the document each time.
+ *
+ * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
+ **/
+abstract class LiveNodeList extends NodeListImpl {
+
+    private DocumentImpl _document;
+    private int          _modificationCount;
+    private List         _nodes;
+
+
+    LiveNodeList( NodeImpl rootNode ) {
+        super( null );
+        _document = (DocumentImpl) rootNode.getOwnerDocument();
+    }
+
+
+    /**
+     * Returns the nodes currently in the list, in document order.
+     */
+    abstract List findNodes();
+
+
+    protected List getList() {
+        if (_nodes == null || _modificationCount != _document.getModificationCount()) {
+            _modificationCount = _document.getModificationCount();
+            _nodes = findNodes();
+        }
+        return _nodes;
+    }
+}
@@ -23,8 +23,6 @@ import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.DOMException;
 
-import java.util.Hashtable;
-
 /**
  *
  * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
@@ -32,18 +30,19 @@ import java.util.Hashtable;
 public class NamedNodeMapImpl implements NamedNodeMap {
 
 
-    private Hashtable _items;
-    private Node[]    _itemArray;
+    private Node[] _itemArray;
 
 
-    NamedNodeMapImpl( Hashtable items ) {
-        _items     = (Hashtable) items.clone();
-        _itemArray = (Node[]) _items.values().toArray( new Node[ _items.size() ] );
+    NamedNodeMapImpl( Node[] items ) {
+        _itemArray = items;
     }
 
 
     public Node getNamedItem( String name ) {
-        return (Node) _items.get( name );
+        for (int i = 0; i < _itemArray.length; i++) {
+            if (_itemArray[i].getNodeName().equals( name )) return _itemArray[i];
+        }
+        return null;
     }
 
 
@@ -63,7 +62,7 @@ public class NamedNodeMapImpl implements NamedNodeMap {
 
 
     public int getLength() {
-        return _items.size();
+        return _itemArray.length;
     }
 
 
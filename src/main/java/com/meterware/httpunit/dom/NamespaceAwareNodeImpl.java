@@ -35,7 +35,7 @@ public abstract class NamespaceAwareNodeImpl extends NodeImpl {
 
     protected void initialize( DocumentImpl owner, String tagName ) {
         initialize( owner );
-        _localName = _tagName = tagName;
+        _localName = _tagName = Symbols.intern( tagName );
     }
 
 
@@ -47,12 +47,12 @@ public abstract class NamespaceAwareNodeImpl extends NodeImpl {
      */
     protected void initialize( DocumentImpl owner, String namespaceURI, String qualifiedName ) {
         initialize( owner );
-        _tagName = qualifiedName;
+        _tagName = Symbols.intern( qualifiedName );
         _namespaceUri = namespaceURI;
         if (qualifiedName.indexOf(':') < 0) {
-            _localName = qualifiedName;
+            _localName = _tagName;
         } else {
-            _localName = qualifiedName.substring( qualifiedName.indexOf(':') + 1 );
+            _localName = Symbols.intern( qualifiedName.substring( qualifiedName.indexOf(':') + 1 ) );
         }
         setParentScope(owner); 
     }
@@ -23,8 +23,10 @@ import org.w3c.dom.*;
 import org.w3c.dom.html.HTMLIFrameElement;
 
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.List;
 
 /**
  *
@@ -37,7 +39,8 @@ abstract public class NodeImpl extends AbstractDomComponent implements Node {
     private NodeImpl     _firstChild;
     private NodeImpl     _nextSibling;
     private NodeImpl     _previousSibling;
-    private Hashtable    _userData = new Hashtable( );
+    private Map          _userData;
+    private Map          _liveCollections;
 
     static IteratorMask SKIP_IFRAMES = new IteratorMask() {
         public boolean skipSubtree( Node subtreeRoot ) {
@@ -66,11 +69,20 @@ abstract public class NodeImpl extends AbstractDomComponent implements Node {
 
 
     public NodeList getChildNodes() {
-        ArrayList list = new ArrayList();
-        for (NodeImpl child = _firstChild; child != null; child = child._nextSibling) {
-            list.add( child );
+        NodeList childNodes = (NodeList) getLiveCollection( "childNodes" );
+        if (childNodes == null) {
+            childNodes = new LiveNodeList( this ) {
+                List findNodes() {
+                    ArrayList list = new ArrayList();
+                    for (NodeImpl child = _firstChild; child != null; child = child._nextSibling) {
+                        list.add( child );
+                    }
+                    return list;
+                }
+            };
+            putLiveCollection( "childNodes", childNodes );
         }
-        return new NodeListImpl( list );
+        return childNodes;
     }
 
 
@@ -120,12 +132,17 @@ abstract public class NodeImpl extends AbstractDomComponent implements Node {
             refChildNode._previousSibling.setNextSibling( newChildNode );
         }
         newChildNode.setNextSibling( refChildNode );
+        ElementIndex index = getAttachedIndex();
+        if (index != null) index.addSubtree( newChildNode );
+        ((DocumentImpl) getOwnerDocument()).documentChanged();
         return newChildNode;
     }
 
 
     private void removeFromTree( NodeImpl childNode ) {
         if (childNode._parentNode != null) {
+            ElementIndex index = childNode.getAttachedIndex();
+            if (index != null) index.removeSubtree( childNode );
             if (childNode._previousSibling != null) {
                 childNode._previousSibling.setNextSibling( childNode._nextSibling );
             } else {
@@ -133,6 +150,7 @@ abstract public class NodeImpl extends AbstractDomComponent implements Node {
                 childNode._nextSibling._previousSibling = null;
             }
             childNode._parentNode = null;
+            ((DocumentImpl) getOwnerDocument()).documentChanged();
         }
     }
 
@@ -161,6 +179,9 @@ abstract public class NodeImpl extends AbstractDomComponent implements Node {
         } else {
             ((NodeImpl) getLastChild()).setNextSibling( childNode );
         }
+        ElementIndex index = getAttachedIndex();
+        if (index != null) index.addSubtree( childNode );
+        ((DocumentImpl) getOwnerDocument()).documentChanged();
         return newChild;
     }
 
@@ -177,6 +198,37 @@ abstract public class NodeImpl extends AbstractDomComponent implements Node {
     }
 
 
+    /**
+     * Returns the element index of the document which contains this node, or null if the node is not part of
+     * its document or the document keeps no index.
+     */
+    ElementIndex getAttachedIndex() {
+        ElementIndex index = ((DocumentImpl) getOwnerDocument()).getElementIndex();
+        if (index == null) return null;
+
+        Node root = this;
+        while (root.getParentNode() != null) root = root.getParentNode();
+        return root == getOwnerDocument() ? index : null;
+    }
+
+
+    /**
+     * Returns the live collection previously saved under the specified name, or null if there is none.
+     */
+    Object getLiveCollection( String name ) {
+        return _liveCollections == null ? null : _liveCollections.get( name );
+    }
+
+
+    /**
+     * Saves a live collection under the specified name, so that later requests for it return the same collection.
+     */
+    void putLiveCollection( String name, Object collection ) {
+        if (_liveCollections == null) _liveCollections = new HashMap( 4 );
+        _liveCollections.put( name, collection );
+    }
+
+
     private void setNextSibling( NodeImpl sibling ) {
         _nextSibling = sibling;
         if (sibling != null) sibling._previousSibling = this;
@@ -228,12 +280,14 @@ abstract public class NodeImpl extends AbstractDomComponent implements Node {
 //------------------------------------ DOM level 3 methods -------------------------------------------------------------
 
     public Object setUserData( String key, Object data, UserDataHandler handler ) {
+        if (data == null) return _userData == null ? null : _userData.remove( key );
+        if (_userData == null) _userData = new HashMap( 4 );
         return _userData.put( key, data );
     }
 
 
     public Object getUserData( String key ) {
-        return _userData.get( key );
+        return _userData == null ? null : _userData.get( key );
     }
 
 
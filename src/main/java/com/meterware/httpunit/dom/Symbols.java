@@ -0,0 +1,51 @@
+package com.meterware.httpunit.dom;
+/********************************************************************************************************************
+ * $Id$
+ *
+ * Copyright (c) 2026, Russell Gold
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ *******************************************************************************************************************/
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A table of the tag and attribute names used by DOM nodes, shared by all documents, so that each element of a page
+ * does not hold its own copy of each name. The table is bounded; once it is full, new names are used as given.
+ *
+ * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
+ **/
+class Symbols {
+
+    /** The maximum number of distinct names held by the table. **/
+    final static int MAX_SYMBOLS = 4096;
+
+    private final static ConcurrentHashMap _symbols = new ConcurrentHashMap();
+
+
+    /**
+     * Returns the shared instance of the specified name.
+     */
+    static String intern( String name ) {
+        if (name == null) return null;
+        String symbol = (String) _symbols.get( name );
+        if (symbol != null) return symbol;
+        if (_symbols.size() >= MAX_SYMBOLS) return name;
+
+        symbol = (String) _symbols.putIfAbsent( name, name );
+        return symbol == null ? name : symbol;
+    }
+}
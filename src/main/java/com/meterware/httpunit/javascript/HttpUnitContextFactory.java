@@ -0,0 +1,345 @@
+package com.meterware.httpunit.javascript;
+/********************************************************************************************************************
+ * $Id$
+ *
+ * Copyright (c) 2026, Russell Gold
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ *******************************************************************************************************************/
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import com.meterware.httpunit.HttpUnitOptions;
+import com.meterware.httpunit.ScriptException;
+
+
+/**
+ * The factory for the Rhino contexts in which HttpUnit runs scripts. It configures each context with the optimization
+ * level and language features selected for HttpUnit, and is the single place through which scripts enter and leave
+ * their contexts.
+ * <p>
+ * A thread which has run the scripts of a page keeps its context entered, so that the objects created for the page
+ * may use it later, and so that further entries on that thread reuse it rather than creating a new one.
+ * </p>
+ * <p>
+ * When HttpUnitOptions sets limits on the instructions or time used by scripts, the factory observes the scripts
+ * run through enterScript and aborts any which exceed them with a ScriptException. Since Rhino observes only
+ * interpreted scripts, scripts are then interpreted whatever the optimization level.
+ * </p>
+ *
+ * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
+ **/
+public class HttpUnitContextFactory extends ContextFactory {
+
+    private static final HttpUnitContextFactory _instance = new HttpUnitContextFactory();
+
+    /** The threads which hold a context for reuse. **/
+    private final ThreadLocal _boundContext = new ThreadLocal();
+
+    /** Language features whose defaults have been overridden, mapped to their settings. **/
+    private final Map _features = new HashMap();
+
+    /** The greatest number of instructions between checks of the budget of a running script. **/
+    private static final int OBSERVER_THRESHOLD = 10000;
+
+    /** The budget of the outermost script being run on each thread. **/
+    private final ThreadLocal _scriptBudget = new ThreadLocal();
+
+    /** The script usage of each page, keyed by the top-level scope of the page. **/
+    private final Map _pageUsage = Collections.synchronizedMap( new WeakHashMap() );
+
+    private int _numScriptsAborted;
+
+
+    /**
+     * Returns the factory used for all HttpUnit scripts.
+     */
+    public static HttpUnitContextFactory getInstance() {
+        return _instance;
+    }
+
+
+    /**
+     * Enables or disables a Rhino language feature, such as Context.FEATURE_E4X, for scripts run by HttpUnit.
+     * Since features may change how scripts are compiled, changing one discards the scripts held by the shared
+     * script cache.
+     */
+    public void setFeature( int feature, boolean enabled ) {
+        synchronized (_features) {
+            Object previous = _features.put( new Integer( feature ), Boolean.valueOf( enabled ) );
+            if (!Boolean.valueOf( enabled ).equals( previous )) ScriptCache.getSharedCache().clear();
+        }
+    }
+
+
+    /**
+     * Restores the default settings of all language features, discarding the scripts held by the shared script
+     * cache if any were set.
+     */
+    public void clearFeatures() {
+        synchronized (_features) {
+            if (!_features.isEmpty()) ScriptCache.getSharedCache().clear();
+            _features.clear();
+        }
+    }
+
+
+    /**
+     * Enters a context for the current thread, set to the optimization level specified by
+     * HttpUnitOptions.setJavaScriptOptimizationLevel, or to interpret scripts if any limits are set on their
+     * instructions or time. Every entry must be matched by a call to exitContext().
+     */
+    public Context enterContext() {
+        Context context = enter();
+        int optimizationLevel = getOptimizationLevel();
+        if (context.getOptimizationLevel() != optimizationLevel) context.setOptimizationLevel( optimizationLevel );
+        return context;
+    }
+
+
+    /**
+     * Leaves the context entered by the matching call to enterContext().
+     */
+    public void exitContext() {
+        exit();
+    }
+
+
+    /**
+     * Enters a context in which to run a script for the specified object, charging the script to the budgets set by
+     * HttpUnitOptions. Every entry must be matched by a call to exitScript(), even if this method throws a
+     * ScriptException because the page has already used up its budget.
+     */
+    public Context enterScript( Scriptable scriptable ) {
+        Context context = enterContext();
+        ScriptBudget budget = (ScriptBudget) _scriptBudget.get();
+        if (budget != null) {
+            budget._depth++;
+        } else if (isBudgeted()) {
+            budget = new ScriptBudget( getPageUsage( ScriptableObject.getTopLevelScope( scriptable ) ) );
+            _scriptBudget.set( budget );
+        }
+        context.setInstructionObserverThreshold( budget == null ? 0 : getObserverThreshold() );
+        if (budget != null) checkBudget( budget, 0 );
+        return context;
+    }
+
+
+    /**
+     * Leaves the context entered by the matching call to enterScript(), charging the time used by the script to its page.
+     */
+    public void exitScript() {
+        ScriptBudget budget = (ScriptBudget) _scriptBudget.get();
+        if (budget != null && budget._depth-- == 0) {
+            _scriptBudget.set( null );
+            budget.finish();
+        }
+        exitContext();
+    }
+
+
+    /**
+     * Returns the number of scripts which have been aborted for exceeding their budgets.
+     */
+    public synchronized int getNumScriptsAborted() {
+        return _numScriptsAborted;
+    }
+
+
+    /**
+     * Resets the count of scripts aborted for exceeding their budgets.
+     */
+    public synchronized void clearNumScriptsAborted() {
+        _numScriptsAborted = 0;
+    }
+
+
+    /**
+     * Enters a context which remains entered for as long as the current thread runs, if the thread does not
+     * already hold one, and returns it.
+     */
+    public Context bindContext() {
+        if (_boundContext.get() == null) _boundContext.set( enter() );
+        return enterContext();
+    }
+
+
+    protected Context makeContext() {
+        Context context = new HttpUnitContext();
+        context.setOptimizationLevel( getOptimizationLevel() );
+        return context;
+    }
+
+
+    protected void observeInstructionCount( Context context, int instructionCount ) {
+        ScriptBudget budget = (ScriptBudget) _scriptBudget.get();
+        if (budget != null) checkBudget( budget, instructionCount );
+    }
+
+
+    protected boolean hasFeature( Context context, int feature ) {
+        synchronized (_features) {
+            Boolean setting = (Boolean) _features.get( new Integer( feature ) );
+            if (setting != null) return setting.booleanValue();
+        }
+        return super.hasFeature( context, feature );
+    }
+
+
+    /**
+     * Returns the optimization level for scripts. Compiled scripts are not observed, so they may not be used when
+     * scripts have budgets to enforce.
+     */
+    private static int getOptimizationLevel() {
+        int optimizationLevel = HttpUnitOptions.getJavaScriptOptimizationLevel();
+        return isBudgeted() ? Math.min( optimizationLevel, -1 ) : optimizationLevel;
+    }
+
+
+    /**
+     * Returns the number of instructions between checks of the budget of a running script: no more than the smallest
+     * instruction limit, so that a script is aborted soon after it exceeds that limit.
+     */
+    private static int getObserverThreshold() {
+        long threshold = OBSERVER_THRESHOLD;
+        if (HttpUnitOptions.getScriptInstructionLimit() > 0) {
+            threshold = Math.min( threshold, HttpUnitOptions.getScriptInstructionLimit() );
+        }
+        if (HttpUnitOptions.getPageScriptInstructionLimit() > 0) {
+            threshold = Math.min( threshold, HttpUnitOptions.getPageScriptInstructionLimit() );
+        }
+        return (int) threshold;
+    }
+
+
+    private static boolean isBudgeted() {
+        return HttpUnitOptions.getScriptInstructionLimit() > 0 || HttpUnitOptions.getScriptTimeLimit() > 0 ||
+               HttpUnitOptions.getPageScriptInstructionLimit() > 0 || HttpUnitOptions.getPageScriptTimeLimit() > 0;
+    }
+
+
+    private PageUsage getPageUsage( Scriptable pageScope ) {
+        synchronized (_pageUsage) {
+            PageUsage usage = (PageUsage) _pageUsage.get( pageScope );
+            if (usage == null) _pageUsage.put( pageScope, usage = new PageUsage() );
+            return usage;
+        }
+    }
+
+
+    /**
+     * Charges the specified instructions to the budget, and aborts the running script if it has exceeded its budget.
+     */
+    private void checkBudget( ScriptBudget budget, int instructionCount ) {
+        String violation = budget.charge( instructionCount );
+        if (violation == null) return;
+
+        if (!budget._aborted) {
+            budget._aborted = true;
+            synchronized (this) { _numScriptsAborted++; }
+        }
+        throw new ScriptException( violation );
+    }
+
+
+    /**
+     * The instructions and time used by all scripts run for a page.
+     */
+    private static class PageUsage {
+        private long _instructions;
+        private long _elapsedTime;
+    }
+
+
+    /**
+     * The instructions and time used by a script, including any scripts which it causes to run, such as event handlers.
+     */
+    private static class ScriptBudget {
+
+        private PageUsage _page;
+        private long _startTime = System.currentTimeMillis();
+        private long _instructions;
+        private int _depth;
+        private boolean _aborted;
+
+
+        ScriptBudget( PageUsage page ) {
+            _page = page;
+        }
+
+
+        /**
+         * Charges the specified instructions to this script and its page, and returns a description of the first
+         * limit exceeded, or null if the script is within its budget.
+         */
+        String charge( int instructionCount ) {
+            long elapsedTime = System.currentTimeMillis() - _startTime;
+            long pageInstructions, pageTime;
+            synchronized (_page) {
+                _page._instructions += instructionCount;
+                pageInstructions = _page._instructions;
+                pageTime = _page._elapsedTime + elapsedTime;
+            }
+            _instructions += instructionCount;
+
+            long limit = HttpUnitOptions.getScriptInstructionLimit();
+            if (limit > 0 && _instructions > limit) return "Script exceeded its limit of " + limit + " instructions";
+            limit = HttpUnitOptions.getScriptTimeLimit();
+            if (limit > 0 && elapsedTime > limit) return "Script exceeded its time limit of " + limit + " msec";
+            limit = HttpUnitOptions.getPageScriptInstructionLimit();
+            if (limit > 0 && pageInstructions > limit) return "Page scripts exceeded their limit of " + limit + " instructions";
+            limit = HttpUnitOptions.getPageScriptTimeLimit();
+            if (limit > 0 && pageTime > limit) return "Page scripts exceeded their time limit of " + limit + " msec";
+            return null;
+        }
+
+
+        /**
+         * Charges the time used by this script to its page.
+         */
+        void finish() {
+            synchronized (_page) {
+                _page._elapsedTime += System.currentTimeMillis() - _startTime;
+            }
+        }
+    }
+
+
+    /**
+     * A context which consults this factory for its features and instruction counts. Rhino itself refers a context
+     * to its factory only while running ContextFactory.call, and otherwise to the global factory.
+     */
+    private class HttpUnitContext extends Context {
+
+        public boolean hasFeature( int feature ) {
+            return HttpUnitContextFactory.this.hasFeature( this, feature );
+        }
+
+
+        protected void observeInstructionCount( int instructionCount ) {
+            HttpUnitContextFactory.this.observeInstructionCount( this, instructionCount );
+        }
+    }
+
+}
@@ -46,6 +46,13 @@ public class JavaScript {
 
     private static boolean _throwExceptionsOnError = true;
 
+    private static boolean _sharedStandardObjects;
+
+    private static boolean _pageSnapshots;
+
+    /** The sealed scope holding the standard and HTML objects, shared by all pages. **/
+    private static ScriptableObject _sharedScope;
+
 
     public static boolean isThrowExceptionsOnError() {
         return _throwExceptionsOnError;
@@ -57,24 +64,86 @@ public class JavaScript {
     }
 
 
+    /**
+     * Returns true if pages share a single, sealed copy of the standard JavaScript objects.
+     */
+    public static boolean isSharedStandardObjects() {
+        return _sharedStandardObjects;
+    }
+
+
+    /**
+     * Specifies whether pages share a single, sealed copy of the standard JavaScript objects (Object, Array, String and
+     * the like) and of the HTML object classes, rather than building them anew for each page. Sharing makes loading
+     * pages considerably faster; however, scripts may then not modify the built-in prototypes, so it is disabled by
+     * default. Pages which do so, such as those which add methods to Array.prototype, will fail if it is enabled.
+     */
+    public static void setSharedStandardObjects( boolean sharedStandardObjects ) {
+        _sharedStandardObjects = sharedStandardObjects;
+    }
+
+
+    /**
+     * Returns true if the state left by the scripts of a page is kept, and restored when the page is loaded again.
+     */
+    public static boolean isPageSnapshots() {
+        return _pageSnapshots;
+    }
+
+
+    /**
+     * Specifies whether to keep the state left by the scripts run while parsing a page, and restore it when the same
+     * page is loaded again rather than running those scripts once more. The state comprises the text which the scripts
+     * wrote into the page and a copy of the variables which they defined; a page is only restored if its text and
+     * that of each of its scripts are unchanged. No snapshot is kept of a page whose scripts have any other effect,
+     * such as showing an alert, setting a cookie or a timer, or changing a form control, or which read state
+     * belonging to the client, such as its cookies or the navigator and screen properties; its scripts are run
+     * each time it is loaded. The onload event is run as usual. Page snapshots are disabled by default, and require
+     * the standard objects to be shared.
+     */
+    public static void setPageSnapshots( boolean pageSnapshots ) {
+        _pageSnapshots = pageSnapshots;
+    }
+
+
+    /**
+     * Discards the state kept for all pages.
+     */
+    public static void clearPageSnapshots() {
+        PageSnapshot.clearSnapshots();
+    }
+
+
     /**
      * Initiates JavaScript execution for the specified web response.
      */
     public static void run( WebResponse response ) throws IllegalAccessException, InstantiationException,
             InvocationTargetException, ClassDefinitionException, NotAFunctionException,
             PropertyException, SAXException, JavaScriptException {
-        Context context = Context.enter();
         // suggest bug fix for large java scripts see
         // bug report [ 1216567 ] Exception for large javascripts
         // by Grzegorz Lukasik
-        // and
-        
-        context.setOptimizationLevel(HttpUnitOptions.getJavaScriptOptimizationLevel());
-        Scriptable scope = context.initStandardObjects( null );
-        initHTMLObjects( scope );
+        // scripts too large to compile are now run interpreted by ScriptCache
+        // the objects created for the page use the thread's context after this method returns, so it remains bound
+        Context context = HttpUnitContextFactory.getInstance().bindContext();
+        try {
+            Scriptable scope;
+            if (_sharedStandardObjects) {
+                scope = context.newObject( getSharedScope( context ) );
+                scope.setPrototype( getSharedScope( context ) );
+                scope.setParentScope( null );
+            } else {
+                scope = context.initStandardObjects( null );
+                initHTMLObjects( scope, false );
+            }
 
-        Window w = (Window) context.newObject( scope, "Window" );
-        w.initialize( null, response.getScriptableObject() );
+            Window w = (Window) context.newObject( scope, "Window" );
+            w.setParentScope( scope );
+            w.initialize( null, response.getScriptableObject() );
+            if (_pageSnapshots && _sharedStandardObjects) w.startSnapshot( response );
+        } finally {
+            ScriptingEngineImpl.exitContext();
+        }
     }
 
 
@@ -83,27 +152,58 @@ public class JavaScript {
      */
     public static void load( WebResponse response ) throws ClassDefinitionException, InstantiationException, IllegalAccessException, InvocationTargetException, PropertyException, JavaScriptException, SAXException, NotAFunctionException {
         if (!(response.getScriptableObject().getScriptEngine() instanceof JavaScriptEngine)) run( response );
+        if (response.getScriptableObject().getScriptEngine() instanceof Window) {
+            ((Window) response.getScriptableObject().getScriptEngine()).completeSnapshot();
+        }
         response.getScriptableObject().load();
     }
 
 
-    private static void initHTMLObjects( Scriptable scope ) throws IllegalAccessException, InstantiationException,
+    /**
+     * Returns the scope holding the standard and HTML objects shared by all pages, creating it if necessary.
+     */
+    private static synchronized ScriptableObject getSharedScope( Context context ) throws IllegalAccessException,
+            InstantiationException, InvocationTargetException, ClassDefinitionException, PropertyException {
+        if (_sharedScope == null) {
+            ScriptableObject scope = context.initStandardObjects( null, true );
+            initHTMLObjects( scope, true );
+            resolveLazyConstructors( scope );
+            scope.sealObject();
+            _sharedScope = scope;
+        }
+        return _sharedScope;
+    }
+
+
+    /**
+     * Builds the standard constructors, such as RegExp, which Rhino otherwise defines only when first used.
+     * Once the scope is sealed, they could no longer be defined.
+     */
+    private static void resolveLazyConstructors( ScriptableObject scope ) {
+        Object[] ids = scope.getAllIds();
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] instanceof String) ScriptableObject.getProperty( scope, (String) ids[i] );
+        }
+    }
+
+
+    private static void initHTMLObjects( Scriptable scope, boolean sealed ) throws IllegalAccessException, InstantiationException,
             InvocationTargetException, ClassDefinitionException, PropertyException {
-        ScriptableObject.defineClass( scope, Window.class );
-        ScriptableObject.defineClass( scope, Document.class );
-        ScriptableObject.defineClass( scope, Style.class );
-        ScriptableObject.defineClass( scope, Location.class );
-        ScriptableObject.defineClass( scope, Navigator.class );
-        ScriptableObject.defineClass( scope, Screen.class );
-        ScriptableObject.defineClass( scope, Link.class );
-        ScriptableObject.defineClass( scope, Form.class );
-        ScriptableObject.defineClass( scope, Control.class );
-        ScriptableObject.defineClass( scope, Link.class );
-        ScriptableObject.defineClass( scope, Image.class );
-        ScriptableObject.defineClass( scope, Options.class );
-        ScriptableObject.defineClass( scope, Option.class );
-        ScriptableObject.defineClass( scope, ElementArray.class );
-        ScriptableObject.defineClass( scope, HTMLElement.class );
+        ScriptableObject.defineClass( scope, Window.class, sealed );
+        ScriptableObject.defineClass( scope, Document.class, sealed );
+        ScriptableObject.defineClass( scope, Style.class, sealed );
+        ScriptableObject.defineClass( scope, Location.class, sealed );
+        ScriptableObject.defineClass( scope, Navigator.class, sealed );
+        ScriptableObject.defineClass( scope, Screen.class, sealed );
+        ScriptableObject.defineClass( scope, Link.class, sealed );
+        ScriptableObject.defineClass( scope, Form.class, sealed );
+        ScriptableObject.defineClass( scope, Control.class, sealed );
+        ScriptableObject.defineClass( scope, Link.class, sealed );
+        ScriptableObject.defineClass( scope, Image.class, sealed );
+        ScriptableObject.defineClass( scope, Options.class, sealed );
+        ScriptableObject.defineClass( scope, Option.class, sealed );
+        ScriptableObject.defineClass( scope, ElementArray.class, sealed );
+        ScriptableObject.defineClass( scope, HTMLElement.class, sealed );
     }
 
 
@@ -117,6 +217,9 @@ public class JavaScript {
         protected Map _eventListeners = new HashMap(); // Map<String,Set<EventListener>>
         protected Map _eventCaptureListeners = new HashMap(); // Map<String,Set<EventListener>>
 
+        /** The arrays most recently converted from delegates, keyed by the property or query which returned them. **/
+        private Map _convertedArrays; // Map<String,ConvertedArray>
+
         /**
          * initialize JavaScript for the given ScriptEngine
          * @parent - the Script Engine to use
@@ -150,6 +253,16 @@ public class JavaScript {
         	return _scriptable.handleEvent(eventName);
         }
 
+
+        protected String getSourceURL() {
+            return _parent == null ? null : _parent.getSourceURL();
+        }
+
+
+        protected void reportScriptError( ScriptError error ) {
+            if (_parent != null) _parent.reportScriptError( error );
+        }
+
         public boolean has( String propertyName, Scriptable scriptable ) {
             return super.has( propertyName, scriptable ) ||
                     (_scriptable != null && _scriptable.get( propertyName ) != null);
@@ -161,7 +274,7 @@ public class JavaScript {
             if (result != NOT_FOUND) return result;
             if (_scriptable == null) return NOT_FOUND;
 
-            return convertIfNeeded( _scriptable.get( propertyName ) );
+            return convertIfNeeded( propertyName, _scriptable.get( propertyName ) );
 
         }
 
@@ -171,19 +284,47 @@ public class JavaScript {
             if (result != NOT_FOUND) return result;
             if (_scriptable == null) return NOT_FOUND;
 
-            return convertIfNeeded( _scriptable.get( i ) );
+            return convertIfNeeded( null, _scriptable.get( i ) );
         }
 
 
-        private Object convertIfNeeded( final Object property ) {
+        private Object convertIfNeeded( String propertyName, final Object property ) {
             if (property == null) return NOT_FOUND;
 
-            if (property instanceof ScriptableDelegate[]) return toScriptable( (ScriptableDelegate[]) property );
+            if (property instanceof ScriptableDelegate[]) return toScriptable( propertyName, (ScriptableDelegate[]) property );
             if (!(property instanceof ScriptableDelegate)) return property;
             return toScriptable( (ScriptableDelegate) property );
         }
 
 
+        /**
+         * Converts an array of delegates obtained from the named property, reusing the array last returned for that
+         * property if it holds the same delegates. Delegates typically build a new array on every request.
+         */
+        private Object toScriptable( String propertyName, ScriptableDelegate[] list ) {
+            if (propertyName == null) return toScriptable( list );
+
+            Object array = getConvertedArray( propertyName, list );
+            return array != null ? array : putConvertedArray( propertyName, list, toScriptable( list ) );
+        }
+
+
+        /**
+         * Returns the array last converted for the specified key, if it was converted from the same delegates.
+         */
+        private Object getConvertedArray( String key, ScriptingHandler[] delegates ) {
+            ConvertedArray converted = _convertedArrays == null ? null : (ConvertedArray) _convertedArrays.get( key );
+            return (converted == null || !converted.holds( delegates )) ? null : converted._array;
+        }
+
+
+        private Object putConvertedArray( String key, ScriptingHandler[] delegates, Object array ) {
+            if (_convertedArrays == null) _convertedArrays = new HashMap();
+            _convertedArrays.put( key, new ConvertedArray( delegates, array ) );
+            return array;
+        }
+
+
         private Object toScriptable( ScriptableDelegate[] list ) {
             Object[] delegates = new Object[ list.length ];
             for (int i = 0; i < delegates.length; i++) {
@@ -194,9 +335,11 @@ public class JavaScript {
 
 
         public void put( String propertyName, Scriptable scriptable, Object value ) {
-            if (_scriptable == null || _scriptable.get( propertyName ) == null) {
+            if (_scriptable == null || super.has( propertyName, this ) || _scriptable.get( propertyName ) == null) {
+                if (!(this instanceof Window)) PageSnapshot.recordPageChange();   // only the variables of the window are recorded
                 super.put( propertyName, scriptable, value );
             } else {
+                PageSnapshot.recordPageChange();
                 _scriptable.set( propertyName, value );
             }
         }
@@ -269,6 +412,18 @@ public class JavaScript {
         }
 
 
+        /**
+         * Returns an element array holding the scripting objects for the specified elements. If the elements are those
+         * last returned for the specified key, returns the same array, so that scripts which repeatedly ask for a
+         * collection see a single object and do not create new ones.
+         * @param key - identifies the collection or query which returned the elements
+         */
+        protected ElementArray toElementArray( String key, ScriptingHandler[] scriptables ) {
+            ElementArray array = (ElementArray) getConvertedArray( key, scriptables );
+            return array != null ? array : (ElementArray) putConvertedArray( key, scriptables, toElementArray( scriptables ) );
+        }
+
+
         protected ElementArray toElementArray( ScriptingHandler[] scriptables ) {
             JavaScriptEngine[] elements = new JavaScriptEngine[ scriptables.length ];
             for (int i = 0; i < elements.length; i++) {
@@ -283,6 +438,7 @@ public class JavaScript {
          * {@inheritDoc}
          */
         public void jsFunction_addEventListener(String type, Scriptable listener, boolean useCapture) {
+            PageSnapshot.recordPageChange();
             if(useCapture) {
                 Set set = (Set)_eventCaptureListeners.get(type); //Set<Scriptable>
                 if(set == null) {
@@ -316,6 +472,7 @@ public class JavaScript {
          * {@inheritDoc}
          */
         public void jsFunction_removeEventListener(String type, Scriptable listener, boolean useCapture) {
+            PageSnapshot.recordPageChange();
             if(useCapture) {
                 Set set = (Set)_eventCaptureListeners.get(type); //Set<EventListener>
                 if(set != null) {
@@ -332,6 +489,30 @@ public class JavaScript {
     }
 
 
+    /**
+     * A scripting array converted from an array of delegates. Since each delegate keeps the scripting object created
+     * for it, the array may be reused for as long as the same delegates are returned.
+     */
+    private static class ConvertedArray {
+
+        private ScriptingHandler[] _delegates;
+        private Object _array;
+
+        ConvertedArray( ScriptingHandler[] delegates, Object array ) {
+            _delegates = delegates;
+            _array = array;
+        }
+
+        boolean holds( ScriptingHandler[] delegates ) {
+            if (delegates.length != _delegates.length) return false;
+            for (int i = 0; i < delegates.length; i++) {
+                if (delegates[i] != _delegates[i]) return false;
+            }
+            return true;
+        }
+    }
+
+
     /**
      * Window functions 
      *
@@ -344,6 +525,11 @@ public class JavaScript {
         private Screen       _screen;
         private ElementArray _frames;
 
+        /** The snapshot being recorded or replayed while the page is parsed, if any. **/
+        private PageSnapshot _snapshot;
+        private boolean      _recordingSnapshot;
+        private int          _numScriptsReplayed;
+
 
         public String getClassName() {
             return "Window";
@@ -383,11 +569,13 @@ public class JavaScript {
 
 
         public Navigator jsGet_navigator() {
+            PageSnapshot.recordPageChange();   // its properties depend on the client
             return _navigator;
         }
 
 
         public Screen jsGet_screen() {
+            PageSnapshot.recordPageChange();   // its properties depend on the client
             return _screen;
         }
 
@@ -403,6 +591,7 @@ public class JavaScript {
 
 
         void setLocation( String relativeURL ) throws IOException, SAXException {
+            PageSnapshot.recordPageChange();
             getDelegate().setLocation( relativeURL );
         }
 
@@ -427,11 +616,116 @@ public class JavaScript {
         }
 
 
+        /**
+         * Runs a script found while parsing the page. When a snapshot of the page is being replayed, returns the text
+         * recorded for the script instead of running it.
+         */
+        public String runScript( String language, String script ) {
+            if (_snapshot == null) {
+                return super.runScript( language, script );
+            } else if (_recordingSnapshot) {
+                PageSnapshot previous = _snapshot.beginRecording();
+                try {
+                    String output = super.runScript( language, script );
+                    _snapshot.addScript( language, script, output );
+                    return output;
+                } finally {
+                    PageSnapshot.endRecording( previous );
+                }
+            } else if (_snapshot.matches( _numScriptsReplayed, language, script )) {
+                return _snapshot.getOutput( _numScriptsReplayed++ );
+            } else {
+                abandonSnapshot();
+                return super.runScript( language, script );
+            }
+        }
+
+
+        /**
+         * Prepares to replay the snapshot of the specified page, if there is one, or else to record one.
+         */
+        void startSnapshot( WebResponse response ) {
+            try {
+                if (response.getURL() == null || !response.isHTML()) return;
+                String url = response.getURL().toExternalForm();
+                String text = response.getText();
+                _snapshot = PageSnapshot.getSnapshot( url, text );
+                _recordingSnapshot = (_snapshot == null);
+                if (_recordingSnapshot) _snapshot = new PageSnapshot( url, text );
+            } catch (IOException e) {
+                _snapshot = null;
+            }
+        }
+
+
+        /**
+         * Completes the snapshot once the page has been parsed: keeps the variables defined by the scripts of the page
+         * if recording, or defines a copy of the recorded ones if replaying.
+         */
+        void completeSnapshot() throws IllegalAccessException, InstantiationException, InvocationTargetException,
+                ClassDefinitionException, PropertyException {
+            if (_snapshot == null) return;
+            getDelegate().getDocument();
+
+            Context context = ScriptingEngineImpl.enterContext();
+            try {
+                if (_recordingSnapshot) {
+                    if (!_snapshot.isPageChanged()) {
+                        _snapshot.saveVariables( this, getSharedScope( context ), getSnapshotHostObjects() );
+                        PageSnapshot.putSnapshot( _snapshot );
+                    }
+                    _snapshot = null;
+                } else if (_numScriptsReplayed != _snapshot.getNumScripts()) {
+                    abandonSnapshot();
+                } else {
+                    _snapshot.restoreVariables( this, getSharedScope( context ), getSnapshotHostObjects() );
+                    _snapshot = null;
+                }
+            } catch (IOException e) {
+                if (!_recordingSnapshot) abandonSnapshot();
+                _snapshot = null;
+            } catch (ClassNotFoundException e) {
+                abandonSnapshot();
+            } finally {
+                ScriptingEngineImpl.exitContext();
+            }
+        }
+
+
+        /**
+         * Stops replaying the snapshot, which no longer matches the page, and runs the scripts skipped so far.
+         */
+        private void abandonSnapshot() {
+            PageSnapshot snapshot = _snapshot;
+            _snapshot = null;
+            PageSnapshot.removeSnapshot( snapshot );
+            for (int i = 0; i < _numScriptsReplayed; i++) {
+                super.runScript( snapshot.getLanguage( i ), snapshot.getScript( i ) );
+            }
+        }
+
+
+        /**
+         * Returns the objects of this page which a snapshot records by name.
+         */
+        private Map getSnapshotHostObjects() {
+            Map objects = new HashMap();
+            objects.put( "window", this );
+            objects.put( "scope", getParentScope() );
+            objects.put( "document", jsGet_document() );
+            objects.put( "location", _location );
+            objects.put( "navigator", _navigator );
+            objects.put( "screen", _screen );
+            return objects;
+        }
+
+
         /**
          * javascript alert handling
          * @param message - the alert message
          */
         public void jsFunction_alert( String message ) {
+            PageSnapshot.recordPageChange();
             getDelegate().alertUser( message );
         }
         
@@ -445,11 +739,13 @@ public class JavaScript {
 
 
         public boolean jsFunction_confirm( String message ) {
+            PageSnapshot.recordPageChange();
             return getDelegate().getConfirmationResponse( message );
         }
 
 
         public String jsFunction_prompt( String message, String defaultResponse ) {
+            PageSnapshot.recordPageChange();
             return getDelegate().getUserResponse( message, defaultResponse );
         }
 
@@ -465,11 +761,45 @@ public class JavaScript {
         }
 
 
-        public void jsFunction_setTimeout() {
+        /**
+         * Schedules code to run once its delay has passed on the window's virtual clock.
+         * @param code  - a function, or a string to evaluate
+         * @param delay - the delay in milliseconds
+         * @return the identifier of the timer
+         */
+        public int jsFunction_setTimeout( Object code, Object delay ) {
+            PageSnapshot.recordPageChange();
+            return getDelegate().setTimer( new ScriptTimer( code ), toMilliseconds( delay ), 0 );
+        }
+
+
+        /**
+         * Schedules code to run repeatedly on the window's virtual clock.
+         * @param code  - a function, or a string to evaluate
+         * @param delay - the interval in milliseconds
+         * @return the identifier of the timer
+         */
+        public int jsFunction_setInterval( Object code, Object delay ) {
+            PageSnapshot.recordPageChange();
+            long interval = Math.max( 1, toMilliseconds( delay ) );
+            return getDelegate().setTimer( new ScriptTimer( code ), interval, interval );
+        }
+
+
+        public void jsFunction_clearTimeout( Object timerId ) {
+            PageSnapshot.recordPageChange();
+            getDelegate().clearTimer( (int) Context.toNumber( timerId ) );
+        }
+
+
+        public void jsFunction_clearInterval( Object timerId ) {
+            PageSnapshot.recordPageChange();
+            getDelegate().clearTimer( (int) Context.toNumber( timerId ) );
         }
 
 
         public void jsFunction_close() {
+            PageSnapshot.recordPageChange();
             getDelegate().closeWindow();
         }
 
@@ -477,6 +807,7 @@ public class JavaScript {
 
         public Window jsFunction_open( Object url, String name, String features, boolean replace )
                 throws PropertyException, JavaScriptException, NotAFunctionException, IOException, SAXException {
+            PageSnapshot.recordPageChange();
             WebResponse.Scriptable delegate = getDelegate().open( toStringIfNotUndefined( url ), name, features, replace );
             return delegate == null ? null : (Window) toScriptable( delegate );
         }
@@ -501,9 +832,45 @@ public class JavaScript {
         }
 
 
+        protected String getSourceURL() {
+            return getDelegate().getURL() == null ? null : getDelegate().getURL().toExternalForm();
+        }
+
+
+        protected void reportScriptError( ScriptError error ) {
+            getDelegate().reportScriptError( error );
+        }
+
+
         private WebResponse.Scriptable getDelegate() {
             return (WebResponse.Scriptable) _scriptable;
         }
+
+
+        private long toMilliseconds( Object delay ) {
+            return (delay instanceof Undefined) ? 0 : (long) Context.toNumber( delay );
+        }
+
+
+        /**
+         * Code scheduled by setTimeout or setInterval.
+         */
+        private class ScriptTimer implements Runnable {
+
+            private Object _code;
+
+            ScriptTimer( Object code ) {
+                _code = code;
+            }
+
+            public void run() {
+                if (_code instanceof Function) {
+                    callFunction( (Function) _code, "Timer" );
+                } else {
+                    evaluateExpression( Context.toString( _code ) );
+                }
+            }
+        }
     }
 
 
@@ -535,19 +902,19 @@ public class JavaScript {
 
 
         public Scriptable jsGet_images() throws SAXException{
-            if (_images == null) _images = toElementArray( getDelegate().getImages() );
+            if (_images == null) _images = toElementArray( "#images", getDelegate().getImages() );
             return _images;
         }
 
 
         public Scriptable jsGet_links() throws SAXException {
-            if (_links == null) _links = toElementArray( getDelegate().getLinks() );
+            if (_links == null) _links = toElementArray( "#links", getDelegate().getLinks() );
             return _links;
         }
 
 
         public Scriptable jsGet_forms() throws SAXException {
-            if (_forms == null) _forms = toElementArray( getDelegate().getForms() );
+            if (_forms == null) _forms = toElementArray( "#forms", getDelegate().getForms() );
             return _forms;
         }
 
@@ -559,12 +926,12 @@ public class JavaScript {
 
 
         public Object jsFunction_getElementsByName( String name ) {
-            return toElementArray( getDelegate().getElementsByName( name ) );
+            return toElementArray( "#getElementsByName:" + name, getDelegate().getElementsByName( name ) );
         }
 
 
         public Object jsFunction_getElementsByTagName( String name ) {
-            return toElementArray( getDelegate().getElementsByTagName( name ) );
+            return toElementArray( "#getElementsByTagName:" + name, getDelegate().getElementsByTagName( name ) );
         }
 
 
@@ -579,6 +946,7 @@ public class JavaScript {
         }
 
         public String jsGet_cookie() {
+            PageSnapshot.recordPageChange();   // the cookies belong to the client, so output which depends on them may not be replayed to another
             return getDelegate().getCookie();
         }
 
@@ -600,11 +968,13 @@ public class JavaScript {
 
 
         public void jsFunction_open( Object mimeType ) {
+            PageSnapshot.recordPageChange();
             _mimeType = toStringIfNotUndefined( mimeType );
         }
 
 
         public void jsFunction_close() {
+            PageSnapshot.recordPageChange();
             if (getDelegate().replaceText( getWriteBuffer().toString(), _mimeType == null ? "text/html" : _mimeType )) {
                 getWriteBuffer().setLength(0);
             }
@@ -1034,16 +1404,18 @@ public class JavaScript {
 
 
         public Object jsFunction_getElementsByTagName( String name ) throws SAXException {
-            return toElementArray( getDelegate().getElementsByTagName( name ) );
+            return toElementArray( "#getElementsByTagName:" + name, getDelegate().getElementsByTagName( name ) );
         }
 
 
         public void jsFunction_submit() throws IOException, SAXException {
+            PageSnapshot.recordPageChange();
             getDelegate().submit();
         }
 
 
         public void jsFunction_reset() throws IOException, SAXException {
+            PageSnapshot.recordPageChange();
             getDelegate().reset();
         }
 
@@ -1093,6 +1465,7 @@ public class JavaScript {
          * @throws SAXException
          */
         public void jsFunction_click() throws IOException, SAXException {
+            PageSnapshot.recordPageChange();
             getDelegate().click();
         }
 
@@ -1109,16 +1482,19 @@ public class JavaScript {
 
         /** Support getting value of arbitrary attribute */
         public void jsFunction_setAttribute( String attributeName, Object value ) throws JavaScriptException {
+            PageSnapshot.recordPageChange();
             getDelegate().setAttribute( attributeName, value );
         }
 
         /** Support getting value of arbitrary attribute */
         public void jsFunction_removeAttribute( String attributeName ) throws JavaScriptException {
+            PageSnapshot.recordPageChange();
             getDelegate().removeAttribute( attributeName );
         }
 
         /** Allow calling onchange() from within a JavaScript function */
         public void jsFunction_onchange() throws JavaScriptException {
+        	PageSnapshot.recordPageChange();
         	Input myInput=this.getDelegate();
         	myInput.sendOnChangeEvent();
         }
@@ -1151,6 +1527,7 @@ public class JavaScript {
 
 
         public void put( int i, Scriptable scriptable, Object object ) {
+            PageSnapshot.recordPageChange();
             if (object == null) {
                 getDelegate().put( i, null );
             } else {
@@ -0,0 +1,372 @@
+package com.meterware.httpunit.javascript;
+/********************************************************************************************************************
+ * $Id$
+ *
+ * Copyright (c) 2026, Russell Gold
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ *******************************************************************************************************************/
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+
+/**
+ * The state left by the scripts run while a page was parsed: the text which each script wrote into the page, and
+ * the variables which the scripts defined in its window. A page loaded again with the same text may replay the
+ * written text and restore a copy of the variables, rather than running its scripts once more.
+ * <p>
+ * The variables are copied by serialization. Standard and HTML objects from the shared scope, and the window,
+ * document, location, navigator and screen of the page, are written as references and resolved to the objects
+ * of the page into which they are restored. Any other reference to an object of the page, such as a form,
+ * cannot be copied, and prevents the snapshot from being kept. Neither is a snapshot kept if the scripts changed the
+ * page or the client in any other way, such as by setting a property of a form control, a cookie or a timer, or if
+ * they read state belonging to the client, such as its cookies, which may differ for the next client to load the page.
+ * </p>
+ *
+ * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
+ **/
+class PageSnapshot {
+
+    /** The maximum number of pages whose snapshots are kept. **/
+    static final int MAX_SNAPSHOTS = 100;
+
+    /** The maximum combined size of the snapshots kept, in bytes. **/
+    static final long MAX_SNAPSHOTS_SIZE = 8 * 1024 * 1024;
+
+    private static final Map _snapshots = new LinkedHashMap( 16, 0.75f, /* access order */ true );
+
+    private static long _snapshotsSize;
+
+    /** The snapshot being recorded by the script running on each thread, if any. **/
+    private static final ThreadLocal _recording = new ThreadLocal();
+
+    /** The shared scope whose objects are named in _sharedNames. **/
+    private static Scriptable _namedScope;
+
+    /** The names of the objects in the shared scope, keyed by the objects themselves. **/
+    private static Map _sharedNames;
+
+    private final String _url;
+    private final String _text;
+    private final List _languages = new ArrayList();
+    private final List _scripts = new ArrayList();
+    private final List _outputs = new ArrayList();
+    private byte[] _variables;
+    private boolean _pageChanged;
+
+
+    /**
+     * Returns the snapshot taken of the specified page, if its text is unchanged.
+     */
+    static synchronized PageSnapshot getSnapshot( String url, String text ) {
+        PageSnapshot snapshot = (PageSnapshot) _snapshots.get( url );
+        return (snapshot == null || !snapshot._text.equals( text )) ? null : snapshot;
+    }
+
+
+    /**
+     * Keeps the specified snapshot, discarding those least recently used as needed to stay within the limits
+     * on their number and combined size.
+     */
+    static synchronized void putSnapshot( PageSnapshot snapshot ) {
+        if (snapshot.getSize() > MAX_SNAPSHOTS_SIZE) return;
+
+        PageSnapshot replaced = (PageSnapshot) _snapshots.put( snapshot._url, snapshot );
+        if (replaced != null) _snapshotsSize -= replaced.getSize();
+        _snapshotsSize += snapshot.getSize();
+        for (Iterator i = _snapshots.values().iterator(); _snapshots.size() > MAX_SNAPSHOTS || _snapshotsSize > MAX_SNAPSHOTS_SIZE;) {
+            _snapshotsSize -= ((PageSnapshot) i.next()).getSize();
+            i.remove();
+        }
+    }
+
+
+    static synchronized long getSnapshotsSize() {
+        return _snapshotsSize;
+    }
+
+
+    /**
+     * Discards the specified snapshot, if it is still the one held for its page.
+     */
+    static synchronized void removeSnapshot( PageSnapshot snapshot ) {
+        if (_snapshots.get( snapshot._url ) != snapshot) return;
+        _snapshots.remove( snapshot._url );
+        _snapshotsSize -= snapshot.getSize();
+    }
+
+
+    static synchronized void clearSnapshots() {
+        _snapshots.clear();
+        _snapshotsSize = 0;
+    }
+
+
+    /**
+     * Notes that the script now running has changed the page or the client in a way which a snapshot cannot
+     * record, or has read state belonging to the client. If a snapshot is being recorded for the script, it will not be kept.
+     */
+    static void recordPageChange() {
+        PageSnapshot snapshot = (PageSnapshot) _recording.get();
+        if (snapshot != null) snapshot._pageChanged = true;
+    }
+
+
+    /**
+     * Marks this as the snapshot recording the effects of scripts run on the current thread, and returns the one
+     * which was, if any, to be passed to {@link #endRecording}.
+     */
+    PageSnapshot beginRecording() {
+        PageSnapshot previous = (PageSnapshot) _recording.get();
+        _recording.set( this );
+        return previous;
+    }
+
+
+    static void endRecording( PageSnapshot previous ) {
+        _recording.set( previous );
+    }
+
+
+    /**
+     * Returns true if a script recorded in this snapshot changed the page or the client other than by writing text.
+     */
+    boolean isPageChanged() {
+        return _pageChanged;
+    }
+
+
+    PageSnapshot( String url, String text ) {
+        _url = url;
+        _text = text;
+    }
+
+
+    /**
+     * Records a script run while parsing the page, and the text which it wrote.
+     */
+    void addScript( String language, String script, String output ) {
+        _languages.add( language );
+        _scripts.add( script );
+        _outputs.add( output );
+    }
+
+
+    int getNumScripts() {
+        return _scripts.size();
+    }
+
+
+    String getLanguage( int i ) {
+        return (String) _languages.get( i );
+    }
+
+
+    String getScript( int i ) {
+        return (String) _scripts.get( i );
+    }
+
+
+    String getOutput( int i ) {
+        return (String) _outputs.get( i );
+    }
+
+
+    /**
+     * Returns the approximate number of bytes held by this snapshot.
+     */
+    private long getSize() {
+        long numChars = _url.length() + _text.length();
+        for (int i = 0; i < _scripts.size(); i++) {
+            numChars += getScript( i ).length() + (getOutput( i ) == null ? 0 : getOutput( i ).length());
+        }
+        return 2 * numChars + (_variables == null ? 0 : _variables.length);
+    }
+
+
+    /**
+     * Returns true if the specified script is the one recorded at the specified position.
+     */
+    boolean matches( int i, String language, String script ) {
+        if (i >= _scripts.size() || !script.equals( _scripts.get( i ) )) return false;
+        return language == null ? _languages.get( i ) == null : language.equals( _languages.get( i ) );
+    }
+
+
+    /**
+     * Copies the variables defined in the specified window.
+     * @param window      the window of the page
+     * @param sharedScope the scope holding the standard objects shared by all pages
+     * @param hostObjects the objects of the page which are to be recorded by name, keyed by their names
+     * @throws IOException if the variables refer to objects which cannot be copied
+     */
+    void saveVariables( ScriptableObject window, Scriptable sharedScope, Map hostObjects ) throws IOException {
+        Map references = new IdentityHashMap( getSharedNames( sharedScope ) );
+        for (Iterator i = hostObjects.entrySet().iterator(); i.hasNext();) {
+            Map.Entry entry = (Map.Entry) i.next();
+            references.put( entry.getValue(), new Reference( (String) entry.getKey(), false ) );
+        }
+
+        List names = new ArrayList();
+        Object[] ids = window.getAllIds();
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] instanceof String) names.add( ids[i] );
+        }
+        String[] variableNames = (String[]) names.toArray( new String[ names.size() ] );
+        int[] attributes = new int[ variableNames.length ];
+        Object[] values = new Object[ variableNames.length ];
+        for (int i = 0; i < variableNames.length; i++) {
+            attributes[i] = window.getAttributes( variableNames[i] );
+            values[i] = ScriptableObject.getProperty( window, variableNames[i] );
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new SnapshotOutputStream( bytes, references );
+        out.writeObject( variableNames );
+        out.writeObject( attributes );
+        out.writeObject( values );
+        out.close();
+        _variables = bytes.toByteArray();
+    }
+
+
+    /**
+     * Defines a copy of the saved variables in the specified window.
+     * @param window      the window of the page
+     * @param sharedScope the scope holding the standard objects shared by all pages
+     * @param hostObjects the objects of the page to which recorded names refer, keyed by their names
+     */
+    void restoreVariables( ScriptableObject window, Scriptable sharedScope, Map hostObjects ) throws IOException, ClassNotFoundException {
+        Map objects = new HashMap();
+        for (Iterator i = getSharedNames( sharedScope ).entrySet().iterator(); i.hasNext();) {
+            Map.Entry entry = (Map.Entry) i.next();
+            objects.put( entry.getValue(), entry.getKey() );
+        }
+        for (Iterator i = hostObjects.entrySet().iterator(); i.hasNext();) {
+            Map.Entry entry = (Map.Entry) i.next();
+            objects.put( new Reference( (String) entry.getKey(), false ), entry.getValue() );
+        }
+
+        ObjectInputStream in = new SnapshotInputStream( new ByteArrayInputStream( _variables ), objects );
+        String[] variableNames = (String[]) in.readObject();
+        int[] attributes = (int[]) in.readObject();
+        Object[] values = (Object[]) in.readObject();
+        in.close();
+        for (int i = 0; i < variableNames.length; i++) {
+            window.defineProperty( variableNames[i], values[i], attributes[i] );
+        }
+    }
+
+
+    /**
+     * Returns references to the objects of the shared scope, and to their prototypes, keyed by the objects themselves.
+     */
+    private static synchronized Map getSharedNames( Scriptable sharedScope ) {
+        if (_namedScope != sharedScope) {
+            Map names = new IdentityHashMap();
+            names.put( sharedScope, new Reference( "", true ) );
+            Object[] ids = ((ScriptableObject) sharedScope).getAllIds();
+            for (int i = 0; i < ids.length; i++) {
+                Object value = ScriptableObject.getProperty( sharedScope, ids[i].toString() );
+                if (!(value instanceof Scriptable)) continue;
+                names.put( value, new Reference( ids[i].toString(), true ) );
+                Object prototype = ScriptableObject.getProperty( (Scriptable) value, "prototype" );
+                if (prototype instanceof Scriptable) names.put( prototype, new Reference( ids[i] + ".prototype", true ) );
+            }
+            _sharedNames = names;
+            _namedScope = sharedScope;
+        }
+        return _sharedNames;
+    }
+
+
+    /**
+     * A serialized reference to an object which is not copied.
+     */
+    private static class Reference implements Serializable {
+
+        private final String _name;
+        private final boolean _shared;
+
+        Reference( String name, boolean shared ) {
+            _name = name;
+            _shared = shared;
+        }
+
+        public boolean equals( Object o ) {
+            return o instanceof Reference && _name.equals( ((Reference) o)._name ) && _shared == ((Reference) o)._shared;
+        }
+
+        public int hashCode() {
+            return _name.hashCode();
+        }
+    }
+
+
+    private static class SnapshotOutputStream extends ObjectOutputStream {
+
+        private final Map _names;
+
+        SnapshotOutputStream( OutputStream out, Map names ) throws IOException {
+            super( out );
+            _names = names;
+            enableReplaceObject( true );
+        }
+
+        protected Object replaceObject( Object obj ) throws IOException {
+            Object reference = _names.get( obj );
+            return reference != null ? reference : obj;
+        }
+    }
+
+
+    private static class SnapshotInputStream extends ObjectInputStream {
+
+        private final Map _objects;
+
+        SnapshotInputStream( InputStream in, Map objects ) throws IOException {
+            super( in );
+            _objects = objects;
+            enableResolveObject( true );
+        }
+
+        protected Object resolveObject( Object obj ) throws IOException {
+            if (!(obj instanceof Reference)) return obj;
+            Object resolved = _objects.get( obj );
+            if (resolved == null) throw new InvalidObjectException( "No object named " + ((Reference) obj)._name );
+            return resolved;
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+package com.meterware.httpunit.javascript;
+/********************************************************************************************************************
+ * $Id$
+ *
+ * Copyright (c) 2026, Russell Gold
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ *******************************************************************************************************************/
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.RhinoException;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+
+/**
+ * A bounded cache of compiled scripts, keyed by their source text, source name and the optimization level used to
+ * compile them. Compiled scripts do not depend on the scope in which they run, so a single cache is shared by all
+ * pages and conversations; event handlers are cached as scripts which evaluate to a new function in each scope.
+ *
+ * @author <a href="mailto:russgold@httpunit.org">Russell Gold</a>
+ **/
+public class ScriptCache {
+
+    /** The number of scripts held by the shared cache unless otherwise specified. **/
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+
+    private static ScriptCache _sharedCache = new ScriptCache( DEFAULT_MAX_ENTRIES );
+
+    private final int _maxEntries;
+
+    private int _hitCount;
+
+    private int _missCount;
+
+    private final Map _scripts = new LinkedHashMap( 16, 0.75f, /* access order */ true ) {
+        protected boolean removeEldestEntry( Map.Entry eldest ) {
+            return size() > _maxEntries;
+        }
+    };
+
+
+    /**
+     * Returns the cache used by the JavaScript engine.
+     */
+    public static ScriptCache getSharedCache() {
+        return _sharedCache;
+    }
+
+
+    /**
+     * Specifies the cache to be used by the JavaScript engine. A cache with no entries disables caching.
+     */
+    public static void setSharedCache( ScriptCache cache ) {
+        if (cache == null) throw new IllegalArgumentException( "Must specify a script cache" );
+        _sharedCache = cache;
+    }
+
+
+    /**
+     * Creates a cache which holds at most the specified number of compiled scripts.
+     */
+    public ScriptCache( int maxEntries ) {
+        _maxEntries = maxEntries;
+    }
+
+
+    /**
+     * Returns the maximum number of compiled scripts held by this cache.
+     */
+    public int getMaxEntries() {
+        return _maxEntries;
+    }
+
+
+    /**
+     * Returns the number of compiled scripts currently held by this cache.
+     */
+    public synchronized int getSize() {
+        return _scripts.size();
+    }
+
+
+    /**
+     * Returns the number of times a compiled script was found in this cache.
+     */
+    public synchronized int getHitCount() {
+        return _hitCount;
+    }
+
+
+    /**
+     * Returns the number of times a script had to be compiled.
+     */
+    public synchronized int getMissCount() {
+        return _missCount;
+    }
+
+
+    /**
+     * Discards all compiled scripts and resets the statistics.
+     */
+    public synchronized void clear() {
+        _scripts.clear();
+        _hitCount = _missCount = 0;
+    }
+
+
+    /**
+     * Returns the compiled form of the specified script, compiling it with the context if it is not already cached.
+     * @param context the context to use for compilation; its optimization level is part of the key
+     * @param source the text of the script
+     * @param sourceName the name reported in error messages, such as the location of an external script
+     */
+    public Script getScript( Context context, String source, String sourceName ) {
+        Key key = new Key( context.getOptimizationLevel(), sourceName, source );
+        synchronized (this) {
+            Script script = (Script) _scripts.get( key );
+            if (script != null) {
+                _hitCount++;
+                return script;
+            }
+            _missCount++;
+        }
+
+        Script script = compile( context, source, sourceName );
+        synchronized (this) {
+            if (_maxEntries > 0) _scripts.put( key, script );
+        }
+        return script;
+    }
+
+
+    /**
+     * Returns a function with the specified body and name, defined in the specified scope. Only the compiled form
+     * of the function is cached; a new function object is created for each call.
+     */
+    public Function getFunction( Context context, Scriptable scope, String body, String functionName, String sourceName ) {
+        Script script = getScript( context, "(function " + functionName + "() { " + body + "})", sourceName );
+        return (Function) script.exec( context, scope );
+    }
+
+
+    /**
+     * Compiles the specified script. A script too large to be compiled to Java bytecode, which limits each method
+     * to 64K, is compiled for the interpreter instead.
+     */
+    private static Script compile( Context context, String source, String sourceName ) {
+        try {
+            return context.compileString( source, sourceName, 0, null );
+        } catch (RhinoException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            if (context.getOptimizationLevel() < 0) throw e;
+            return compileInterpreted( context, source, sourceName );
+        } catch (LinkageError e) {
+            if (context.getOptimizationLevel() < 0) throw e;
+            return compileInterpreted( context, source, sourceName );
+        }
+    }
+
+
+    private static Script compileInterpreted( Context context, String source, String sourceName ) {
+        int optimizationLevel = context.getOptimizationLevel();
+        try {
+            context.setOptimizationLevel( -1 );
+            return context.compileString( source, sourceName, 0, null );
+        } finally {
+            context.setOptimizationLevel( optimizationLevel );
+        }
+    }
+
+
+//=======================================================================================
+
+
+    private static class Key {
+
+        private final int    _optimizationLevel;
+        private final String _sourceName;
+        private final String _source;
+        private final int    _hashCode;
+
+
+        Key( int optimizationLevel, String sourceName, String source ) {
+            _optimizationLevel = optimizationLevel;
+            _sourceName = sourceName;
+            _source = source;
+            _hashCode = (source.hashCode() * 31 + sourceName.hashCode()) * 31 + optimizationLevel;
+        }
+
+
+        public int hashCode() {
+            return _hashCode;
+        }
+
+
+        public boolean equals( Object o ) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return _hashCode == other._hashCode && _optimizationLevel == other._optimizationLevel
+                    && _sourceName.equals( other._sourceName ) && _source.equals( other._source );
+        }
+    }
+
+}
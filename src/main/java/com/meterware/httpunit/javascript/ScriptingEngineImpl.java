@@ -25,7 +25,9 @@ import com.meterware.httpunit.scripting.ScriptingEngine;
 import com.meterware.httpunit.HttpUnitUtils;
 import com.meterware.httpunit.ScriptException;
 
-import java.util.ArrayList;
+import com.meterware.httpunit.ScriptError;
+
+import java.util.LinkedList;
 
 
 /**
@@ -36,23 +38,51 @@ public abstract class ScriptingEngineImpl extends ScriptableObject implements Sc
 
     private final static Object[] NO_ARGS = new Object[0];
 
-    private static ArrayList _errorMessages = new ArrayList();
+    /** The number of script errors kept for all clients together. **/
+    public final static int MAX_ERROR_MESSAGES = 1000;
+
+    /** The most recent script errors reported by all clients, oldest first. **/
+    private static LinkedList _errorMessages = new LinkedList();
+
+
+    /**
+     * Enters a JavaScript context for the current thread, set to the optimization level specified by
+     * HttpUnitOptions.setJavaScriptOptimizationLevel. Every entry must be matched by a call to exitContext().
+     */
+    static public Context enterContext() {
+        return HttpUnitContextFactory.getInstance().enterContext();
+    }
+
+
+    /**
+     * Leaves the context entered by the matching call to enterContext().
+     */
+    static public void exitContext() {
+        HttpUnitContextFactory.getInstance().exitContext();
+    }
 
 
     /**
      * clear the list of error Messages
      */
     static public void clearErrorMessages() {
-        _errorMessages.clear();
+        synchronized (_errorMessages) {
+            _errorMessages.clear();
+        }
     }
 
 
     /**
-     * access to the list of error Messages that were collected 
+     * access to the list of error Messages that were collected from all clients.
+     * Only the most recent MAX_ERROR_MESSAGES are kept; each client also keeps its own errors.
      * @return the array with error Messages
      */
     static public String[] getErrorMessages() {
-        return (String[]) _errorMessages.toArray( new String[ _errorMessages.size() ] );
+        synchronized (_errorMessages) {
+            String[] messages = new String[ _errorMessages.size() ];
+            for (int i = 0; i < messages.length; i++) messages[i] = _errorMessages.get( i ).toString();
+            return messages;
+        }
     }
 
 
@@ -62,6 +92,17 @@ public abstract class ScriptingEngineImpl extends ScriptableObject implements Sc
      * @param badScript - the script that caused the problem
      */
     static public void handleScriptException( Exception e, String badScript ) {
+        handleScriptException( e, badScript, null );
+    }
+
+
+    /**
+     * handle Exceptions, reporting any error to the client of the specified engine as well
+     * @param e - the exception to handle
+     * @param badScript - the script that caused the problem
+     * @param engine - the engine which ran the script, or null if it is not known
+     */
+    static void handleScriptException( Exception e, String badScript, ScriptingEngineImpl engine ) {
     	String errorMessage=badScript==null? e.getMessage():badScript + " failed: " + e; 
     	if (e instanceof EcmaError ||
     			e instanceof EvaluatorException ||
@@ -74,7 +115,9 @@ public abstract class ScriptingEngineImpl extends ScriptableObject implements Sc
    				else
    					throw new ScriptException( errorMessage );
    			} else	{
-    				_errorMessages.add( errorMessage );
+    				ScriptError error = new ScriptError( engine == null ? null : engine.getSourceURL(), getLineNumber( e ), errorMessage );
+    				recordError( error );
+    				if (engine != null) engine.reportScriptError( error );
     		}
    		} else	{
     		HttpUnitUtils.handleException(e);
@@ -82,6 +125,25 @@ public abstract class ScriptingEngineImpl extends ScriptableObject implements Sc
     	}
     }
 
+
+    private static void recordError( ScriptError error ) {
+        synchronized (_errorMessages) {
+            if (_errorMessages.size() == MAX_ERROR_MESSAGES) _errorMessages.removeFirst();
+            _errorMessages.addLast( error );
+        }
+    }
+
+
+    /**
+     * Returns the line, counting from 1, of the script at which the exception was thrown, or -1 if it is not known.
+     * Scripts are compiled with their first line numbered 0.
+     */
+    private static int getLineNumber( Exception e ) {
+        if (!(e instanceof org.mozilla.javascript.RhinoException)) return -1;
+        org.mozilla.javascript.RhinoException exception = (org.mozilla.javascript.RhinoException) e;
+        return exception.sourceName() == null ? -1 : exception.lineNumber() + 1;
+    }
+
 //--------------------------------------- ScriptingEngine methods ------------------------------------------------------
 
     public boolean supportsScriptLanguage( String language ) {
@@ -102,16 +164,15 @@ public abstract class ScriptingEngineImpl extends ScriptableObject implements Sc
                 script = withoutFirstLine( script );
                 if (script.endsWith( "-->" )) script = script.substring( 0, script.lastIndexOf( "-->" ));
             }
-            Context context = Context.enter();
-            context.initStandardObjects( null );
-            context.evaluateString( this, script, "httpunit", 0, null );
+            Context context = enterScript();
+            ScriptCache.getSharedCache().getScript( context, script, "httpunit" ).exec( context, this );
             return getDocumentWriteBuffer();
         } catch (Exception e) {
-            handleScriptException( e, "Script '" + script + "'" );
+            handleScriptException( e, "Script '" + script + "'", this );
             return "";
         } finally {
             discardDocumentWriteBuffer();
-            Context.exit();
+            exitScript();
         }
     }
 
@@ -137,20 +198,18 @@ public abstract class ScriptingEngineImpl extends ScriptableObject implements Sc
       	return true;
       }	else { 	
         try {
-            Context context = Context.enter();
-            context.initStandardObjects( null );
-            context.setOptimizationLevel( -1 );
+            Context context = enterScript();
             // wrap the eventScript into a function
-            Function f = context.compileFunction( this, "function x() { " + eventScript + "}", "httpunit", 0, null );
+            Function f = ScriptCache.getSharedCache().getFunction( context, this, eventScript, "x", "httpunit" );
             // call the function with no arguments
             Object result = f.call( context, this, this, NO_ARGS );
             // return the result of the function or false if it is not boolean
             return (!(result instanceof Boolean)) || ((Boolean) result).booleanValue();
         } catch (Exception e) {
-            handleScriptException( e, "Event '" + eventScript + "'" );
+            handleScriptException( e, "Event '" + eventScript + "'", this );
             return false;
         } finally {
-            Context.exit();
+            exitScript();
         }
       } // if
     }
@@ -171,20 +230,68 @@ public abstract class ScriptingEngineImpl extends ScriptableObject implements Sc
      */
     public Object evaluateExpression( String expression ) {
         try {
-            Context context = Context.enter();
-            context.initStandardObjects( null );
-            Object result = context.evaluateString( this, expression, "httpunit", 0, null );
+            Context context = enterScript();
+            Object result = ScriptCache.getSharedCache().getScript( context, expression, "httpunit" ).exec( context, this );
             return (result == null || result instanceof Undefined) ? null : result;
         } catch (Exception e) {
-            handleScriptException( e, "URL '" + expression + "'" );
+            handleScriptException( e, "URL '" + expression + "'", this );
             return null;
         } finally {
-            Context.exit();
+            exitScript();
         }
     }
 
 //------------------------------------------ protected methods ---------------------------------------------------------
 
+
+    /**
+     * Calls the specified function with no arguments, using this object as its target.
+     * @param function - the function to call
+     * @param description - a description of the call, used to report any failure
+     */
+    protected void callFunction( Function function, String description ) {
+        try {
+            Context context = enterScript();
+            function.call( context, this, this, NO_ARGS );
+        } catch (Exception e) {
+            handleScriptException( e, description, this );
+        } finally {
+            exitScript();
+        }
+    }
+
+
+    /**
+     * Enters a context in which to run a script for this object, within the budgets set by HttpUnitOptions.
+     * Every entry must be matched by a call to exitScript().
+     */
+    protected Context enterScript() {
+        return HttpUnitContextFactory.getInstance().enterScript( this );
+    }
+
+
+    /**
+     * Leaves the context entered by the matching call to enterScript().
+     */
+    protected void exitScript() {
+        HttpUnitContextFactory.getInstance().exitScript();
+    }
+
+
+    /**
+     * Returns the URL of the page to which this object belongs, or null if it is not known.
+     */
+    protected String getSourceURL() {
+        return null;
+    }
+
+
+    /**
+     * Reports an error found while running a script for this object to the client which loaded its page, if any.
+     */
+    protected void reportScriptError( ScriptError error ) {
+    }
+
     protected String getDocumentWriteBuffer() {
         throw new IllegalStateException( "may not run runScript() from " + getClass() );
     }
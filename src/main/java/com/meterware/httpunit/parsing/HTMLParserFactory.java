@@ -19,6 +19,10 @@ package com.meterware.httpunit.parsing;
  * DEALINGS IN THE SOFTWARE.
  *
  *******************************************************************************************************************/
+import com.meterware.httpunit.HttpUnitConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 
 
@@ -246,10 +250,19 @@ abstract public class HTMLParserFactory {
 
 
     /**
-     * Get the list of Html Error Listeners
+     * Returns a copy of the list of HTML Parser listeners.
+     **/
+    public static List getHTMLParserListeners() {
+        return new ArrayList( _listeners );
+    }
+
+
+    /**
+     * Returns the configuration which a parser should honor for the specified adapter.
      **/
-    static Vector getHTMLParserListeners() {
-        return _listeners;
+    static HttpUnitConfiguration getConfiguration( DocumentAdapter adapter ) {
+        if (adapter instanceof ConfiguredDocumentAdapter) return ((ConfiguredDocumentAdapter) adapter).getConfiguration();
+        return HttpUnitConfiguration.getDefaults();
     }
 
 
@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.io.ByteArrayInputStream;
 import java.io.UnsupportedEncodingException;
 
+import com.meterware.httpunit.HttpUnitConfiguration;
 import com.meterware.httpunit.dom.HTMLDocumentImpl;
 
 
@@ -43,7 +44,7 @@ class JTidyHTMLParser implements HTMLParser {
 
     public void parse( URL pageURL, String pageText, DocumentAdapter adapter ) throws IOException, SAXException {
         try {
-            Document jtidyDocument = getParser( pageURL ).parseDOM( new ByteArrayInputStream( pageText.getBytes( UTF_ENCODING ) ), null );
+            Document jtidyDocument = getParser( pageURL, HTMLParserFactory.getConfiguration( adapter ) ).parseDOM( new ByteArrayInputStream( pageText.getBytes( UTF_ENCODING ) ), null );
             HTMLDocument htmlDocument = new HTMLDocumentImpl();
             NodeList nl = jtidyDocument.getChildNodes();
             for (int i = 0; i < nl.getLength(); i++) {
@@ -88,17 +89,18 @@ class JTidyHTMLParser implements HTMLParser {
     /**
      * get the parser of the given url
      * @param url
+     * @param configuration the parser settings to apply
      * @return the parser
      */
-    private static Tidy getParser( URL url ) {
+    private static Tidy getParser( URL url, HttpUnitConfiguration configuration ) {
         Tidy tidy = new Tidy();
         // BR 2880636 httpunit 1.7 does not work with latest Tidy release  r918
         // tidy.setCharEncoding( org.w3c.tidy.Configuration.UTF8 );
         tidy.setInputEncoding("UTF8");
         tidy.setQuiet( true );
-        tidy.setShowWarnings( HTMLParserFactory.isParserWarningsEnabled() );
-        if (!HTMLParserFactory.getHTMLParserListeners().isEmpty()) {
-            tidy.setErrout( new JTidyPrintWriter( url ) );
+        tidy.setShowWarnings( configuration.isParserWarningsEnabled() );
+        if (!configuration.getHTMLParserListeners().isEmpty()) {
+            tidy.setErrout( new JTidyPrintWriter( url, configuration.getHTMLParserListeners() ) );
         }
         return tidy;
     }
@@ -20,7 +20,8 @@ package com.meterware.httpunit.parsing;
 *
 *******************************************************************************************************************/
 import java.util.StringTokenizer;
-import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
 import java.io.PrintWriter;
 import java.net.URL;
 import java.text.DecimalFormat;
@@ -44,8 +45,14 @@ class JTidyPrintWriter extends PrintWriter {
 
 
     JTidyPrintWriter( URL pageURL ) {
+        this( pageURL, HTMLParserFactory.getHTMLParserListeners() );
+    }
+
+
+    JTidyPrintWriter( URL pageURL, List listeners ) {
         super(System.out);
         _url = pageURL;
+        _listeners = listeners;
     }
 
     public void print(boolean b) {
@@ -180,6 +187,7 @@ class JTidyPrintWriter extends PrintWriter {
     private boolean _error = false;
     private boolean _logged = false;
     private URL     _url;
+    private List    _listeners;
 
     /**
      * reports the warning or error and then resets the current error/warning.
@@ -198,17 +206,15 @@ class JTidyPrintWriter extends PrintWriter {
     }
 
     private void reportError( String msg, int line, int column ) {
-        Enumeration listeners = HTMLParserFactory.getHTMLParserListeners().elements();
-        while (listeners.hasMoreElements()) {
-            ((HTMLParserListener) listeners.nextElement()).error( _url, msg, line, column );
+        for (Iterator listeners = _listeners.iterator(); listeners.hasNext();) {
+            ((HTMLParserListener) listeners.next()).error( _url, msg, line, column );
         }
     }
 
 
     private void reportWarning( String msg, int line, int column ) {
-        Enumeration listeners = HTMLParserFactory.getHTMLParserListeners().elements();
-        while (listeners.hasMoreElements()) {
-            ((HTMLParserListener) listeners.nextElement()).warning( _url, msg, line, column );
+        for (Iterator listeners = _listeners.iterator(); listeners.hasNext();) {
+            ((HTMLParserListener) listeners.next()).warning( _url, msg, line, column );
         }
     }
 }
\ No newline at end of file
@@ -19,12 +19,15 @@ package com.meterware.httpunit.parsing;
  * DEALINGS IN THE SOFTWARE.
  *
  *******************************************************************************************************************/
+import com.meterware.httpunit.HttpUnitConfiguration;
 import com.meterware.httpunit.scripting.ScriptingHandler;
 import com.meterware.httpunit.dom.HTMLDocumentImpl;
 
 import java.net.URL;
 import java.io.IOException;
-import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 import org.cyberneko.html.HTMLConfiguration;
 import org.apache.xerces.xni.parser.XMLDocumentFilter;
@@ -61,8 +64,60 @@ class NekoDOMParser extends org.apache.xerces.parsers.DOMParser implements Scrip
     /** Attribute case settings. possible values: "upper", "lower", "no-change" */
     private static final String ATTRIBUTE_NAME_CASE = "http://cyberneko.org/html/properties/names/attrs";
 
+    /** The parsers built by each thread, keyed by the settings which affect their configuration. **/
+    private static ThreadLocal _parsers = new ThreadLocal() {
+        protected Object initialValue() {
+            return new HashMap();
+        }
+    };
+
     private DocumentAdapter _documentAdapter;
 
+    private ErrorHandler _errorHandler;
+
+    private boolean _inUse;
+
+
+    /**
+     * Returns a parser for the given adapter and url. A parser built earlier on this thread with the same settings is
+     * reused if it is not already parsing a document, as happens when a script loads another page during the parse.
+     * The parser must be released once its document has been retrieved.
+     * @param adapter
+     * @param url
+     * @return - a parser ready for the document
+     */
+    static NekoDOMParser getParser( DocumentAdapter adapter, URL url ) {
+        Map parsers = (Map) _parsers.get();
+        String key = getParserKey( HTMLParserFactory.getConfiguration( adapter ) );
+        NekoDOMParser parser = (NekoDOMParser) parsers.get( key );
+        if (parser == null || parser._inUse) {
+            parser = newParser( adapter, url );
+            if (!parsers.containsKey( key )) parsers.put( key, parser );
+        }
+        parser.startDocument( adapter, url );
+        return parser;
+    }
+
+
+    /**
+     * Returns a key which distinguishes the settings used in {@link #newParser}.
+     */
+    private static String getParserKey( HttpUnitConfiguration settings ) {
+        StringBuffer key = new StringBuffer();
+        key.append( isReportingErrors( settings ) ? 'E' : '-' );
+        key.append( settings.isScriptingEnabled() ? 'S' : '-' );
+        key.append( settings.isPreserveTagCase() ? 'P' : '-' );
+        key.append( settings.getForceUpperCase() ? 'U' : '-' );
+        key.append( settings.getForceLowerCase() ? 'L' : '-' );
+        key.append( settings.isReturnHTMLDocument() ? 'H' : '-' );
+        return key.toString();
+    }
+
+
+    private static boolean isReportingErrors( HttpUnitConfiguration settings ) {
+        return !settings.getHTMLParserListeners().isEmpty() || settings.isParserWarningsEnabled();
+    }
+
 
     /**
      * construct a new NekoDomParser with the given adapter and url
@@ -73,27 +128,30 @@ class NekoDOMParser extends org.apache.xerces.parsers.DOMParser implements Scrip
      * patch [ 1176688 ] Allow configuration of neko parser properties by James Abley
      */
     static NekoDOMParser newParser( DocumentAdapter adapter, URL url ) {
+        final HttpUnitConfiguration settings = HTMLParserFactory.getConfiguration( adapter );
         final HTMLConfiguration configuration = new HTMLConfiguration();
-        if (!HTMLParserFactory.getHTMLParserListeners().isEmpty() || HTMLParserFactory.isParserWarningsEnabled()) {
-            configuration.setErrorHandler( new ErrorHandler( url ) );
+        ErrorHandler errorHandler = null;
+        if (isReportingErrors( settings )) {
+            errorHandler = new ErrorHandler( url, settings );
+            configuration.setErrorHandler( errorHandler );
             configuration.setFeature( REPORT_ERRORS, true);
         }
         configuration.setFeature( AUGMENTATIONS, true );
-        final ScriptFilter javaScriptFilter = new ScriptFilter( configuration );
+        final ScriptFilter javaScriptFilter = new ScriptFilter( configuration, settings.isScriptingEnabled() );
         configuration.setProperty( FILTERS, new XMLDocumentFilter[] { javaScriptFilter } );
-        if (HTMLParserFactory.isPreserveTagCase()) {
+        if (settings.isPreserveTagCase()) {
           configuration.setProperty( TAG_NAME_CASE, "match" );
           configuration.setProperty( ATTRIBUTE_NAME_CASE, "no-change" );
         } else {
         	configuration.setProperty( TAG_NAME_CASE, "lower" );
         	configuration.setProperty( ATTRIBUTE_NAME_CASE, "lower" );
         	
-        	if (HTMLParserFactory.getForceUpperCase()) {
+        	if (settings.getForceUpperCase()) {
         		configuration.setProperty(TAG_NAME_CASE, "upper");
         		configuration.setProperty(ATTRIBUTE_NAME_CASE, "upper");
         	}
         	// this is the default as of patch [ 1211154 ] ... just for people who rely on patch [ 1176688 ]
-        	if (HTMLParserFactory.getForceLowerCase()) {
+        	if (settings.getForceLowerCase()) {
         		configuration.setProperty(TAG_NAME_CASE, "lower");
         		configuration.setProperty(ATTRIBUTE_NAME_CASE, "lower");
         	}
@@ -101,8 +159,9 @@ class NekoDOMParser extends org.apache.xerces.parsers.DOMParser implements Scrip
 
         try {
             final NekoDOMParser domParser = new NekoDOMParser( configuration, adapter );
+            domParser._errorHandler = errorHandler;
             domParser.setFeature( DEFER_NODE_EXPANSION, false );
-            if (HTMLParserFactory.isReturnHTMLDocument()) domParser.setProperty( DOCUMENT_CLASS_NAME, HTMLDocumentImpl.class.getName() );
+            if (settings.isReturnHTMLDocument()) domParser.setProperty( DOCUMENT_CLASS_NAME, HTMLDocumentImpl.class.getName() );
             javaScriptFilter.setScriptHandler( domParser );
             return domParser;
         } catch (SAXNotRecognizedException e) {
@@ -132,6 +191,24 @@ class NekoDOMParser extends org.apache.xerces.parsers.DOMParser implements Scrip
     }
 
 
+    private void startDocument( DocumentAdapter adapter, URL url ) {
+        _inUse = true;
+        _documentAdapter = adapter;
+        if (_errorHandler != null) _errorHandler.setDocument( url, HTMLParserFactory.getConfiguration( adapter ) );
+    }
+
+
+    /**
+     * Makes this parser available for another document, dropping its references to the last one.
+     */
+    void release() {
+        _documentAdapter = null;
+        if (_errorHandler != null) _errorHandler.setDocument( null, null );
+        reset();
+        _inUse = false;
+    }
+
+
     public String getIncludedScript( String srcAttribute ) {
         try {
             return _documentAdapter.getIncludedScript( srcAttribute );
@@ -175,27 +252,32 @@ class NekoDOMParser extends org.apache.xerces.parsers.DOMParser implements Scrip
 class ErrorHandler implements XMLErrorHandler {
 
     private URL _url = null;
+    private HttpUnitConfiguration _configuration;
+
+    ErrorHandler( URL url, HttpUnitConfiguration configuration ) {
+        setDocument( url, configuration );
+    }
+
 
-    ErrorHandler( URL url ) {
+    void setDocument( URL url, HttpUnitConfiguration configuration ) {
         _url = url;
+        _configuration = configuration;
     }
 
     public void warning( String domain, String key, XMLParseException warningException ) throws XNIException {
-        if (HTMLParserFactory.isParserWarningsEnabled()) {
+        if (_configuration.isParserWarningsEnabled()) {
             System.out.println( "At line " + warningException.getLineNumber() + ", column " + warningException.getColumnNumber() + ": " + warningException.getMessage() );
         }
 
-        Enumeration listeners = HTMLParserFactory.getHTMLParserListeners().elements();
-        while (listeners.hasMoreElements()) {
-            ((HTMLParserListener) listeners.nextElement()).warning( _url, warningException.getMessage(), warningException.getLineNumber(), warningException.getColumnNumber() );
+        for (Iterator listeners = _configuration.getHTMLParserListeners().iterator(); listeners.hasNext();) {
+            ((HTMLParserListener) listeners.next()).warning( _url, warningException.getMessage(), warningException.getLineNumber(), warningException.getColumnNumber() );
         }
     }
 
 
     public void error( String domain, String key, XMLParseException errorException ) throws XNIException {
-        Enumeration listeners = HTMLParserFactory.getHTMLParserListeners().elements();
-        while (listeners.hasMoreElements()) {
-            ((HTMLParserListener) listeners.nextElement()).error( _url, errorException.getMessage(), errorException.getLineNumber(), errorException.getColumnNumber() );
+        for (Iterator listeners = _configuration.getHTMLParserListeners().iterator(); listeners.hasNext();) {
+            ((HTMLParserListener) listeners.next()).error( _url, errorException.getMessage(), errorException.getLineNumber(), errorException.getColumnNumber() );
         }
     }
 
@@ -43,13 +43,15 @@ class NekoHTMLParser implements HTMLParser {
 	 * @param adapter
 	 */
   public void parse( URL pageURL, String pageText, DocumentAdapter adapter ) throws IOException, SAXException {
+      NekoDOMParser parser = NekoDOMParser.getParser( adapter, pageURL );
       try {
-          NekoDOMParser parser = NekoDOMParser.newParser( adapter, pageURL );
           parser.parse( new InputSource( new StringReader( pageText ) ) );
           Document doc=parser.getDocument();
          	adapter.setDocument( (HTMLDocument)doc );
       } catch (NekoDOMParser.ScriptException e) {
            throw e.getException();
+      } finally {
+          parser.release();
       }     
   }
 
@@ -20,7 +20,6 @@ package com.meterware.httpunit.parsing;
  *
  *******************************************************************************************************************/
 
-import com.meterware.httpunit.HttpUnitOptions;
 import org.apache.xerces.xni.*;
 import org.apache.xerces.xni.parser.XMLInputSource;
 import org.cyberneko.html.HTMLConfiguration;
@@ -54,10 +53,14 @@ class ScriptFilter extends DefaultFilter {
     /** The parser in which this filter is running. **/
     private ScriptHandler _scriptHandler;
 
+    /** True if scripts are to be run. **/
+    private boolean _scriptingEnabled;
+
 
     /** Constructs a script object with the specified configuration. */
-    ScriptFilter( HTMLConfiguration config ) {
+    ScriptFilter( HTMLConfiguration config, boolean scriptingEnabled ) {
         _configuration = config;
+        _scriptingEnabled = scriptingEnabled;
     }
 
 
@@ -93,7 +96,7 @@ class ScriptFilter extends DefaultFilter {
     private boolean isSupportedScript( QName element, XMLAttributes attrs ) {
         if (!element.rawname.equalsIgnoreCase( "script" ) || attrs == null) return false;
         String value = getScriptLanguage( attrs );
-        return HttpUnitOptions.isScriptingEnabled() && _scriptHandler.supportsScriptLanguage( value );
+        return _scriptingEnabled && _scriptHandler.supportsScriptLanguage( value );
     }
 
 
@@ -68,4 +68,13 @@ public class MessageBody {
      **/
     abstract
     public void writeTo( OutputStream outputStream, ParameterCollection parameters ) throws IOException;
+
+
+    /**
+     * Returns the number of bytes which writeTo will transmit for the specified parameters,
+     * or -1 if that cannot be determined without transmitting the body.
+     */
+    public long getContentLength( ParameterCollection parameters ) throws IOException {
+        return -1;
+    }
 }
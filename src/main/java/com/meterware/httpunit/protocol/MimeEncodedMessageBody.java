@@ -53,6 +53,17 @@ class MimeEncodedMessageBody extends MessageBody {
     }
 
 
+    /**
+     * Returns the length of the encoded body, which is known unless it includes a file specified only by an input stream.
+     */
+    public long getContentLength( ParameterCollection parameters ) throws IOException {
+        MimeLength length = new MimeLength( new CountingOutputStream() );
+        parameters.recordParameters( length );
+        length.sendClose();
+        return length.getLength();
+    }
+
+
     private final static String BOUNDARY = "--HttpUnit-part0-aSgQ2M";
     private final static byte[] CRLF     = { 0x0d, 0x0A };
 
@@ -131,24 +142,84 @@ class MimeEncodedMessageBody extends MessageBody {
         public void addFile( String name, UploadFileSpec spec ) throws IOException {
             byte[] buffer = new byte[ 8 * 1024 ];
 
-            writeLn( _outputStream, "--" + BOUNDARY );
-            writeLn( _outputStream, "Content-Disposition: form-data; name=\"" + encode( name ) + "\"; filename=\"" + encode( spec.getFileName() ) + '"' );   // XXX need to handle non-ascii names here
-            writeLn( _outputStream, "Content-Type: " + spec.getContentType() );
-            writeLn( _outputStream, "" );
-
+            writeFileHeader( name, spec );
             InputStream in = spec.getInputStream();
             int count = 0;
             do {
                 _outputStream.write( buffer, 0, count );
                 count = in.read( buffer, 0, buffer.length );
             } while (count != -1);
-
             in.close();
             writeLn( _outputStream, "" );
         }
 
+
+        void writeFileHeader( String name, UploadFileSpec spec ) throws IOException {
+            writeLn( _outputStream, "--" + BOUNDARY );
+            writeLn( _outputStream, "Content-Disposition: form-data; name=\"" + encode( name ) + "\"; filename=\"" + encode( spec.getFileName() ) + '"' );   // XXX need to handle non-ascii names here
+            writeLn( _outputStream, "Content-Type: " + spec.getContentType() );
+            writeLn( _outputStream, "" );
+        }
+
         private OutputStream _outputStream;
     }
 
+
+    /**
+     * Computes the length of the encoded body without reading any uploaded file.
+     */
+    class MimeLength extends MimeEncoding {
+
+        MimeLength( CountingOutputStream outputStream ) {
+            super( outputStream );
+            _counter = outputStream;
+        }
+
+
+        public void addFile( String name, UploadFileSpec spec ) throws IOException {
+            writeFileHeader( name, spec );
+            long fileLength = spec.getLength();
+            if (fileLength < 0) {
+                _unknownLength = true;
+            } else {
+                _counter.skip( fileLength );
+            }
+            writeLn( _counter, "" );
+        }
+
+
+        long getLength() {
+            return _unknownLength ? -1 : _counter.getCount();
+        }
+
+        private CountingOutputStream _counter;
+        private boolean _unknownLength;
+    }
+
+
+    static class CountingOutputStream extends OutputStream {
+
+        public void write( int b ) {
+            _count++;
+        }
+
+
+        public void write( byte[] b, int off, int len ) {
+            _count += len;
+        }
+
+
+        void skip( long count ) {
+            _count += count;
+        }
+
+
+        long getCount() {
+            return _count;
+        }
+
+        private long _count;
+    }
+
 }
 
@@ -53,6 +53,11 @@ class URLEncodedMessageBody extends MessageBody {
     }
 
 
+    public long getContentLength( ParameterCollection parameters ) {
+        return getParameterString( parameters ).getBytes().length;
+    }
+
+
     private String getParameterString( ParameterCollection parameters ) {
         try {
             URLEncodedString encoder = new URLEncodedString();
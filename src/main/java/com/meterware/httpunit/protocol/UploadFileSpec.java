@@ -78,6 +78,14 @@ public class UploadFileSpec {
     }
 
 
+    /**
+     * Returns the number of bytes to be uploaded, or -1 if the content was specified by an input stream.
+     */
+    public long getLength() {
+        return _file == null ? -1 : _file.length();
+    }
+
+
     public String getFileName() {
         if (_fileName == null) {
             _fileName = _file.getAbsolutePath();
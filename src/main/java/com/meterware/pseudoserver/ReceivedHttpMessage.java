@@ -103,8 +103,9 @@ abstract class ReceivedHttpMessage {
     private void readMessageBody( InputStream inputStream ) throws IOException {
         if ("chunked".equalsIgnoreCase( getHeader( "Transfer-Encoding" ) )) {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            while (getNextChunkLength( inputStream ) > 0) {
-                baos.write( readDelimitedChunk( inputStream ) );
+            int chunkLength;
+            while ((chunkLength = getNextChunkLength( inputStream )) > 0) {
+                baos.write( readChunk( inputStream, chunkLength ) );
             }
             flushChunkTrailer( inputStream );
             _requestBody = baos.toByteArray();
@@ -125,6 +126,22 @@ abstract class ReceivedHttpMessage {
     }
 
 
+    /**
+     * Reads a chunk of the specified length, followed by the line terminator which ends it.
+     */
+    private byte[] readChunk( InputStream inputStream, int length ) throws IOException {
+        byte[] chunk = new byte[ length ];
+        int offset = 0;
+        while (offset < length) {
+            int count = inputStream.read( chunk, offset, length - offset );
+            if (count == -1) throw new IOException( "Unexpected end of chunked message body" );
+            offset += count;
+        }
+        if (readDelimitedChunk( inputStream ).length != 0) throw new IOException( "Chunk longer than declared length " + length );
+        return chunk;
+    }
+
+
     private void flushChunkTrailer( InputStream inputStream ) throws IOException {
         byte[] line;
         do { line = readDelimitedChunk( inputStream ); } while (line.length > 0);
@@ -98,7 +98,8 @@ public class ServletUnitClient extends WebClient {
 
 
     ByteArrayOutputStream getMessageBody( WebRequest request ) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        long length = getMessageBodyLength( request );
+        ByteArrayOutputStream baos = new ByteArrayOutputStream( length > 0 && length < Integer.MAX_VALUE ? (int) length : 32 );
         writeMessageBody( request, baos );
         return baos;
     }
@@ -276,6 +276,50 @@ public class FileUploadTest extends HttpUnitTest {
         assertEquals("text/plain:message.name=temp.txt&message.lines=2", encoding.getText().trim());
     }
 
+
+    /**
+     * verify that an upload whose size is known up front is sent with a matching Content-Length header
+     */
+    @Test
+    public void testFileUploadSentWithContentLength() throws Exception {
+        File file = createFile("temp.txt", "Not much text\nBut two lines\n".getBytes());
+
+        defineResource("Length", new BodyLengthEcho());
+        WebConversation wc = new WebConversation();
+        PostMethodWebRequest formSubmit = new PostMethodWebRequest(getHostPath() + "/Length", /* mime-encoded */ true);
+        formSubmit.setParameter("update", "age");
+        formSubmit.selectFile("message", file);
+        WebResponse response = wc.getResponse(formSubmit);
+        String[] values = response.getText().trim().split(":");
+        assertEquals("Content-Length header", values[1], values[0]);
+        assertEquals("Transfer-Encoding header", "null", values[2]);
+
+        file.delete();
+    }
+
+
+    /**
+     * verify that an upload read from a stream of unknown size is sent chunked
+     */
+    @Test
+    public void testStreamUploadSentChunked() throws Exception {
+        ByteArrayInputStream bais = new ByteArrayInputStream("Not much text\nBut two lines\n".getBytes());
+
+        defineResource("Length", new BodyLengthEcho());
+        defineResource("ListParams", new MimeEcho());
+        WebConversation wc = new WebConversation();
+        PostMethodWebRequest formSubmit = new PostMethodWebRequest(getHostPath() + "/Length", /* mime-encoded */ true);
+        formSubmit.selectFile("message", "temp.txt", bais, "text/plain");
+        String[] values = wc.getResponse(formSubmit).getText().trim().split(":");
+        assertEquals("Content-Length header", "null", values[0]);
+        assertEquals("Transfer-Encoding header", "chunked", values[2]);
+
+        bais = new ByteArrayInputStream("Not much text\nBut two lines\n".getBytes());
+        formSubmit = new PostMethodWebRequest(getHostPath() + "/ListParams", /* mime-encoded */ true);
+        formSubmit.selectFile("message", "temp.txt", bais, "text/plain");
+        assertEquals("text/plain:message.name=temp.txt&message.lines=2", wc.getResponse(formSubmit).getText().trim());
+    }
+
     /**
      * test the file content type for a given file
      *
@@ -510,3 +554,10 @@ class MimeEcho extends PseudoServlet {
 }
 
  	  	 
+
+
+class BodyLengthEcho extends PseudoServlet {
+    public WebResource getPostResponse() {
+        return new WebResource(getHeader("Content-Length") + ":" + getBody().length + ":" + getHeader("Transfer-Encoding"), "text/plain");
+    }
+}
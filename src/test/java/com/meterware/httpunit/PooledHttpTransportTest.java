@@ -0,0 +1,282 @@
+package com.meterware.httpunit;
+/********************************************************************************************************************
+ * $Id$
+ * $URL$*
+ *
+ * Copyright (c) 2026 Russell Gold
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ *******************************************************************************************************************/
+
+
+import com.meterware.pseudoserver.PseudoServlet;
+import com.meterware.pseudoserver.WebResource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the keep-alive connection pool.
+ */
+public class PooledHttpTransportTest extends HttpUnitTest {
+
+    private PooledHttpTransport _transport;
+    private WebConversation _wc;
+
+
+    @Before
+    public void setUpTransport() throws Exception {
+        _transport = new PooledHttpTransport();
+        _wc = new WebConversation();
+        _wc.setTransport( _transport );
+    }
+
+
+    @Test
+    public void testConnectionReuse() throws Exception {
+        defineResource( "first.html", "<html><body>first</body></html>" );
+        defineResource( "second.html", "<html><body>second</body></html>" );
+
+        assertEquals( "first page", "<html><body>first</body></html>", _wc.getResponse( getHostPath() + "/first.html" ).getText() );
+        assertEquals( "second page", "<html><body>second</body></html>", _wc.getResponse( getHostPath() + "/second.html" ).getText() );
+
+        PooledHttpTransport.Statistics statistics = _transport.getStatistics();
+        assertEquals( "connections opened", 1, statistics.getConnectionsOpened() );
+        assertEquals( "connections reused", 1, statistics.getConnectionsReused() );
+        assertEquals( "idle connections", 1, statistics.getIdleConnections() );
+        assertEquals( "leased connections", 0, statistics.getLeasedConnections() );
+    }
+
+
+    @Test
+    public void testChunkedResponse() throws Exception {
+        defineResource( "chunked.txt", new PseudoServlet() {
+            public WebResource getGetResponse() {
+                WebResource resource = new WebResource( "5\r\nHello\r\n7\r\n World!\r\n0\r\n\r\n", "text/plain" );
+                resource.addHeader( "Transfer-Encoding: chunked" );
+                return resource;
+            }
+        } );
+        defineResource( "after.txt", "after", "text/plain" );
+
+        assertEquals( "chunked body", "Hello World!", _wc.getResponse( getHostPath() + "/chunked.txt" ).getText() );
+        assertEquals( "next body", "after", _wc.getResponse( getHostPath() + "/after.txt" ).getText() );
+        assertEquals( "connections opened", 1, _transport.getStatistics().getConnectionsOpened() );
+    }
+
+
+    @Test
+    public void testConnectionClosedByServer() throws Exception {
+        defineResource( "closing.txt", "closing", "text/plain" );
+        addResourceHeader( "closing.txt", "Connection: close" );
+        defineResource( "after.txt", "after", "text/plain" );
+
+        assertEquals( "closing body", "closing", _wc.getResponse( getHostPath() + "/closing.txt" ).getText() );
+        assertEquals( "next body", "after", _wc.getResponse( getHostPath() + "/after.txt" ).getText() );
+
+        PooledHttpTransport.Statistics statistics = _transport.getStatistics();
+        assertEquals( "connections opened", 2, statistics.getConnectionsOpened() );
+        assertEquals( "connections closed", 1, statistics.getConnectionsClosed() );
+    }
+
+
+    @Test
+    public void testPostRequest() throws Exception {
+        defineResource( "sum", new PseudoServlet() {
+            public WebResource getPostResponse() {
+                return new WebResource( "sum=" + (Integer.parseInt( getParameter( "a" )[0] ) + Integer.parseInt( getParameter( "b" )[0] )), "text/plain" );
+            }
+        } );
+        WebRequest request = new PostMethodWebRequest( getHostPath() + "/sum" );
+        request.setParameter( "a", "3" );
+        request.setParameter( "b", "4" );
+
+        assertEquals( "first sum", "sum=7", _wc.getResponse( request ).getText() );
+        assertEquals( "second sum", "sum=7", _wc.getResponse( request ).getText() );
+        assertEquals( "connections reused", 1, _transport.getStatistics().getConnectionsReused() );
+    }
+
+
+    @Test
+    public void testErrorResponse() throws Exception {
+        defineResource( "after.txt", "after", "text/plain" );
+        try {
+            _wc.getResponse( getHostPath() + "/nothing.htm" );
+            fail( "Should have rejected the request" );
+        } catch (HttpNotFoundException e) {
+            assertEquals( "Response code", HttpURLConnection.HTTP_NOT_FOUND, e.getResponseCode() );
+            assertEquals( "Response message", "unable to find /nothing.htm", e.getResponseMessage() );
+        }
+        assertEquals( "next body", "after", _wc.getResponse( getHostPath() + "/after.txt" ).getText() );
+        assertEquals( "leased connections", 0, _transport.getStatistics().getLeasedConnections() );
+    }
+
+
+    /**
+     * verify that a GET which fails on a connection closed by the server is resent, but a POST is not
+     */
+    @Test
+    public void testOnlyRequestsWithoutBodiesResent() throws Exception {
+        ClosingServer server = new ClosingServer();
+        try {
+            String url = "http://localhost:" + server.getPort() + "/page";
+            assertEquals( "first body", "ok", _wc.getResponse( url ).getText() );
+            assertEquals( "second body", "ok", _wc.getResponse( url ).getText() );
+            assertEquals( "GET requests received", 2, server.getNumRequests( "GET" ) );
+
+            WebRequest request = new PostMethodWebRequest( url );
+            request.setParameter( "a", "3" );
+            try {
+                _wc.getResponse( request );
+                fail( "Should not have resent the POST request" );
+            } catch (IOException e) {
+                assertEquals( "POST requests received", 0, server.getNumRequests( "POST" ) );
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+
+    /**
+     * verify that a request fails, rather than waiting forever, when an unread response holds the only connection
+     */
+    @Test(timeout = 20000)
+    public void testLeaseTimeout() throws Exception {
+        defineResource( "page.txt", "page", "text/plain" );
+        _transport.setMaxConnectionsPerRoute( 1 );
+        _transport.setLeaseTimeout( 100 );
+        WebRequest request = new GetMethodWebRequest( getHostPath() + "/page.txt" );
+        HttpTransportResponse unread = _transport.send( _wc, request, request.getURL(), new WebClient.HeaderDictionary() );
+        try {
+            _wc.getResponse( request );
+            fail( "Should have timed out waiting for a connection" );
+        } catch (IOException e) {
+            assertTrue( "Unexpected message: " + e.getMessage(), e.getMessage().indexOf( "Timed out" ) >= 0 );
+        }
+
+        unread.getInputStream().close();
+        assertEquals( "body after release", "page", _wc.getResponse( request ).getText() );
+    }
+
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        defineResource( "page.txt", "page", "text/plain" );
+        _transport.setIdleTimeout( 1 );
+
+        _wc.getResponse( getHostPath() + "/page.txt" );
+        Thread.sleep( 20 );
+        _wc.getResponse( getHostPath() + "/page.txt" );
+
+        PooledHttpTransport.Statistics statistics = _transport.getStatistics();
+        assertEquals( "connections opened", 2, statistics.getConnectionsOpened() );
+        assertEquals( "connections reused", 0, statistics.getConnectionsReused() );
+
+        _transport.closeIdleConnections();
+        assertEquals( "idle connections", 0, _transport.getStatistics().getIdleConnections() );
+    }
+
+
+    @Test
+    public void testProxyServerAccess() throws Exception {
+        defineResource( "http://someserver.com/sample", "Get this", "text/plain" );
+        _wc.setProxyServer( "localhost", getHostPort() );
+
+        assertEquals( "first response", "Get this", _wc.getResponse( "http://someserver.com/sample" ).getText().trim() );
+        assertEquals( "second response", "Get this", _wc.getResponse( "http://someserver.com/sample" ).getText().trim() );
+        assertEquals( "connections opened", 1, _transport.getStatistics().getConnectionsOpened() );
+    }
+
+
+    /**
+     * A server which answers each request with a keep-alive response, and then closes the connection.
+     */
+    static class ClosingServer implements Runnable {
+
+        private ServerSocket _serverSocket = new ServerSocket( 0 );
+        private List _methods = Collections.synchronizedList( new ArrayList() );
+
+
+        ClosingServer() throws IOException {
+            Thread thread = new Thread( this );
+            thread.setDaemon( true );
+            thread.start();
+        }
+
+
+        int getPort() {
+            return _serverSocket.getLocalPort();
+        }
+
+
+        int getNumRequests( String method ) {
+            return Collections.frequency( _methods, method );
+        }
+
+
+        void close() throws IOException {
+            _serverSocket.close();
+        }
+
+
+        public void run() {
+            try {
+                while (true) {
+                    Socket socket = _serverSocket.accept();
+                    try {
+                        answer( socket );
+                    } catch (IOException e) {
+                        // the client gave up on this connection; wait for the next one
+                    } finally {
+                        socket.close();
+                    }
+                }
+            } catch (IOException e) {
+                // the server socket has been closed
+            }
+        }
+
+
+        private void answer( Socket socket ) throws IOException {
+            BufferedReader reader = new BufferedReader( new InputStreamReader( socket.getInputStream(), "iso-8859-1" ) );
+            String requestLine = reader.readLine();
+            int contentLength = 0;
+            for (String line = reader.readLine(); line != null && line.length() > 0; line = reader.readLine()) {
+                if (line.toLowerCase().startsWith( "content-length:" )) contentLength = Integer.parseInt( line.substring( 15 ).trim() );
+            }
+            for (int i = 0; i < contentLength; i++) reader.read();
+            _methods.add( requestLine.substring( 0, requestLine.indexOf( ' ' ) ) );
+
+            OutputStream output = socket.getOutputStream();
+            output.write( "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 2\r\n\r\nok".getBytes( "iso-8859-1" ) );
+            output.flush();
+        }
+    }
+}
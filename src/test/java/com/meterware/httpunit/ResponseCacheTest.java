@@ -0,0 +1,172 @@
+package com.meterware.httpunit;
+/********************************************************************************************************************
+ * $Id$
+ *
+ * Copyright (c) 2026, Russell Gold
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ *******************************************************************************************************************/
+
+
+import com.meterware.pseudoserver.PseudoServlet;
+import com.meterware.pseudoserver.WebResource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the client-side response cache.
+ */
+public class ResponseCacheTest extends HttpUnitTest {
+
+    private WebConversation _wc;
+
+
+    @Before
+    public void setUpCache() throws Exception {
+        _wc = new WebConversation();
+        _wc.setResponseCache(new ResponseCache(1024));
+    }
+
+
+    @Test
+    public void testFreshResponseReused() throws Exception {
+        CountingServlet servlet = new CountingServlet("Cache-Control: max-age=60");
+        defineResource("script.js", servlet);
+
+        assertEquals("first body", "contents", _wc.getResource(new GetMethodWebRequest(getHostPath() + "/script.js")).getText());
+        assertEquals("second body", "contents", _wc.getResource(new GetMethodWebRequest(getHostPath() + "/script.js")).getText());
+        assertEquals("requests received", 1, servlet.getNumRequests());
+        assertEquals("cached bytes", "contents".length(), _wc.getResponseCache().getSize());
+    }
+
+
+    @Test
+    public void testRevalidatedResponseReused() throws Exception {
+        CountingServlet servlet = new CountingServlet("ETag: \"v1\"");
+        defineResource("script.js", servlet);
+
+        assertEquals("first body", "contents", _wc.getResource(new GetMethodWebRequest(getHostPath() + "/script.js")).getText());
+        WebResponse response = _wc.getResource(new GetMethodWebRequest(getHostPath() + "/script.js"));
+        assertEquals("response code", HttpURLConnection.HTTP_OK, response.getResponseCode());
+        assertEquals("second body", "contents", response.getText());
+        assertEquals("requests received", 2, servlet.getNumRequests());
+        assertEquals("conditional requests received", 1, servlet.getNumNotModified());
+    }
+
+
+    @Test
+    public void testUncacheableResponse() throws Exception {
+        CountingServlet servlet = new CountingServlet("Cache-Control: no-store");
+        defineResource("script.js", servlet);
+
+        _wc.getResource(new GetMethodWebRequest(getHostPath() + "/script.js"));
+        _wc.getResource(new GetMethodWebRequest(getHostPath() + "/script.js"));
+        assertEquals("requests received", 2, servlet.getNumRequests());
+        assertEquals("cached responses", 0, _wc.getResponseCache().getEntryCount());
+    }
+
+
+    @Test
+    public void testPrivateResponseNotStored() throws Exception {
+        CountingServlet servlet = new CountingServlet("Cache-Control: private, max-age=60");
+        defineResource("script.js", servlet);
+
+        _wc.getResource(new GetMethodWebRequest(getHostPath() + "/script.js"));
+        _wc.getResource(new GetMethodWebRequest(getHostPath() + "/script.js"));
+        assertEquals("requests received", 2, servlet.getNumRequests());
+        assertEquals("cached responses", 0, _wc.getResponseCache().getEntryCount());
+    }
+
+
+    @Test
+    public void testResponseNotSharedBetweenUsers() throws Exception {
+        defineResource("account.js", new PseudoServlet() {
+            public WebResource getGetResponse() {
+                WebResource resource = new WebResource("user " + getHeader("Authorization"), "text/javascript");
+                resource.addHeader("Cache-Control: max-age=60");
+                return resource;
+            }
+        });
+        WebConversation other = new WebConversation();
+        other.setResponseCache(_wc.getResponseCache());
+        _wc.setAuthorization("alice", "secret");
+        other.setAuthorization("bob", "secret");
+
+        String first = _wc.getResource(new GetMethodWebRequest(getHostPath() + "/account.js")).getText();
+        String second = other.getResource(new GetMethodWebRequest(getHostPath() + "/account.js")).getText();
+        assertFalse("Second client received the first client's response", first.equals(second));
+        assertEquals("cached responses", 2, _wc.getResponseCache().getEntryCount());
+        assertEquals("reused response", first, _wc.getResource(new GetMethodWebRequest(getHostPath() + "/account.js")).getText());
+    }
+
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        _wc.setResponseCache(new ResponseCache(12));
+        defineResource("first.js", new CountingServlet("Cache-Control: max-age=60"));
+        defineResource("second.js", new CountingServlet("Cache-Control: max-age=60"));
+
+        _wc.getResource(new GetMethodWebRequest(getHostPath() + "/first.js"));
+        _wc.getResource(new GetMethodWebRequest(getHostPath() + "/second.js"));
+        assertEquals("cached responses", 1, _wc.getResponseCache().getEntryCount());
+        assertEquals("cached bytes", "contents".length(), _wc.getResponseCache().getSize());
+    }
+
+
+    /**
+     * A servlet which returns a fixed body with the specified header, and answers requests
+     * which carry its ETag with "not modified".
+     */
+    static class CountingServlet extends PseudoServlet {
+
+        private String _header;
+        private int _numRequests;
+        private int _numNotModified;
+
+
+        CountingServlet(String header) {
+            _header = header;
+        }
+
+
+        int getNumRequests() {
+            return _numRequests;
+        }
+
+
+        int getNumNotModified() {
+            return _numNotModified;
+        }
+
+
+        public WebResource getGetResponse() {
+            _numRequests++;
+            if (_header.startsWith("ETag") && _header.endsWith(": " + getHeader("If-None-Match"))) {
+                _numNotModified++;
+                return new WebResource("", HttpURLConnection.HTTP_NOT_MODIFIED);
+            }
+            WebResource resource = new WebResource("contents", "text/javascript");
+            resource.addHeader(_header);
+            return resource;
+        }
+    }
+
+}
@@ -27,19 +27,33 @@ import com.meterware.pseudoserver.WebResource;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Dictionary;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.*;
@@ -1293,4 +1307,342 @@ public class WebClientTest extends HttpUnitTest {
         assertEquals("content type", contentType, response.getContentType());
     }
 
+
+    /**
+     * verify that a configuration captures the defaults in effect when it is created
+     */
+    @Test
+    public void testConfigurationIsSnapshotOfDefaults() throws Exception {
+        HttpUnitConfiguration configuration = HttpUnitConfiguration.fromDefaults();
+        HttpUnitOptions.setDefaultContentType("text/plain");
+        HttpUnitOptions.setRedirectDelay(100);
+
+        assertEquals("default content type", "text/html", configuration.getDefaultContentType());
+        assertEquals("redirect delay", 0, configuration.getRedirectDelay());
+        assertEquals("derived redirect delay", 50, configuration.withRedirectDelay(50).getRedirectDelay());
+        assertEquals("original redirect delay", 0, configuration.getRedirectDelay());
+        assertEquals("live default content type", "text/plain", new WebConversation().getClientProperties().getConfiguration().getDefaultContentType());
+    }
+
+
+    /**
+     * verify that a client without its own configuration follows later changes to the defaults
+     */
+    @Test
+    public void testDefaultConfigurationFollowsOptions() throws Exception {
+        ClientProperties properties = new WebConversation().getClientProperties();
+        HttpUnitConfiguration configuration = properties.getConfiguration();
+        HttpUnitOptions.setRedirectDelay(100);
+
+        assertSame("configuration rebuilt", configuration, properties.getConfiguration());
+        assertEquals("redirect delay", 100, configuration.getRedirectDelay());
+    }
+
+
+    /**
+     * verify that clients with different configurations can be used side by side
+     */
+    @Test
+    public void testPerClientConfiguration() throws Exception {
+        defineResource("scripted.html", "<html><body>"
+                + "<script language='JavaScript'>document.write( '<a href=scripted>scripted</a>' );</script>"
+                + "<noscript><a href=plain>plain</a></noscript>"
+                + "</body></html>");
+        WebConversation scripted = new WebConversation();
+        WebConversation plain = new WebConversation();
+        plain.getClientProperties().setConfiguration(HttpUnitConfiguration.fromDefaults().withScriptingEnabled(false));
+
+        WebResponse plainResponse = plain.getResponse(getHostPath() + "/scripted.html");
+        WebResponse scriptedResponse = scripted.getResponse(getHostPath() + "/scripted.html");
+
+        assertNotNull("Did not find scripted link", scriptedResponse.getLinkWith("scripted"));
+        assertNotNull("Did not find noscript link", plainResponse.getLinkWith("plain"));
+        assertNull("Found scripted link with scripting disabled", plainResponse.getLinkWith("scripted"));
+    }
+
+
+    /**
+     * verify that a body declared to be empty is not read, even if the stream holds further bytes,
+     * such as those of a following response on a keep-alive connection
+     */
+    @Test
+    public void testEmptyBodyNotRead() throws Exception {
+        WebConversation wc = new WebConversation();
+        wc.setTransport(new StubTransport(new ByteArrayInputStream("HTTP/1.1 200 OK".getBytes()),
+                new String[]{"Content-Type", "text/plain", "Content-Length", "0"}));
+
+        assertEquals("body", "", wc.getResponse(getHostPath() + "/empty.txt").getText());
+    }
+
+
+    /**
+     * verify that a client refuses to buffer a body larger than its maximum response size
+     */
+    @Test
+    public void testMaxResponseSize() throws Exception {
+        defineResource("small.txt", "short", "text/plain");
+        WebConversation wc = new WebConversation();
+        wc.getClientProperties().setMaxResponseSize(10);
+        assertEquals("small body", "short", wc.getResponse(getHostPath() + "/small.txt").getText());
+
+        CountingInputStream declared = new CountingInputStream(1000, 1000);
+        wc.setTransport(new StubTransport(declared, new String[]{"Content-Type", "text/plain", "Content-Length", "1000"}));
+        try {
+            wc.getResponse(getHostPath() + "/declared.txt").getText();
+            fail("Should have rejected the declared length");
+        } catch (IOException e) {
+            assertTrue("Unexpected message: " + e.getMessage(), e.getMessage().indexOf("Content length: 1000") >= 0);
+            assertEquals("bytes read", 0, declared.getNumBytesRead());
+        }
+
+        CountingInputStream undeclared = new CountingInputStream(1000, 4);
+        wc.setTransport(new StubTransport(undeclared, new String[]{"Content-Type", "text/plain"}));
+        try {
+            wc.getResponse(getHostPath() + "/undeclared.txt").getText();
+            fail("Should have rejected the large response");
+        } catch (IOException e) {
+            assertTrue("Unexpected message: " + e.getMessage(), e.getMessage().indexOf("Maximum length: 10") >= 0);
+            assertEquals("bytes read", 12, undeclared.getNumBytesRead());
+        }
+    }
+
+
+    /**
+     * verify that a body larger than the in-memory limit is still fully available
+     */
+    @Test
+    public void testLargeResponseKeptOutOfMemory() throws Exception {
+        String body = "<html><head><title>Spilled</title></head><body>This body is rather longer than the limit</body></html>";
+        defineResource("large.html", body);
+        WebConversation wc = new WebConversation();
+        wc.getClientProperties().setMaxInMemoryResponseSize(16);
+
+        WebResponse response = wc.getResponse(getHostPath() + "/large.html");
+        assertEquals("stream contents", body, readAll(response.getInputStream()));
+        assertEquals("bytes", body, new String(response.getBytes()));
+        assertEquals("text", body, response.getText());
+        assertEquals("title", "Spilled", response.getTitle());
+    }
+
+
+    /**
+     * verify that the temporary file for a body is removed if the body cannot be read completely
+     */
+    @Test
+    public void testRejectedLargeResponseLeavesNoFile() throws Exception {
+        final byte[] text = new byte[20000];
+        Arrays.fill(text, (byte) 'x');
+        defineResource("large.txt", new PseudoServlet() {
+            public WebResource getGetResponse() {
+                return new WebResource(new ByteArrayInputStream(text), "text/plain", HttpURLConnection.HTTP_OK);
+            }
+        });
+        WebConversation wc = new WebConversation();
+        wc.getClientProperties().setMaxInMemoryResponseSize(16);
+        wc.getClientProperties().setMaxResponseSize(10000);
+
+        Set filesBefore = getBodyFileNames();
+        try {
+            wc.getResponse(getHostPath() + "/large.txt");
+            fail("Should have rejected the large response");
+        } catch (IOException e) {
+            Set newFiles = getBodyFileNames();
+            newFiles.removeAll(filesBefore);
+            assertTrue("body files left behind: " + newFiles, newFiles.isEmpty());
+        }
+    }
+
+
+    private Set getBodyFileNames() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith("httpunit") && name.endsWith(".body");
+            }
+        });
+        Set result = new HashSet();
+        for (int i = 0; names != null && i < names.length; i++) result.add(names[i]);
+        return result;
+    }
+
+
+    /**
+     * verify that a streaming response is read from the connection only when requested
+     */
+    @Test(timeout = 20000)
+    public void testStreamingResponse() throws Exception {
+        defineResource("streamed.txt", "streamed contents", "text/plain");
+        defineResource("parsed.html", "<html><head><title>Parsed</title></head></html>");
+        WebConversation wc = new WebConversation();
+        wc.getClientProperties().setStreamingResponses(true);
+
+        assertEquals("stream contents", "streamed contents", readAll(wc.getResponse(getHostPath() + "/streamed.txt").getInputStream()));
+        assertEquals("title", "Parsed", wc.getResponse(getHostPath() + "/parsed.html").getTitle());
+
+        final ServerSocket serverSocket = new ServerSocket(0);
+        final CountDownLatch bodyReleased = new CountDownLatch(1);
+        Thread server = new Thread() {
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "iso-8859-1"));
+                    for (String line = reader.readLine(); line != null && line.length() > 0; line = reader.readLine()) {
+                        // skip the request headers
+                    }
+                    OutputStream output = socket.getOutputStream();
+                    output.write("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nConnection: close\r\n\r\nbegun ".getBytes("iso-8859-1"));
+                    output.flush();
+                    bodyReleased.await();
+                    output.write("and finished".getBytes("iso-8859-1"));
+                    socket.close();
+                } catch (Exception e) {
+                    // the test has given up on the response
+                }
+            }
+        };
+        server.setDaemon(true);
+        server.start();
+        try {
+            WebResponse response = wc.getResponse("http://localhost:" + serverSocket.getLocalPort() + "/held.txt");
+            assertTrue("Server finished the body before it was read", server.isAlive());
+            bodyReleased.countDown();
+            assertEquals("held contents", "begun and finished", readAll(response.getInputStream()));
+        } finally {
+            bodyReleased.countDown();
+            serverSocket.close();
+        }
+    }
+
+
+    /**
+     * verify that several resources may be requested at once, that each request carries the cookies of the client,
+     * and that their responses are returned when complete
+     */
+    @Test
+    public void testAsynchronousRequests() throws Exception {
+        final int numRequests = 6;
+        for (int i = 0; i < numRequests; i++) {
+            final String contents = "contents of page " + i;
+            defineResource("page" + i + ".txt", new PseudoServlet() {
+                public WebResource getGetResponse() {
+                    return new WebResource(contents + "; cookie " + getHeader("Cookie"), "text/plain");
+                }
+            });
+        }
+        WebConversation wc = new WebConversation();
+        wc.putCookie("shared", "value");
+
+        Future[] futures = new Future[numRequests];
+        for (int i = 0; i < numRequests; i++) {
+            futures[i] = wc.getResourceAsync(new GetMethodWebRequest(getHostPath() + "/page" + i + ".txt"));
+        }
+        for (int i = 0; i < numRequests; i++) {
+            assertEquals("page " + i, "contents of page " + i + "; cookie shared=value", ((WebResponse) futures[i].get()).getText());
+        }
+    }
+
+
+    /**
+     * verify that asynchronous requests run on the executor specified for the client, and report failures
+     * when the result is requested
+     */
+    @Test
+    public void testAsynchronousRequestExecutor() throws Exception {
+        final List executed = new ArrayList();
+        WebConversation wc = new WebConversation();
+        wc.setExecutor(new Executor() {
+            public void execute(Runnable command) {
+                executed.add(command);
+                command.run();
+            }
+        });
+
+        defineResource("page.txt", "contents", "text/plain");
+        assertEquals("contents", "contents", ((WebResponse) wc.getResourceAsync(new GetMethodWebRequest(getHostPath() + "/page.txt")).get()).getText());
+        assertEquals("number of executed requests", 1, executed.size());
+
+        wc.getClientProperties().setMaxResponseSize(4);
+        Future future = wc.getResourceAsync(new GetMethodWebRequest(getHostPath() + "/page.txt"));
+        try {
+            future.get();
+            fail("Should have reported the oversized response");
+        } catch (ExecutionException e) {
+            assertTrue("Reported " + e.getCause(), e.getCause() instanceof IOException);
+        }
+    }
+
+
+    /**
+     * A transport which answers every request with the same headers and body.
+     */
+    private static class StubTransport implements HttpTransport {
+
+        private InputStream _body;
+        private String[] _headers;
+
+        /**
+         * @param headers alternating header names and values
+         */
+        StubTransport(InputStream body, String[] headers) {
+            _body = body;
+            _headers = headers;
+        }
+
+        public HttpTransportResponse send(WebConversation client, WebRequest request, URL url, Dictionary headers) {
+            return new HttpTransportResponse() {
+                public int getResponseCode() { return HttpURLConnection.HTTP_OK; }
+                public String getResponseMessage() { return "OK"; }
+                public String getStatusLine() { return "HTTP/1.1 200 OK"; }
+                public int getHeaderFieldCount() { return _headers.length / 2; }
+                public String getHeaderFieldKey(int index) { return _headers[2 * index]; }
+                public String getHeaderField(int index) { return _headers[2 * index + 1]; }
+                public String getContentType() { return "text/plain"; }
+                public InputStream getInputStream() { return _body; }
+            };
+        }
+    }
+
+
+    /**
+     * A stream of the specified length, which returns at most the specified number of bytes from each read
+     * and counts the bytes read.
+     */
+    private static class CountingInputStream extends InputStream {
+
+        private int _length;
+        private int _maxBytesPerRead;
+        private int _numBytesRead;
+
+        CountingInputStream(int length, int maxBytesPerRead) {
+            _length = length;
+            _maxBytesPerRead = maxBytesPerRead;
+        }
+
+        int getNumBytesRead() {
+            return _numBytesRead;
+        }
+
+        public int read() {
+            if (_numBytesRead >= _length) return -1;
+            _numBytesRead++;
+            return 'x';
+        }
+
+        public int read(byte[] b, int off, int len) {
+            if (_numBytesRead >= _length) return -1;
+            int count = Math.min(len, Math.min(_maxBytesPerRead, _length - _numBytesRead));
+            Arrays.fill(b, off, off + count, (byte) 'x');
+            _numBytesRead += count;
+            return count;
+        }
+    }
+
+
+    private String readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) outputStream.write(buffer, 0, count);
+        return new String(outputStream.toByteArray());
+    }
+
 }
@@ -20,10 +20,14 @@ package com.meterware.httpunit;
  *
  *******************************************************************************************************************/
 
+import com.meterware.pseudoserver.PseudoServlet;
+import com.meterware.pseudoserver.WebResource;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.net.HttpURLConnection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -689,5 +693,122 @@ public class WebFrameTest extends HttpUnitTest {
     }
 
 
+    /**
+     * Verifies that the frames of a frameset may be requested concurrently, and are still placed in document order.
+     */
+    @Test
+    public void testParallelFrameLoading() throws Exception {
+        final int numFrames = 3;
+        StringBuffer frameset = new StringBuffer("<html><head><frameset>");
+        FrameServlet.reset();
+        for (int i = 0; i < numFrames; i++) {
+            frameset.append("<frame name='frame").append(i).append("' src='frame").append(i).append(".html'>");
+            defineResource("frame" + i + ".html", new FrameServlet(numFrames, "Frame " + i));
+        }
+        defineResource("Frames.html", frameset.append("</frameset></html>").toString());
+
+        _wc.getClientProperties().setMaxParallelFrameRequests(numFrames);
+        _wc.getResponse(getHostPath() + "/Frames.html");
+        assertEquals("Number of frames requested at once", numFrames, FrameServlet.getMaxConcurrentRequests());
+        for (int i = 0; i < numFrames; i++) {
+            assertEquals("Title of frame " + i, "Frame " + i, _wc.getFrameContents("frame" + i).getTitle());
+        }
+    }
+
+
+    /**
+     * Verifies that frames requested concurrently through a DNS override are each sent their own Host header.
+     */
+    @Test
+    public void testParallelFrameLoadingWithDnsOverride() throws Exception {
+        final int numFrames = 2;
+        final CountDownLatch lookups = new CountDownLatch(numFrames);
+        StringBuffer frameset = new StringBuffer("<html><head><frameset>");
+        for (int i = 0; i < numFrames; i++) {
+            frameset.append("<frame name='frame").append(i).append("' src='http://host").append(i).append(".test:")
+                    .append(getHostPort()).append("/whereAmI'>");
+        }
+        defineResource("Frames.html", frameset.append("</frameset></html>").toString());
+        defineResource("whereAmI", new PseudoServlet() {
+            public WebResource getGetResponse() {
+                return new WebResource("<html><head><title>" + getHeader("Host") + "</title></head></html>");
+            }
+        });
+
+        PooledHttpTransport transport = new PooledHttpTransport();   // URLConnection does not send a Host header
+        _wc.setTransport(transport);
+        _wc.getClientProperties().setMaxParallelFrameRequests(numFrames);
+        _wc.getClientProperties().setDnsListener(new DNSListener() {
+            public String getIpAddress(String hostName) {
+                if (hostName.endsWith(".test")) {
+                    lookups.countDown();
+                    try {
+                        lookups.await(2, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return "127.0.0.1";
+            }
+        });
+        try {
+            _wc.getResponse(getHostPath() + "/Frames.html");
+            for (int i = 0; i < numFrames; i++) {
+                assertEquals("Host sent for frame " + i, "host" + i + ".test:" + getHostPort(), _wc.getFrameContents("frame" + i).getTitle());
+            }
+        } finally {
+            transport.closeIdleConnections();
+        }
+    }
+
+
+    /**
+     * A servlet which holds each request until the expected number of requests are in progress at once,
+     * or a time limit is reached.
+     */
+    static class FrameServlet extends PseudoServlet {
+
+        private static final long MAX_WAIT = 2000;
+        private static int _concurrentRequests;
+        private static int _maxConcurrentRequests;
+
+        private int _numExpected;
+        private String _title;
+
+
+        FrameServlet(int numExpected, String title) {
+            _numExpected = numExpected;
+            _title = title;
+        }
+
+
+        static synchronized void reset() {
+            _concurrentRequests = _maxConcurrentRequests = 0;
+        }
+
+
+        static synchronized int getMaxConcurrentRequests() {
+            return _maxConcurrentRequests;
+        }
+
+
+        public WebResource getGetResponse() {
+            synchronized (FrameServlet.class) {
+                _maxConcurrentRequests = Math.max(_maxConcurrentRequests, ++_concurrentRequests);
+                FrameServlet.class.notifyAll();
+                long deadline = System.currentTimeMillis() + MAX_WAIT;
+                try {
+                    while (_maxConcurrentRequests < _numExpected && System.currentTimeMillis() < deadline) {
+                        FrameServlet.class.wait(deadline - System.currentTimeMillis());
+                    }
+                } catch (InterruptedException e) {
+                }
+                _concurrentRequests--;
+            }
+            return new WebResource("<html><head><title>" + _title + "</title></head></html>");
+        }
+    }
+
+
     private WebConversation _wc;
 }
@@ -70,6 +70,25 @@ public class WebPageTest extends HttpUnitTest {
         }
     }
 
+
+    /**
+     * verify that a proxy server applies only to the conversation for which it was specified
+     */
+    @Test
+    public void testProxyServerIsPerConversation() throws Exception {
+        defineResource("http://someserver.com/sample", "Get this", "text/plain");
+        String originalProxyHost = System.getProperty("proxyHost");
+        WebConversation proxied = new WebConversation();
+        WebConversation direct = new WebConversation();
+        proxied.setProxyServer("localhost", getHostPort());
+
+        assertEquals("Expected text", "Get this", proxied.getResponse("http://someserver.com/sample").getText().trim());
+        assertEquals("proxied host", "localhost", proxied.getProxyHost());
+        assertEquals("proxied port", getHostPort(), proxied.getProxyPort());
+        assertEquals("direct host", originalProxyHost, direct.getProxyHost());
+        assertEquals("JVM proxy host", originalProxyHost, System.getProperty("proxyHost"));
+    }
+
     /**
      * check the valid contentTypes
      * modified for bug report
@@ -496,29 +515,49 @@ public class WebPageTest extends HttpUnitTest {
 
 
     /**
-     * Test the {@link WebResponse.ByteTagParser} to ensure that embedded JavaScript is skipped.
+     * Test the {@link WebResponse.HeadScanner} to ensure that embedded JavaScript and comments are skipped.
      */
     @Test
-    public void testByteTagParser() throws Exception {
+    public void testHeadScanner() throws Exception {
         final URL mainBaseURL = new URL(getHostPath() + "/Main/Base");
         final URL targetBaseURL = new URL(getHostPath() + "/Target/Base");
         final String targetWindow = "target";
-        final String document = "<html><head><title>main</title>\n"
+        final String document = "<!DOCTYPE html><html><head><title>main</title>\n"
                 + scriptToWriteAnotherDocument(simpleDocument(targetBaseURL), targetWindow)
+                + "<!-- <base href='commented'> -->"
                 + "<base href=\"" + mainBaseURL.toExternalForm() + "\">\n"
                 + "</head>\n<body>\nThis is a <a href=\"Link\">relative link</a>.\n"
                 + "</body>\n</html>\n";
-        WebResponse.ByteTagParser parser = new WebResponse.ByteTagParser(document.getBytes());
+        WebResponse.HeadScanner scanner = new WebResponse.HeadScanner(document.getBytes());
 
         String[] expectedTags = {"html", "head", "title", "/title", "script", "/script", "base", "/head",
                 "body", "a", "/a", "/body", "/html"};
         for (int i = 0; i < expectedTags.length; i++) {
-            final String tagName = parser.getNextTag().getName();
-            final String expectedTag = expectedTags[i];
-            assertEquals("Tag number " + i, expectedTag, tagName);
+            assertTrue("Missing tag number " + i, scanner.nextTag());
+            assertTrue("Tag number " + i + " should be " + expectedTags[i], scanner.isTag(expectedTags[i]));
+            if (expectedTags[i].equals("base")) {
+                assertEquals("base href", mainBaseURL.toExternalForm(), scanner.getAttribute("href"));
+                assertFalse("base tag should be in head", scanner.isPastHead());
+            } else if (expectedTags[i].equals("/head")) {
+                assertTrue("end of head not recognized", scanner.isPastHead());
+            }
         }
-        final WebResponse.ByteTag nextTag = parser.getNextTag();
-        assertNull("More tags than expected: " + nextTag + "...?", nextTag);
+        assertFalse("More tags than expected", scanner.nextTag());
+    }
+
+
+    /**
+     * verify that meta tags are only honored within the head of a page
+     */
+    @Test
+    public void testMetaTagsOnlyReadFromHead() throws Exception {
+        defineResource("SimplePage.html", "<html><head><title>Sample</title></head>\n" +
+                "<body>This has no real content\n" +
+                "<meta http-equiv=\"content-type\" content=\"text/plain\">" +
+                "</body></html>");
+        WebConversation wc = new WebConversation();
+        WebResponse simplePage = wc.getResponse(getHostPath() + "/SimplePage.html");
+        assertEquals("Content type", "text/html", simplePage.getContentType());
     }
 
     /**
@@ -157,6 +157,32 @@ public class AttributesTest {
     }
 
 
+    /**
+     * Verifies that attributes are listed in the order in which they were first set, and that their names are shared.
+     */
+    @Test
+    public void testAttributeOrderAndNames() throws Exception {
+        String[] names = {"height", "width", "color", "border", "align", "valign"};
+        for (int i = 0; i < names.length; i++) _element.setAttribute(names[i], "value" + i);
+        _element.setAttribute("color", "changed");
+        _element.removeAttribute("border");
+
+        String[] expectedNames = {"height", "width", "color", "align", "valign"};
+        NamedNodeMap attributes = _element.getAttributes();
+        assertEquals("Number of attributes", expectedNames.length, attributes.getLength());
+        for (int i = 0; i < expectedNames.length; i++) {
+            assertEquals("Attribute " + i, expectedNames[i], attributes.item(i).getNodeName());
+        }
+        assertEquals("Changed attribute", "changed", attributes.getNamedItem("color").getNodeValue());
+        assertNull("Removed attribute", attributes.getNamedItem("border"));
+
+        Element other = DocumentImpl.createDocument().createElement(new String("zork"));
+        other.setAttribute(new String("height"), "1");
+        assertSame("Tag name", _element.getTagName(), other.getTagName());
+        assertSame("Attribute name", _element.getAttributeNode("height").getName(), other.getAttributeNode("height").getName());
+    }
+
+
     static class NVPair {
         private String _name;
         private String _value;
@@ -170,6 +170,80 @@ public class HTMLDocumentTest extends AbstractHTMLElementTest {
     }
 
 
+    /**
+     * Verifies that elements are found by id, name and tag name as the document changes.
+     */
+    @Test
+    public void testLookupsFollowDocumentChanges() throws Exception {
+        HTMLElement body = (HTMLElement) createElement("body");
+        _htmlDocument.setBody(body);
+
+        HTMLElement div = (HTMLElement) createElement("div");
+        HTMLImageElement image1 = (HTMLImageElement) createElement("img");
+        image1.setName("pic");
+        div.appendChild(image1);
+        HTMLImageElement image2 = (HTMLImageElement) createElement("img");
+        image2.setId("second");
+        image2.setName("pic");
+        body.appendChild(image2);
+        assertSame("Element not yet in document", null, _htmlDocument.getElementById("div"));
+
+        body.insertBefore(div, image2);
+        div.setId("div");
+        assertSame("Inserted element", div, _htmlDocument.getElementById("div"));
+        assertElementsByName(_htmlDocument, "pic", new HTMLElement[]{image1, image2});
+        assertSame("First image by tag", image1, _htmlDocument.getElementsByTagName("IMG").item(0));
+        assertSame("Second image by tag", image2, _htmlDocument.getElementsByTagName("img").item(1));
+
+        image2.getAttributeNode("id").setValue("renamed");
+        assertSame("Element with old id", null, _htmlDocument.getElementById("second"));
+        assertSame("Element with new id", image2, _htmlDocument.getElementById("renamed"));
+        image2.removeAttribute("name");
+        assertElementsByName(_htmlDocument, "pic", new HTMLElement[]{image1});
+
+        body.removeChild(div);
+        assertSame("Removed element", null, _htmlDocument.getElementById("div"));
+        assertElementsByName(_htmlDocument, "pic", new HTMLElement[0]);
+        assertEquals("Images remaining", 1, _htmlDocument.getElementsByTagName("img").getLength());
+    }
+
+
+    /**
+     * Verifies that collections are reused and follow changes to the document.
+     */
+    @Test
+    public void testLiveCollections() throws Exception {
+        HTMLElement body = (HTMLElement) createElement("body");
+        _htmlDocument.setBody(body);
+        HTMLFormElement form = (HTMLFormElement) createElement("form");
+        body.appendChild(form);
+        HTMLCollection forms = _htmlDocument.getForms();
+        NodeList children = body.getChildNodes();
+        HTMLCollection elements = form.getElements();
+        assertSame("Forms collection reused", forms, _htmlDocument.getForms());
+        assertSame("Child nodes reused", children, body.getChildNodes());
+        assertSame("Form elements reused", elements, form.getElements());
+        assertEquals("Initial number of forms", 1, forms.getLength());
+        assertEquals("Initial number of form elements", 0, elements.getLength());
+
+        HTMLFormElement form2 = (HTMLFormElement) createElement("form");
+        body.appendChild(form2);
+        HTMLElement text = (HTMLElement) createElement("input");
+        form.appendChild(text);
+        form.appendChild(createElement("select"));
+        assertEquals("Number of forms after append", 2, forms.getLength());
+        assertSame("Appended form", form2, forms.item(1));
+        assertEquals("Number of children after append", 2, children.getLength());
+        assertEquals("Number of form elements after append", 2, elements.getLength());
+        assertSame("First form element", text, elements.item(0));
+
+        body.removeChild(form);
+        assertEquals("Number of forms after remove", 1, forms.getLength());
+        assertSame("Remaining form", form2, forms.item(0));
+        assertEquals("Number of children after remove", 1, children.getLength());
+    }
+
+
     private void assertElementsByName(HTMLDocument document, String name, HTMLElement[] expectedElements) {
         NodeList actualElements = document.getElementsByName(name);
         HttpUserAgentTest.assertMatchingSet("Elements with name '" + name + "'", expectedElements, toArray(actualElements));
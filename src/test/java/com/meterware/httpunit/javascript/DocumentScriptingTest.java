@@ -381,6 +381,36 @@ public class DocumentScriptingTest extends HttpUnitTest {
     }
 
 
+    /**
+     * verify that collections and queries return the same object while the document is unchanged,
+     * and a new one once it changes
+     */
+    @Test
+    public void testCollectionIdentity() throws Exception {
+        defineResource("start.html",
+                "<html><head></head><body>" +
+                        "<a href='somewhere' name='there'>here</a>" +
+                        "<script language='JavaScript'>var links = document.links;</script>" +
+                        "<script language='JavaScript'>" +
+                        "alert( 'same links = ' + (links == document.links) );" +
+                        "alert( 'same query = ' + (document.getElementsByTagName('a') == document.getElementsByTagName('a')) );" +
+                        "links = document.links;" +
+                        "document.write( \"<a href='elsewhere'>there</a>\" );" +
+                        "</script>" +
+                        "<script language='JavaScript'>" +
+                        "alert( 'links after write = ' + (links == document.links) + ' ' + document.links.length );" +
+                        "</script>" +
+                        "</body></html>"
+        );
+        WebConversation wc = new WebConversation();
+        wc.getResponse(getHostPath() + "/start.html");
+
+        assertEquals("Links before document change", "same links = true", wc.popNextAlert());
+        assertEquals("Repeated query", "same query = true", wc.popNextAlert());
+        assertEquals("Links after document change", "links after write = false 2", wc.popNextAlert());
+    }
+
+
     private void assertElementTags(WebConversation wc, String number, final String counts) {
         assertEquals("form '" + number + "' message", "form with number " + number + " has " + counts + " inputs", wc.popNextAlert());
     }
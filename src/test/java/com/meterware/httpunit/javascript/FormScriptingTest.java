@@ -1034,6 +1034,34 @@ public class FormScriptingTest extends HttpUnitTest {
         verifyRadio( /* default */ wc, false, /* checked */ false, /* value */ "bad");
     }
 
+    /**
+     * verify that repeated access to a radio button group returns the same array,
+     * and that script variables named like no page element are kept by the window
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRadioGroupArrayReused() throws Exception {
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>" +
+                "var count = 0;" +
+                "function checkGroup() { \n" +
+                "  for (var i = 0; i < 3; i++) count++;\n" +
+                "  alert( 'same group = ' + (document.realform.ready == document.realform.ready) )\n;" +
+                "  alert( 'count = ' + count )\n;" +
+                "}\n" +
+                "</script></head>" +
+                "<body onload='checkGroup();'>" +
+                "<form name='realform'>" +
+                "<input type='radio' name='ready' value='good' checked>" +
+                "<input type='radio' name='ready' value='bad'>" +
+                "</form>" +
+                "</body></html>");
+        WebConversation wc = new WebConversation();
+        wc.getResponse(getHostPath() + "/OnCommand.html");
+        assertEquals("Group comparison", "same group = true", wc.popNextAlert());
+        assertEquals("Variable", "count = 3", wc.popNextAlert());
+    }
+
     /**
      * test onMouseDownEvent for radio buttons
      *
@@ -22,9 +22,14 @@ package com.meterware.httpunit.javascript;
  *******************************************************************************************************************/
 
 import com.meterware.httpunit.*;
+import com.meterware.pseudoserver.PseudoServlet;
+import com.meterware.pseudoserver.WebResource;
 import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import static org.junit.Assert.*;
 
@@ -187,6 +192,544 @@ public class ScriptingTest extends AbstractJavaScriptTest {
         assertEquals("Alert message", "Cheese!", wc.popNextAlert());
     }
 
+    /**
+     * verify that globals defined by one page are not visible to another, even though the standard objects are shared
+     */
+    @Test
+    public void testGlobalsNotSharedBetweenPages() throws Exception {
+        defineResource("First.html", "<html><head><script language='JavaScript'>leaked = 'yes'; var declared = 'yes';</script></head></html>");
+        defineResource("Second.html", "<html><head><script language='JavaScript'>alert( typeof leaked + ',' + typeof declared );</script></head></html>");
+        JavaScript.setSharedStandardObjects(true);
+        try {
+            WebConversation wc = new WebConversation();
+            wc.getResponse(getHostPath() + "/First.html");
+            wc.getResponse(getHostPath() + "/Second.html");
+            assertEquals("Alert message", "undefined,undefined", wc.popNextAlert());
+        } finally {
+            JavaScript.setSharedStandardObjects(false);
+        }
+    }
+
+
+    /**
+     * verify that the lazily defined standard objects, such as RegExp, may be used from the shared scope
+     */
+    @Test
+    public void testRegExpWithSharedStandardObjects() throws Exception {
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>" +
+                "alert( /b+/.test( 'abbc' ) + ',' + new RegExp( 'c$' ).test( 'abbc' ) + ',' + 'abbc'.replace( /b/g, 'x' ) );" +
+                "</script></head></html>");
+        JavaScript.setSharedStandardObjects(true);
+        try {
+            WebConversation wc = new WebConversation();
+            wc.getResponse(getHostPath() + "/OnCommand.html");
+            assertEquals("Alert message", "true,true,axxc", wc.popNextAlert());
+        } finally {
+            JavaScript.setSharedStandardObjects(false);
+        }
+    }
+
+
+    /**
+     * verify that scripts may extend the built-in prototypes with the default settings
+     */
+    @Test
+    public void testExtendBuiltInPrototypes() throws Exception {
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>" +
+                "Array.prototype.first = function() { return this[0]; };" +
+                "alert( [ 'cheese', 'crackers' ].first() );" +
+                "</script></head></html>");
+        WebConversation wc = new WebConversation();
+        wc.getResponse(getHostPath() + "/OnCommand.html");
+        assertEquals("Alert message", "cheese", wc.popNextAlert());
+    }
+
+
+    /**
+     * verify that scripts and event handlers are compiled only once, even when used by different pages
+     */
+    @Test
+    public void testCompiledScriptsReused() throws Exception {
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>alert( 'loaded' );</script></head>" +
+                "<body><a href='#' onclick='alert( \"clicked\" ); return false;'>go</a></body></html>");
+        ScriptCache originalCache = ScriptCache.getSharedCache();
+        ScriptCache cache = new ScriptCache(10);
+        ScriptCache.setSharedCache(cache);
+        try {
+            WebConversation wc = new WebConversation();
+            for (int i = 0; i < 2; i++) {
+                WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+                response.getLinkWith("go").click();
+                assertEquals("Alert message", "loaded", wc.popNextAlert());
+                assertEquals("Alert message", "clicked", wc.popNextAlert());
+            }
+            assertEquals("scripts compiled", 2, cache.getMissCount());
+            assertEquals("compiled scripts reused", 2, cache.getHitCount());
+        } finally {
+            ScriptCache.setSharedCache(originalCache);
+        }
+    }
+
+
+    /**
+     * verify that a script compiled with a language feature is not reused once the feature has been changed
+     */
+    @Test
+    public void testCompiledScriptsDiscardedOnFeatureChange() throws Exception {
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>var goto = 'reached'; alert( goto );</script></head>" +
+                "<body></body></html>");
+        HttpUnitContextFactory factory = HttpUnitContextFactory.getInstance();
+        factory.setFeature(Context.FEATURE_RESERVED_KEYWORD_AS_IDENTIFIER, true);
+        try {
+            WebConversation wc = new WebConversation();
+            wc.getResponse(getHostPath() + "/OnCommand.html");
+            assertEquals("Alert message", "reached", wc.popNextAlert());
+
+            factory.setFeature(Context.FEATURE_RESERVED_KEYWORD_AS_IDENTIFIER, false);
+            try {
+                wc.getResponse(getHostPath() + "/OnCommand.html");
+                fail("Script compiled with a reserved word as an identifier was reused");
+            } catch (ScriptException e) {
+                assertTrue("Unexpected message: " + e.getMessage(), e.getMessage().indexOf("missing variable name") >= 0);
+            }
+        } finally {
+            factory.clearFeatures();
+        }
+    }
+
+
+    /**
+     * verify that scripts and event handlers run when compiled to Java bytecode, and that a script too large
+     * to be compiled is interpreted instead
+     */
+    @Test
+    public void testCompiledMode() throws Exception {
+        StringBuffer largeScript = new StringBuffer("var total = 0;");
+        for (int i = 0; i < 10000; i++) largeScript.append("total = total + 1;");
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>" + largeScript + "</script></head>" +
+                "<body><a href='#' onclick='alert( \"total is \" + total ); return false;'>go</a></body></html>");
+        HttpUnitOptions.setJavaScriptOptimizationLevel(9);
+
+        WebConversation wc = new WebConversation();
+        WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+        response.getLinkWith("go").click();
+        assertEquals("Alert message", "total is 10000", wc.popNextAlert());
+    }
+
+
+    /**
+     * verify that once a thread has run a page, further pages and events on that thread reuse its context
+     */
+    @Test
+    public void testContextReusedOnThread() throws Exception {
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>alert( 'loaded' );</script></head>" +
+                "<body><a href='#' onclick='alert( \"clicked\" ); return false;'>go</a></body></html>");
+        WebConversation wc = new WebConversation();
+        wc.getResponse(getHostPath() + "/OnCommand.html");
+
+        final int[] numContextsCreated = new int[1];
+        ContextFactory.Listener listener = new ContextFactory.Listener() {
+            public void contextCreated(Context cx) { numContextsCreated[0]++; }
+            public void contextReleased(Context cx) { }
+        };
+        HttpUnitContextFactory.getInstance().addListener(listener);
+        try {
+            WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+            response.getLinkWith("go").click();
+            response.getLinkWith("go").click();
+            assertEquals("contexts created", 0, numContextsCreated[0]);
+        } finally {
+            HttpUnitContextFactory.getInstance().removeListener(listener);
+        }
+    }
+
+
+    /**
+     * verify that a page loaded again is restored from its snapshot rather than by running its scripts again,
+     * and that a change to one of its scripts causes them to be run.
+     */
+    @Test
+    public void testPageSnapshots() throws Exception {
+        defineResource("counter.js", "var counter = { count: 0 }; function bump() { return ++counter.count; }");
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript' src='counter.js'></script>" +
+                "<script language='JavaScript'>var stamp = Math.random();</script></head>" +
+                "<body><script language='JavaScript'>document.write( '<a href=\\'#\\'>written</a>' );</script>" +
+                "</body></html>");
+        JavaScript.setSharedStandardObjects(true);
+        JavaScript.setPageSnapshots(true);
+        try {
+            WebConversation wc = new WebConversation();
+            WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+            Object stamp = response.getScriptableObject().evaluateExpression("'' + stamp");
+            assertNotNull("written link not found", response.getLinkWith("written"));
+            assertEquals("first count", "1", response.getScriptableObject().evaluateExpression("'' + bump()"));
+
+            WebConversation wc2 = new WebConversation();
+            WebResponse response2 = wc2.getResponse(getHostPath() + "/OnCommand.html");
+            assertEquals("Scripts were run again", stamp, response2.getScriptableObject().evaluateExpression("'' + stamp"));
+            assertNotNull("written link not restored", response2.getLinkWith("written"));
+            assertEquals("restored count", "1", response2.getScriptableObject().evaluateExpression("'' + bump()"));
+            assertEquals("original count", "2", response.getScriptableObject().evaluateExpression("'' + bump()"));
+
+            defineResource("counter.js", "var counter = { count: 10 }; function bump() { return ++counter.count; }");
+            WebConversation wc3 = new WebConversation();
+            WebResponse response3 = wc3.getResponse(getHostPath() + "/OnCommand.html");
+            assertFalse("Scripts not run after change", stamp.equals(response3.getScriptableObject().evaluateExpression("'' + stamp")));
+            assertNotNull("written link not found", response3.getLinkWith("written"));
+            assertEquals("changed count", "11", response3.getScriptableObject().evaluateExpression("'' + bump()"));
+        } finally {
+            JavaScript.setPageSnapshots(false);
+            JavaScript.clearPageSnapshots();
+            JavaScript.setSharedStandardObjects(false);
+        }
+    }
+
+
+    /**
+     * verify that no snapshot is kept of a page whose scripts change it other than by writing text,
+     * so that those scripts are run each time the page is loaded.
+     */
+    @Test
+    public void testPageChangesPreventSnapshot() throws Exception {
+        defineResource("OnCommand.html", "<html><body><form name='the_form'><input type='text' name='color' value='blue'></form>" +
+                "<script language='JavaScript'>document.the_form.color.value = 'red'; alert( 'initialized' );</script>" +
+                "</body></html>");
+        JavaScript.setSharedStandardObjects(true);
+        JavaScript.setPageSnapshots(true);
+        try {
+            for (int i = 0; i < 2; i++) {
+                WebConversation wc = new WebConversation();
+                WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+                assertEquals("alert on load " + i, "initialized", wc.popNextAlert());
+                assertEquals("color on load " + i, "red", response.getFormWithName("the_form").getParameterValue("color"));
+            }
+        } finally {
+            JavaScript.setPageSnapshots(false);
+            JavaScript.clearPageSnapshots();
+            JavaScript.setSharedStandardObjects(false);
+        }
+    }
+
+
+    /**
+     * verify that text written from the cookies of one client is not replayed to another
+     */
+    @Test
+    public void testCookiesNotReplayedToOtherClients() throws Exception {
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>" +
+                "document.write( '<title>' + document.cookie + '</title>' );</script></head><body></body></html>");
+        JavaScript.setSharedStandardObjects(true);
+        JavaScript.setPageSnapshots(true);
+        try {
+            WebConversation alice = new WebConversation();
+            alice.putCookie("user", "alice");
+            assertEquals("alice's title", "user=alice", alice.getResponse(getHostPath() + "/OnCommand.html").getTitle());
+
+            WebConversation bob = new WebConversation();
+            bob.putCookie("user", "bob");
+            assertEquals("bob's title", "user=bob", bob.getResponse(getHostPath() + "/OnCommand.html").getTitle());
+        } finally {
+            JavaScript.setPageSnapshots(false);
+            JavaScript.clearPageSnapshots();
+            JavaScript.setSharedStandardObjects(false);
+        }
+    }
+
+
+    /**
+     * verify that the least recently used snapshots are discarded to keep their combined size within its limit
+     */
+    @Test
+    public void testPageSnapshotsSizeLimit() throws Exception {
+        char[] chars = new char[(int) (PageSnapshot.MAX_SNAPSHOTS_SIZE / 5)];
+        Arrays.fill(chars, 'x');
+        String text = new String(chars);
+        try {
+            for (int i = 0; i < 3; i++) {
+                PageSnapshot.putSnapshot(new PageSnapshot("http://localhost/page" + i, text));
+            }
+            assertTrue("snapshots too large", PageSnapshot.getSnapshotsSize() <= PageSnapshot.MAX_SNAPSHOTS_SIZE);
+            assertNull("oldest snapshot kept", PageSnapshot.getSnapshot("http://localhost/page0", text));
+            assertNotNull("newest snapshot discarded", PageSnapshot.getSnapshot("http://localhost/page2", text));
+        } finally {
+            JavaScript.clearPageSnapshots();
+        }
+    }
+
+
+    /**
+     * verify that a script which exceeds its instruction limit is aborted, and the rest of the page still loads
+     */
+    @Test
+    public void testScriptInstructionLimit() throws Exception {
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>" +
+                "var i = 0; while (true) { try { i++; } finally { i++; } }</script></head>" +
+                "<body><script language='JavaScript'>document.write( '<a href=\"#\">written</a>' );</script>" +
+                "<a href='#' onclick='for (;;) {}'>go</a></body></html>");
+        WebConversation wc = new WebConversation();
+        HttpUnitOptions.setExceptionsThrownOnScriptError(false);
+        HttpUnitOptions.clearScriptErrorMessages();
+        HttpUnitOptions.setScriptInstructionLimit(100000);
+        HttpUnitContextFactory.getInstance().clearNumScriptsAborted();
+
+        WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+        assertNotNull("Script after the aborted one was not run", response.getLinkWith("written"));
+        response.getLinkWith("go").click();
+        assertEquals("Number of scripts aborted", 2, HttpUnitContextFactory.getInstance().getNumScriptsAborted());
+        String[] messages = HttpUnitOptions.getScriptErrorMessages();
+        assertEquals("Number of script failures logged", 2, messages.length);
+        assertTrue("Unexpected message: " + messages[0], messages[0].indexOf("100000 instructions") > 0);
+    }
+
+
+    /**
+     * verify that a script is aborted soon after it exceeds a small instruction limit
+     */
+    @Test
+    public void testSmallScriptInstructionLimit() throws Exception {
+        defineResource("OnCommand.html", "<html><head></head>" +
+                "<body><a href='#' onclick='for (var i = 0; i < 200; i++) {} alert( \"finished\" );'>go</a></body></html>");
+        WebConversation wc = new WebConversation();
+        WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+        HttpUnitOptions.setExceptionsThrownOnScriptError(true);
+        HttpUnitOptions.setScriptInstructionLimit(500);
+        try {
+            response.getLinkWith("go").click();
+            fail("Should have aborted the script");
+        } catch (ScriptException e) {
+            assertTrue("Unexpected message: " + e.getMessage(), e.getMessage().indexOf("500 instructions") >= 0);
+            assertNull("Script should not have finished", wc.getNextAlert());
+        }
+    }
+
+
+    /**
+     * verify that a script which runs past its time limit is aborted with a ScriptException
+     */
+    @Test
+    public void testScriptTimeLimit() throws Exception {
+        defineResource("OnCommand.html", "<html><head></head>" +
+                "<body><a href='#' onclick='while (true) {}'>go</a></body></html>");
+        WebConversation wc = new WebConversation();
+        WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+        HttpUnitOptions.setExceptionsThrownOnScriptError(true);
+        HttpUnitOptions.setScriptTimeLimit(200);
+        try {
+            response.getLinkWith("go").click();
+            fail("Should have aborted the script");
+        } catch (ScriptException e) {
+            assertTrue("Unexpected message: " + e.getMessage(), e.getMessage().indexOf("time limit") >= 0);
+        }
+    }
+
+
+    /**
+     * verify that time limits are enforced even when scripts would otherwise be compiled
+     */
+    @Test(timeout = 20000)
+    public void testScriptTimeLimitWhenCompiled() throws Exception {
+        defineResource("OnCommand.html", "<html><head></head>" +
+                "<body><a href='#' onclick='while (true) {}'>go</a></body></html>");
+        HttpUnitOptions.setJavaScriptOptimizationLevel(9);
+        HttpUnitOptions.setExceptionsThrownOnScriptError(true);
+        HttpUnitOptions.setScriptTimeLimit(200);
+        WebConversation wc = new WebConversation();
+        WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+        try {
+            response.getLinkWith("go").click();
+            fail("Should have aborted the script");
+        } catch (ScriptException e) {
+            assertTrue("Unexpected message: " + e.getMessage(), e.getMessage().indexOf("time limit") >= 0);
+        }
+    }
+
+
+    /**
+     * verify that once the scripts of a page have used up its instructions, its further scripts are not run
+     */
+    @Test
+    public void testPageScriptInstructionLimit() throws Exception {
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>" +
+                "for (var i = 0; i < 2000; i++) {}</script></head>" +
+                "<body><a href='#' onclick='alert( \"clicked\" );'>go</a></body></html>");
+        WebConversation wc = new WebConversation();
+        HttpUnitOptions.setExceptionsThrownOnScriptError(true);
+        HttpUnitOptions.setPageScriptInstructionLimit(100000);
+        WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+        response.getLinkWith("go").click();
+        assertEquals("Alert message", "clicked", wc.popNextAlert());
+
+        HttpUnitOptions.setPageScriptInstructionLimit(10000);
+        try {
+            response.getLinkWith("go").click();
+            fail("Should have refused to run the script");
+        } catch (ScriptException e) {
+            assertNull("Script should not have run", wc.getNextAlert());
+        }
+    }
+
+
+    /**
+     * verify that timers set by a page run only as the test advances the window's virtual clock
+     */
+    @Test
+    public void testTimersRunOnVirtualClock() throws Exception {
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>" +
+                "setTimeout( \"alert( 'late' )\", 1000 );" +
+                "setTimeout( function() { alert( 'early' ); setTimeout( function() { alert( 'chained' ); } ); }, 100 );" +
+                "var cancelled = setTimeout( function() { alert( 'cancelled' ); }, 500 );" +
+                "clearTimeout( cancelled );" +
+                "</script></head><body></body></html>");
+        WebConversation wc = new WebConversation();
+        long start = System.currentTimeMillis();
+        wc.getResponse(getHostPath() + "/OnCommand.html");
+        EventLoop eventLoop = wc.getMainWindow().getEventLoop();
+        assertEquals("Number of pending timers", 2, eventLoop.getNumPendingTimers());
+        assertEquals("Timers run at time zero", 0, eventLoop.runUntilIdle());
+        assertNull("Alert shown before time advanced", wc.getNextAlert());
+
+        assertEquals("Timers run in first 500 msec", 2, eventLoop.advanceBy(500));
+        assertEquals("Virtual time", 500, eventLoop.getCurrentTime());
+        assertEquals("First alert", "early", wc.popNextAlert());
+        assertEquals("Second alert", "chained", wc.popNextAlert());
+        assertNull("Late alert shown too soon", wc.getNextAlert());
+
+        assertEquals("Remaining timers run", 1, eventLoop.runAll());
+        assertEquals("Virtual time", 1000, eventLoop.getCurrentTime());
+        assertEquals("Last alert", "late", wc.popNextAlert());
+        assertNull("Cancelled timer was run", wc.getNextAlert());
+        assertTrue("Waited in real time", System.currentTimeMillis() - start < 1000);
+    }
+
+
+    /**
+     * verify that an interval timer repeats until it is cleared, and that a page's timers are cancelled when it is replaced
+     */
+    @Test
+    public void testIntervalTimers() throws Exception {
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>" +
+                "var count = 0;" +
+                "var timer = setInterval( function() { count++; if (count == 3) clearInterval( timer ); }, 50 );" +
+                "setInterval( function() { document.title = 'tick ' + count; }, 10 );" +
+                "</script></head><body></body></html>");
+        defineResource("Next.html", "<html><head><title>next</title></head><body></body></html>");
+        WebConversation wc = new WebConversation();
+        WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+        EventLoop eventLoop = wc.getMainWindow().getEventLoop();
+
+        assertEquals("Timers run", 20 + 3, eventLoop.advanceBy(200));
+        assertEquals("Count", "3", response.getScriptableObject().evaluateExpression("'' + count"));
+        assertEquals("Number of pending timers", 1, eventLoop.getNumPendingTimers());
+        try {
+            eventLoop.runAll();
+            fail("Should have refused to run an endless interval");
+        } catch (IllegalStateException e) {
+        }
+
+        response.getScriptableObject().setLocation("Next.html");
+        assertEquals("Number of pending timers after replacing page", 0, eventLoop.getNumPendingTimers());
+    }
+
+
+    /**
+     * verify that a timer which polls by rescheduling itself without delay does not run forever, while one which
+     * polls with a delay runs once for each time it comes due
+     */
+    @Test(timeout = 20000)
+    public void testPollingTimers() throws Exception {
+        defineResource("OnCommand.html", "<html><head><script language='JavaScript'>" +
+                "var count = 0;" +
+                "function poll() { count++; setTimeout( poll, 0 ); }" +
+                "function slowPoll() { setTimeout( slowPoll, 10 ); }" +
+                "</script></head><body></body></html>");
+        WebConversation wc = new WebConversation();
+        WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+        EventLoop eventLoop = wc.getMainWindow().getEventLoop();
+
+        response.getScriptableObject().evaluateExpression("slowPoll()");
+        assertEquals("Timers run", 10, eventLoop.advanceBy(100));
+
+        response.getScriptableObject().evaluateExpression("poll()");
+        try {
+            eventLoop.runUntilIdle();
+            fail("Should have refused to run a timer which reschedules itself without delay");
+        } catch (IllegalStateException e) {
+            assertEquals("Count", "" + (1 + EventLoop.MAX_TIMERS_AT_ONE_TIME), response.getScriptableObject().evaluateExpression("'' + count"));
+        }
+    }
+
+
+    /**
+     * verify that the external scripts of a page may be requested at once, and are still run in document order
+     */
+    @Test
+    public void testPrefetchedScripts() throws Exception {
+        final int numScripts = 3;
+        StringBuffer page = new StringBuffer("<html><head>");
+        ScriptServlet.reset();
+        for (int i = 0; i < numScripts; i++) {
+            defineResource("script" + i + ".js", new ScriptServlet(numScripts, "alert( 'script " + i + "' );"));
+            page.append("<script language='JavaScript' src='script").append(i).append(".js'></script>");
+        }
+        defineResource("Scripts.html", page.append("</head><body></body></html>").toString());
+
+        WebConversation wc = new WebConversation();
+        wc.getClientProperties().setMaxParallelScriptRequests(numScripts);
+        wc.getResponse(getHostPath() + "/Scripts.html");
+        assertEquals("Number of scripts requested at once", numScripts, ScriptServlet.getMaxConcurrentRequests());
+        for (int i = 0; i < numScripts; i++) {
+            assertEquals("Alert message", "script " + i, wc.popNextAlert());
+        }
+    }
+
+
+    /**
+     * A servlet which holds each request until the expected number of requests are in progress at once,
+     * or a time limit is reached.
+     */
+    static class ScriptServlet extends PseudoServlet {
+
+        private static final long MAX_WAIT = 2000;
+        private static int _concurrentRequests;
+        private static int _maxConcurrentRequests;
+
+        private int _numExpected;
+        private String _script;
+
+
+        ScriptServlet(int numExpected, String script) {
+            _numExpected = numExpected;
+            _script = script;
+        }
+
+
+        static synchronized void reset() {
+            _concurrentRequests = _maxConcurrentRequests = 0;
+        }
+
+
+        static synchronized int getMaxConcurrentRequests() {
+            return _maxConcurrentRequests;
+        }
+
+
+        public WebResource getGetResponse() {
+            synchronized (ScriptServlet.class) {
+                _maxConcurrentRequests = Math.max(_maxConcurrentRequests, ++_concurrentRequests);
+                ScriptServlet.class.notifyAll();
+                long deadline = System.currentTimeMillis() + MAX_WAIT;
+                try {
+                    while (_maxConcurrentRequests < _numExpected && System.currentTimeMillis() < deadline) {
+                        ScriptServlet.class.wait(deadline - System.currentTimeMillis());
+                    }
+                } catch (InterruptedException e) {
+                }
+                _concurrentRequests--;
+            }
+            return new WebResource(_script, "text/javascript");
+        }
+    }
+
     /**
      * test Detection of Javascript files that can not be found
      * behaviour pointed out by Dan Lipofsky
@@ -366,6 +909,51 @@ public class ScriptingTest extends AbstractJavaScriptTest {
     }
 
 
+    /**
+     * verify that script errors are kept by the client whose page reported them, up to a limit, and reported to its listeners
+     */
+    @Test
+    public void testScriptErrorsKeptPerClient() throws Exception {
+        defineResource("OnCommand.html", "<html><head></head>" +
+                "<body onLoad='noSuchFunction()'>" +
+                "</body>");
+        HttpUnitOptions.setExceptionsThrownOnScriptError(false);
+        HttpUnitOptions.clearScriptErrorMessages();
+        WebConversation wc = new WebConversation();
+        final ArrayList reported = new ArrayList();
+        wc.addScriptErrorListener(new ScriptErrorListener() {
+            public void scriptErrorReported(WebClient client, ScriptError error) { reported.add(error); }
+        });
+        WebResponse response = wc.getResponse(getHostPath() + "/OnCommand.html");
+        WebConversation wc2 = new WebConversation();
+        wc2.getResponse(getHostPath() + "/OnCommand.html");
+
+        assertEquals("errors in first client", 1, wc.getScriptErrors().length);
+        assertEquals("errors in second client", 1, wc2.getScriptErrors().length);
+        assertEquals("errors in all clients", 2, HttpUnitOptions.getScriptErrorMessages().length);
+        assertEquals("errors reported to listener", 1, reported.size());
+        ScriptError error = wc.getScriptErrors()[0];
+        assertSame("reported error", error, reported.get(0));
+        assertEquals("source URL", getHostPath() + "/OnCommand.html", error.getSourceURL());
+        assertTrue("message should name the missing function", error.getMessage().indexOf("noSuchFunction") >= 0);
+
+        wc.setMaxScriptErrors(1);
+        response.getScriptableObject().evaluateExpression("var x = 1;\n\nnoSuchFunction();");
+        assertEquals("errors kept", 1, wc.getScriptErrors().length);
+        assertEquals("line number of latest error", 3, wc.getScriptErrors()[0].getLineNumber());
+        assertEquals("errors in second client", 1, wc2.getScriptErrors().length);
+
+        wc.clearScriptErrors();
+        assertEquals("errors after clear", 0, wc.getScriptErrors().length);
+
+        wc.setMaxScriptErrors(0);
+        reported.clear();
+        response.getScriptableObject().evaluateExpression("noSuchFunction();");
+        assertEquals("errors kept when none are to be kept", 0, wc.getScriptErrors().length);
+        assertEquals("errors reported to listener when none are kept", 1, reported.size());
+    }
+
+
     @Test
     public void testConfirmationDialog() throws Exception {
         defineWebPage("OnCommand", "<a href='NextPage' id='go' onClick='return confirm( \"go on?\" );'>");
@@ -58,6 +58,33 @@ public class HTMLParserListenerTest extends HttpUnitTest {
         }
     }
 
+    /**
+     * Verifies that problems are reported against the page being parsed when parsers are reused.
+     */
+    @Test
+    public void testProblemsReportedForEachPage() throws Exception {
+        defineResource("First.html", "<html><body><unknownTag>first</unknownTag></body></html>");
+        defineResource("Second.html", "<html><body><unknownTag>second</unknownTag></body></html>");
+
+        final ErrorHandler errorHandler = new ErrorHandler(
+                /* expectProblems */true);
+        try {
+            WebConversation wc = new WebConversation();
+            HTMLParserFactory.addHTMLParserListener(errorHandler);
+            WebRequest request = new GetMethodWebRequest(getHostPath() + "/First.html");
+            WebResponse first = wc.getResponse(request);
+            assertEquals("First URL", request.getURL(), errorHandler.getBadURL());
+
+            request = new GetMethodWebRequest(getHostPath() + "/Second.html");
+            WebResponse second = wc.getResponse(request);
+            assertEquals("Second URL", request.getURL(), errorHandler.getBadURL());
+            assertNotSame("Parsed documents", first.getDOM(), second.getDOM());
+            assertEquals("First page content", "first", first.getDOM().getElementsByTagName("unknowntag").item(0).getFirstChild().getNodeValue());
+        } finally {
+            HTMLParserFactory.removeHTMLParserListener(errorHandler);
+        }
+    }
+
     @Test
     public void testGoodHTMLPage() throws Exception {
         final ErrorHandler errorHandler = new ErrorHandler(